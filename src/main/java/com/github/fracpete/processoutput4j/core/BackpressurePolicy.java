@@ -0,0 +1,36 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * BackpressurePolicy.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+/**
+ * What to do when the processing of the lines cannot keep up with the
+ * process output, i.e., the handoff buffer is full.
+ */
+public enum BackpressurePolicy {
+  /** wait for space, which eventually stalls the process (replaced by SPILL with a multiplexer). */
+  BLOCK,
+  /** discard the line that just arrived. */
+  DROP_NEWEST,
+  /** discard the oldest line in the buffer. */
+  DROP_OLDEST,
+  /** write the lines to a temporary file and replay them later. */
+  SPILL,
+}
@@ -0,0 +1,112 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * BackpressureStats.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how often a {@link BackpressurePolicy} got triggered.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class BackpressureStats
+  implements Serializable {
+
+  /** for serialization. */
+  private static final long serialVersionUID = 6028425532712496153L;
+
+  /** the number of lines that had to wait for space. */
+  protected AtomicLong m_Blocked;
+
+  /** the number of discarded lines. */
+  protected AtomicLong m_Dropped;
+
+  /** the number of lines written to temporary files. */
+  protected AtomicLong m_Spilled;
+
+  /**
+   * Initializes the counters.
+   */
+  public BackpressureStats() {
+    m_Blocked = new AtomicLong();
+    m_Dropped = new AtomicLong();
+    m_Spilled = new AtomicLong();
+  }
+
+  /**
+   * Increments the number of lines that had to wait for space.
+   */
+  public void incBlocked() {
+    m_Blocked.incrementAndGet();
+  }
+
+  /**
+   * Returns the number of lines that had to wait for space.
+   *
+   * @return		the count
+   */
+  public long getBlocked() {
+    return m_Blocked.get();
+  }
+
+  /**
+   * Increments the number of discarded lines.
+   */
+  public void incDropped() {
+    m_Dropped.incrementAndGet();
+  }
+
+  /**
+   * Returns the number of discarded lines.
+   *
+   * @return		the count
+   */
+  public long getDropped() {
+    return m_Dropped.get();
+  }
+
+  /**
+   * Increments the number of lines written to temporary files.
+   */
+  public void incSpilled() {
+    m_Spilled.incrementAndGet();
+  }
+
+  /**
+   * Returns the number of lines written to temporary files.
+   *
+   * @return		the count
+   */
+  public long getSpilled() {
+    return m_Spilled.get();
+  }
+
+  /**
+   * Returns a short description string.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return "blocked=" + getBlocked() + ", dropped=" + getDropped() + ", spilled=" + getSpilled();
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * BatchingStreamingProcessOwner.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import java.util.List;
+
+/**
+ * Interface for owners that process the lines in batches rather than one
+ * at a time. The reader calls {@link #processOutput(List, boolean)}
+ * instead of {@link #processOutput(String, boolean)}, whenever the batch
+ * is full, the maximum delay has passed since the first line of the batch
+ * arrived or the end of the stream has been reached.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public interface BatchingStreamingProcessOwner
+  extends StreamingProcessOwner {
+
+  /**
+   * Returns the maximum number of lines per batch.
+   *
+   * @return		the batch size
+   */
+  public int getBatchSize();
+
+  /**
+   * Returns the maximum time a line is held back before its batch gets
+   * delivered.
+   *
+   * @return		the delay in msec, 0 for no time limit
+   */
+  public long getMaxBatchDelay();
+
+  /**
+   * Processes the incoming batch of lines. The owner can keep the list.
+   *
+   * @param lines	the lines to process
+   * @param stdout	whether stdout or stderr
+   */
+  public void processOutput(List<String> lines, boolean stdout);
+}
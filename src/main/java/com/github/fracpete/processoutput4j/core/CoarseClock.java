@@ -0,0 +1,194 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CoarseClock.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clock that gets updated at a fixed interval by the shared scheduler
+ * (see {@link ReaderExecutors#getScheduler()}), making reading the time
+ * as cheap as reading a volatile field. The shared clocks only come in
+ * the precisions listed in {@link #PRECISIONS}, no matter how many
+ * different precisions get requested. They are reference-counted: each
+ * {@link #acquire(int)} has to be paired with a {@link #release()}, and
+ * the update task gets cancelled once the last user releases the clock.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class CoarseClock {
+
+  /** the default precision in msec. */
+  public static final int DEFAULT_PRECISION = 10;
+
+  /** the precisions in msec of the shared clocks, ascending. */
+  public static final int[] PRECISIONS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000};
+
+  /** the shared clocks per precision. */
+  protected static Map<Integer,CoarseClock> m_Clocks = new HashMap<>();
+
+  /** the precision in msec. */
+  protected int m_Precision;
+
+  /** the current time (msec since epoch). */
+  protected volatile long m_Now;
+
+  /** the scheduled update of the time. */
+  protected ScheduledFuture<?> m_Update;
+
+  /** the number of users of a shared clock (guarded by the class). */
+  protected int m_Users;
+
+  /**
+   * Initializes and starts the clock.
+   *
+   * @param precision	the update interval in msec
+   */
+  public CoarseClock(int precision) {
+    if (precision < 1)
+      throw new IllegalArgumentException("Precision must be at least 1: " + precision);
+    m_Precision = precision;
+    m_Now       = System.currentTimeMillis();
+    m_Update    = ReaderExecutors.getScheduler().scheduleAtFixedRate(this::update, precision, precision, TimeUnit.MILLISECONDS);
+    m_Users     = 0;
+  }
+
+  /**
+   * Updates the time.
+   */
+  protected void update() {
+    m_Now = System.currentTimeMillis();
+  }
+
+  /**
+   * Stops updating the time. Only to be used for clocks that were created
+   * via the constructor, shared ones get released instead.
+   *
+   * @see		#release()
+   */
+  public void stop() {
+    m_Update.cancel(false);
+  }
+
+  /**
+   * Returns whether the time still gets updated.
+   *
+   * @return		true if still updated
+   */
+  public boolean isRunning() {
+    return !m_Update.isDone();
+  }
+
+  /**
+   * Releases the shared clock obtained via {@link #acquire(int)}. Once the
+   * last user has released it, the clock stops and gets discarded.
+   *
+   * @throws IllegalStateException	if the clock is not in use
+   */
+  public void release() {
+    synchronized (CoarseClock.class) {
+      if (m_Users == 0)
+	throw new IllegalStateException("Clock is not shared or has already been released!");
+      m_Users--;
+      if (m_Users == 0) {
+	m_Clocks.remove(m_Precision);
+	stop();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of users of a shared clock.
+   *
+   * @return		the number of users, 0 if not shared
+   */
+  public int getNumUsers() {
+    synchronized (CoarseClock.class) {
+      return m_Users;
+    }
+  }
+
+  /**
+   * Returns the precision.
+   *
+   * @return		the update interval in msec
+   */
+  public int getPrecision() {
+    return m_Precision;
+  }
+
+  /**
+   * Returns the current time, lagging behind at most by the precision.
+   *
+   * @return		the time (msec since epoch)
+   */
+  public long now() {
+    return m_Now;
+  }
+
+  /**
+   * Snaps the precision to the largest of {@link #PRECISIONS} that does
+   * not exceed it, i.e., the clock is at least as precise as requested
+   * (up to the coarsest precision).
+   *
+   * @param precision	the requested update interval in msec
+   * @return		the snapped interval
+   */
+  public static int snap(int precision) {
+    int		result;
+
+    if (precision < 1)
+      throw new IllegalArgumentException("Precision must be at least 1: " + precision);
+
+    result = PRECISIONS[0];
+    for (int p: PRECISIONS) {
+      if (p <= precision)
+	result = p;
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the shared clock with the specified precision, snapped to one
+   * of {@link #PRECISIONS}. Has to be released once no longer needed.
+   *
+   * @param precision	the update interval in msec
+   * @return		the clock
+   * @see		#snap(int)
+   * @see		#release()
+   */
+  public static synchronized CoarseClock acquire(int precision) {
+    CoarseClock		result;
+
+    precision = snap(precision);
+    result    = m_Clocks.get(precision);
+    if (result == null) {
+      result = new CoarseClock(precision);
+      m_Clocks.put(precision, result);
+    }
+    result.m_Users++;
+
+    return result;
+  }
+}
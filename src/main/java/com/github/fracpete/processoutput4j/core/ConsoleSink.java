@@ -0,0 +1,580 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ConsoleSink.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+package com.github.fracpete.processoutput4j.core;
+
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes the lines of any number of processes to stdout/stderr of the JVM
+ * with a single writer thread. Readers merely enqueue the raw bytes of
+ * their lines, the writer renders prefix and line into a byte buffer and
+ * writes it in large batches, flushing at least every flush interval.
+ * Rather than every reader competing for the lock of
+ * {@link System#out} for every single line, only the writer acquires it,
+ * once per batch. Since the bytes are not decoded and re-encoded, the
+ * output appears in the encoding of the processes.
+ * <br>
+ * The prefix of a line can consist of the PID of the process, the time
+ * elapsed since the process started (sec.msec) and a fixed string, e.g.:
+ * <pre>
+ * [12345 +1.024s] [OUT] some output
+ * </pre>
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class ConsoleSink {
+
+  /** the name of the writer thread. */
+  public static final String THREAD_NAME = "processoutput4j-console";
+
+  /** the default maximum number of queued lines. */
+  public static final int DEFAULT_CAPACITY = 65536;
+
+  /** the default flush interval in msec. */
+  public static final int DEFAULT_FLUSH_INTERVAL = 20;
+
+  /** the number of buffered bytes that trigger a write. */
+  public static final int BATCH_BYTES = 65536;
+
+  /** the maximum number of lines taken from the queue at a time. */
+  public static final int BATCH_LINES = 4096;
+
+  /**
+   * A source of lines, i.e., stdout or stderr of a process, along with
+   * how to prefix its lines.
+   */
+  public static class Source {
+
+    /** whether stdout or stderr. */
+    protected boolean m_Stdout;
+
+    /** the PID of the process, -1 to omit. */
+    protected long m_PID;
+
+    /** the start time of the process (msec since epoch), -1 to omit elapsed time. */
+    protected long m_Start;
+
+    /** the fixed prefix. */
+    protected byte[] m_Prefix;
+
+    /**
+     * Initializes the source.
+     *
+     * @param stdout	whether stdout or stderr
+     * @param pid	the PID of the process, -1 to omit
+     * @param start	the start time of the process (msec since epoch), -1
+     * 			to omit the elapsed time
+     * @param prefix	the fixed prefix, can be null
+     */
+    public Source(boolean stdout, long pid, long start, String prefix) {
+      m_Stdout = stdout;
+      m_PID    = pid;
+      m_Start  = start;
+      m_Prefix = (prefix == null) ? new byte[0] : prefix.getBytes(Charset.defaultCharset());
+    }
+
+    /**
+     * Returns whether stdout or stderr.
+     *
+     * @return		true if stdout
+     */
+    public boolean isStdout() {
+      return m_Stdout;
+    }
+  }
+
+  /**
+   * Buffer for the rendered lines of one stream.
+   */
+  protected static class Buffer {
+
+    /** the stream to write to. */
+    public PrintStream stream;
+
+    /** the bytes. */
+    public byte[] data;
+
+    /** the number of bytes. */
+    public int length;
+
+    /**
+     * Initializes the buffer with the default size for batches.
+     */
+    public Buffer() {
+      this(BATCH_BYTES * 2);
+    }
+
+    /**
+     * Initializes the buffer.
+     *
+     * @param size	the initial size in bytes
+     */
+    public Buffer(int size) {
+      data = new byte[size];
+    }
+
+    /**
+     * Ensures that the specified number of bytes can be added.
+     *
+     * @param num	the number of bytes
+     */
+    protected void ensure(int num) {
+      if (length + num > data.length)
+	data = Arrays.copyOf(data, Math.max(data.length * 2, length + num));
+    }
+
+    /**
+     * Adds the byte.
+     *
+     * @param b		the byte
+     */
+    public void add(byte b) {
+      ensure(1);
+      data[length++] = b;
+    }
+
+    /**
+     * Adds the bytes.
+     *
+     * @param b		the bytes
+     */
+    public void add(byte[] b) {
+      add(b, 0, b.length);
+    }
+
+    /**
+     * Adds the bytes.
+     *
+     * @param b		the buffer with the bytes
+     * @param offset	the offset in the buffer
+     * @param num	the number of bytes
+     */
+    public void add(byte[] b, int offset, int num) {
+      ensure(num);
+      System.arraycopy(b, offset, data, length, num);
+      length += num;
+    }
+
+    /**
+     * Adds the decimal digits of the number.
+     *
+     * @param value	the number (non-negative)
+     * @param minDigits	the minimum number of digits, padded with zeroes
+     */
+    public void add(long value, int minDigits) {
+      int	digits;
+      long	v;
+      int	i;
+
+      digits = 1;
+      for (v = value / 10; v > 0; v /= 10)
+	digits++;
+      digits = Math.max(digits, minDigits);
+      ensure(digits);
+      for (i = length + digits - 1; i >= length; i--) {
+	data[i] = (byte) ('0' + (value % 10));
+	value  /= 10;
+      }
+      length += digits;
+    }
+
+    /**
+     * Writes the buffered bytes to the stream.
+     */
+    public void write() {
+      if (length == 0)
+	return;
+      stream.write(data, 0, length);
+      stream.flush();
+      length = 0;
+    }
+  }
+
+  /** the shared sink. */
+  protected static ConsoleSink m_Default;
+
+  /** the {@code Process.pid()} method, null if not available. */
+  protected static Method m_PidMethod;
+
+  /** whether the pid method has been determined. */
+  protected static boolean m_PidMethodDetermined;
+
+  /** the queued, rendered lines for stdout. */
+  protected Queue<byte[]> m_Out;
+
+  /** the queued, rendered lines for stderr. */
+  protected Queue<byte[]> m_Err;
+
+  /** the free slots in the queues, readers block once exhausted. */
+  protected Semaphore m_Slots;
+
+  /** the flush interval in msec. */
+  protected int m_FlushInterval;
+
+  /** the number of lines enqueued. */
+  protected AtomicLong m_Enqueued;
+
+  /** the number of lines written (or dropped due to failure). */
+  protected volatile long m_Written;
+
+  /** the lock that threads in {@link #flush()} wait on. */
+  protected final Object m_Lock;
+
+  /** the number of threads waiting in {@link #flush()}. */
+  protected AtomicInteger m_Waiting;
+
+  /** whether the writer is idle, i.e., needs waking up by readers. */
+  protected volatile boolean m_Idle;
+
+  /** whether the writer thread has terminated. */
+  protected volatile boolean m_Terminated;
+
+  /** the writer thread. */
+  protected Thread m_Thread;
+
+  /**
+   * Initializes the sink.
+   *
+   * @param capacity		the maximum number of queued lines, once
+   * 				reached readers block
+   * @param flushInterval	the maximum delay in msec before buffered
+   * 				lines get written
+   */
+  public ConsoleSink(int capacity, int flushInterval) {
+    if (capacity < 1)
+      throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+    if (flushInterval < 1)
+      throw new IllegalArgumentException("Flush interval must be at least 1: " + flushInterval);
+    m_Out           = new ConcurrentLinkedQueue<>();
+    m_Err           = new ConcurrentLinkedQueue<>();
+    m_Slots         = new Semaphore(capacity);
+    m_FlushInterval = flushInterval;
+    m_Enqueued      = new AtomicLong();
+    m_Written       = 0;
+    m_Lock          = new Object();
+    m_Waiting       = new AtomicInteger();
+    m_Idle          = false;
+    m_Terminated    = false;
+    m_Thread        = new ReaderThreadFactory(THREAD_NAME).newThread(this::write);
+    m_Thread.start();
+  }
+
+  /**
+   * Returns the shared sink.
+   *
+   * @return		the sink
+   */
+  public static synchronized ConsoleSink getDefault() {
+    if (m_Default == null)
+      m_Default = new ConsoleSink(DEFAULT_CAPACITY, DEFAULT_FLUSH_INTERVAL);
+    return m_Default;
+  }
+
+  /**
+   * Returns the PID of the process, if the JVM supports it (Java 9+).
+   *
+   * @param process	the process
+   * @return		the PID, -1 if not available
+   */
+  public static synchronized long getPID(Process process) {
+    if (!m_PidMethodDetermined) {
+      try {
+	m_PidMethod = Process.class.getMethod("pid");
+      }
+      catch (Exception e) {
+	m_PidMethod = null;
+      }
+      m_PidMethodDetermined = true;
+    }
+    if (m_PidMethod == null)
+      return -1;
+    try {
+      return (Long) m_PidMethod.invoke(process);
+    }
+    catch (Exception e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Returns the flush interval.
+   *
+   * @return		the interval in msec
+   */
+  public int getFlushInterval() {
+    return m_FlushInterval;
+  }
+
+  /**
+   * Returns whether the writer thread has terminated. Lines enqueued
+   * afterwards get discarded.
+   *
+   * @return		true if terminated
+   */
+  public boolean isTerminated() {
+    return m_Terminated;
+  }
+
+  /**
+   * Enqueues the line, blocking if the queue is full. The line gets
+   * rendered right away, in the calling thread, and is handed to the
+   * writer without any locking.
+   *
+   * @param source	the source of the line
+   * @param data	the buffer with the line (without terminator)
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   */
+  public void enqueue(Source source, byte[] data, int offset, int length) {
+    byte[]	line;
+
+    if (m_Terminated)
+      return;
+    line = render(source, (source.m_Start != -1) ? System.currentTimeMillis() : 0, data, offset, length);
+    if (!m_Slots.tryAcquire()) {
+      // make room
+      LockSupport.unpark(m_Thread);
+      try {
+	m_Slots.acquire();
+      }
+      catch (InterruptedException e) {
+	Thread.currentThread().interrupt();
+	return;
+      }
+    }
+    m_Enqueued.incrementAndGet();
+    (source.m_Stdout ? m_Out : m_Err).offer(line);
+    if (m_Idle)
+      LockSupport.unpark(m_Thread);
+  }
+
+  /**
+   * Waits until all lines enqueued so far have been written, or the
+   * writer thread has terminated.
+   */
+  public void flush() {
+    long	target;
+
+    target = m_Enqueued.get();
+    if (m_Written >= target)
+      return;
+    m_Waiting.incrementAndGet();
+    try {
+      // serve waiting threads right away
+      LockSupport.unpark(m_Thread);
+      synchronized(m_Lock) {
+	while ((m_Written < target) && !m_Terminated) {
+	  try {
+	    m_Lock.wait();
+	  }
+	  catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    return;
+	  }
+	}
+      }
+    }
+    finally {
+      m_Waiting.decrementAndGet();
+    }
+  }
+
+  /**
+   * Returns the number of decimal digits of the number.
+   *
+   * @param value	the number (non-negative)
+   * @return		the number of digits
+   */
+  protected static int digits(long value) {
+    int		result;
+
+    result = 1;
+    for (value /= 10; value > 0; value /= 10)
+      result++;
+
+    return result;
+  }
+
+  /**
+   * Renders prefix, line and terminator into an array of the exact size.
+   *
+   * @param source	the source of the line
+   * @param timestamp	the arrival time (msec since epoch)
+   * @param data	the buffer with the line (without terminator)
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   * @return		the rendered line
+   */
+  protected byte[] render(Source source, long timestamp, byte[] data, int offset, int length) {
+    Buffer	buffer;
+    long	elapsed;
+    int		size;
+
+    elapsed = (source.m_Start != -1) ? Math.max(0, timestamp - source.m_Start) : 0;
+    size    = source.m_Prefix.length + length + 1;
+    if ((source.m_PID != -1) || (source.m_Start != -1)) {
+      size += 3;
+      if (source.m_PID != -1)
+	size += digits(source.m_PID);
+      if (source.m_Start != -1)
+	size += 6 + digits(elapsed / 1000);
+      if ((source.m_PID != -1) && (source.m_Start != -1))
+	size++;
+    }
+
+    buffer = new Buffer(size);
+    if ((source.m_PID != -1) || (source.m_Start != -1)) {
+      buffer.add((byte) '[');
+      if (source.m_PID != -1)
+	buffer.add(source.m_PID, 1);
+      if (source.m_Start != -1) {
+	if (source.m_PID != -1)
+	  buffer.add((byte) ' ');
+	buffer.add((byte) '+');
+	buffer.add(elapsed / 1000, 1);
+	buffer.add((byte) '.');
+	buffer.add(elapsed % 1000, 3);
+	buffer.add((byte) 's');
+      }
+      buffer.add((byte) ']');
+      buffer.add((byte) ' ');
+    }
+    buffer.add(source.m_Prefix);
+    buffer.add(data, offset, length);
+    buffer.add((byte) '\n');
+
+    return buffer.data;
+  }
+
+  /**
+   * Moves the queued lines into the buffer, freeing their slots.
+   *
+   * @param queue	the queue to drain
+   * @param buffer	the buffer to add the lines to
+   * @return		the number of lines
+   */
+  protected int drain(Queue<byte[]> queue, Buffer buffer) {
+    byte[]	line;
+    int		result;
+
+    result = 0;
+    while ((buffer.length < BATCH_BYTES) && ((line = queue.poll()) != null)) {
+      buffer.add(line);
+      result++;
+    }
+    m_Slots.release(result);
+
+    return result;
+  }
+
+  /**
+   * Takes the lines from the queues and writes them in batches. Failures
+   * get reported and the affected lines count as written, so that
+   * threads waiting in {@link #flush()} do not wait forever.
+   */
+  protected void write() {
+    Buffer	out;
+    Buffer	err;
+    long	deadline;
+    long	wait;
+    long	taken;
+
+    out = new Buffer();
+    err = new Buffer();
+    try {
+      while (true) {
+	if (m_Out.isEmpty() && m_Err.isEmpty()) {
+	  m_Idle = true;
+	  if (m_Out.isEmpty() && m_Err.isEmpty())
+	    LockSupport.park(this);
+	  m_Idle = false;
+	  Thread.interrupted();
+	  continue;
+	}
+
+	taken = 0;
+	try {
+	  out.stream = System.out;
+	  err.stream = System.err;
+	  deadline   = System.currentTimeMillis() + m_FlushInterval;
+
+	  // collect lines until enough bytes or flush interval reached
+	  while (true) {
+	    taken += drain(m_Out, out);
+	    taken += drain(m_Err, err);
+	    if ((out.length >= BATCH_BYTES) || (err.length >= BATCH_BYTES))
+	      break;
+	    // waiting threads get served right away
+	    if (m_Waiting.get() > 0)
+	      break;
+	    wait = deadline - System.currentTimeMillis();
+	    if (wait <= 0)
+	      break;
+	    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(wait));
+	    Thread.interrupted();
+	  }
+
+	  out.write();
+	  err.write();
+	}
+	catch (Throwable t) {
+	  System.err.println("Failed to write console output, discarding " + taken + " line(s):");
+	  t.printStackTrace();
+	  out.length = 0;
+	  err.length = 0;
+	}
+	written(taken);
+      }
+    }
+    finally {
+      m_Terminated = true;
+      // unblock readers waiting for room
+      m_Slots.release(Integer.MAX_VALUE / 2);
+      synchronized(m_Lock) {
+	m_Lock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Records the written lines and notifies threads waiting in
+   * {@link #flush()}.
+   *
+   * @param num		the number of lines
+   */
+  protected void written(long num) {
+    m_Written += num;
+    if (m_Waiting.get() > 0) {
+      synchronized(m_Lock) {
+	m_Lock.notifyAll();
+      }
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * LineSequencer.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+/**
+ * Hands out the sequence numbers for the lines of stdout and stderr of a
+ * process. Readers also synchronize on the sequencer while delivering a
+ * line, so lines arrive in the order of their sequence numbers.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class LineSequencer {
+
+  /** the next sequence number. */
+  protected long m_Next;
+
+  /**
+   * Initializes the sequencer, starting at 0.
+   */
+  public LineSequencer() {
+    m_Next = 0;
+  }
+
+  /**
+   * Returns the next sequence number.
+   *
+   * @return		the sequence number
+   */
+  public synchronized long next() {
+    return m_Next++;
+  }
+
+  /**
+   * Returns the number of sequence numbers handed out so far.
+   *
+   * @return		the count
+   */
+  public synchronized long count() {
+    return m_Next;
+  }
+}
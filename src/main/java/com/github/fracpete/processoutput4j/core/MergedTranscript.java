@@ -0,0 +1,287 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MergedTranscript.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Stores the lines of stdout and stderr in the order they arrived. The
+ * index of a line is its sequence number. Rather than using an object per
+ * line, the text is kept in a single buffer, with the line offsets in an
+ * int array, the arrival times in a long array and the stream identities
+ * in a bit set. For each stream, an int array maps the line numbers of the
+ * stream to the indices in the transcript.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class MergedTranscript
+  implements Serializable {
+
+  /** for serialization. */
+  private static final long serialVersionUID = -5693458166937219850L;
+
+  /** the text of all lines, each terminated by \n. */
+  protected StringBuilder m_Text;
+
+  /** the start offsets of the lines in the text. */
+  protected int[] m_Offsets;
+
+  /** the arrival times of the lines. */
+  protected long[] m_Timestamps;
+
+  /** set bits indicate lines from stderr. */
+  protected BitSet m_StdErr;
+
+  /** the number of lines. */
+  protected int m_Size;
+
+  /** the indices of the stdout lines in the transcript. */
+  protected int[] m_StdOutLines;
+
+  /** the number of stdout lines. */
+  protected int m_NumStdOut;
+
+  /** the indices of the stderr lines in the transcript. */
+  protected int[] m_StdErrLines;
+
+  /** the number of stderr lines. */
+  protected int m_NumStdErr;
+
+  /**
+   * Initializes the transcript.
+   */
+  public MergedTranscript() {
+    m_Text        = new StringBuilder();
+    m_Offsets     = new int[64];
+    m_Timestamps  = new long[64];
+    m_StdErr      = new BitSet();
+    m_Size        = 0;
+    m_StdOutLines = new int[64];
+    m_NumStdOut   = 0;
+    m_StdErrLines = new int[64];
+    m_NumStdErr   = 0;
+  }
+
+  /**
+   * Appends the line, without timestamp.
+   *
+   * @param line	the line to append
+   * @param stdout	whether from stdout or stderr
+   * @return		the sequence number of the line
+   */
+  public long append(String line, boolean stdout) {
+    return append(line, stdout, 0);
+  }
+
+  /**
+   * Appends the line.
+   *
+   * @param line	the line to append
+   * @param stdout	whether from stdout or stderr
+   * @param timestamp	the arrival time (msec since epoch), 0 if unknown
+   * @return		the sequence number of the line
+   */
+  public synchronized long append(String line, boolean stdout, long timestamp) {
+    int[]	offsets;
+    long[]	timestamps;
+
+    if (m_Size == m_Offsets.length) {
+      offsets = new int[m_Offsets.length * 2];
+      System.arraycopy(m_Offsets, 0, offsets, 0, m_Size);
+      m_Offsets = offsets;
+      timestamps = new long[offsets.length];
+      System.arraycopy(m_Timestamps, 0, timestamps, 0, m_Size);
+      m_Timestamps = timestamps;
+    }
+    m_Offsets[m_Size] = m_Text.length();
+    m_Timestamps[m_Size] = timestamp;
+    if (stdout) {
+      if (m_NumStdOut == m_StdOutLines.length)
+	m_StdOutLines = Arrays.copyOf(m_StdOutLines, m_StdOutLines.length * 2);
+      m_StdOutLines[m_NumStdOut++] = m_Size;
+    }
+    else {
+      m_StdErr.set(m_Size);
+      if (m_NumStdErr == m_StdErrLines.length)
+	m_StdErrLines = Arrays.copyOf(m_StdErrLines, m_StdErrLines.length * 2);
+      m_StdErrLines[m_NumStdErr++] = m_Size;
+    }
+    m_Text.append(line).append('\n');
+
+    return m_Size++;
+  }
+
+  /**
+   * Returns the number of lines.
+   *
+   * @return		the number of lines
+   */
+  public synchronized int size() {
+    return m_Size;
+  }
+
+  /**
+   * Returns the number of lines from either stdout or stderr.
+   *
+   * @param stdout	whether to count stdout or stderr
+   * @return		the number of lines
+   */
+  public synchronized int size(boolean stdout) {
+    if (stdout)
+      return m_NumStdOut;
+    else
+      return m_NumStdErr;
+  }
+
+  /**
+   * Returns the index in the transcript of a line of either stdout or
+   * stderr.
+   *
+   * @param index	the index of the line of the stream
+   * @param stdout	whether a line of stdout or stderr
+   * @return		the index (= sequence number) in the transcript
+   */
+  public synchronized int indexOf(int index, boolean stdout) {
+    if ((index < 0) || (index >= size(stdout)))
+      throw new IndexOutOfBoundsException("Line " + index + " not in [0," + size(stdout) + ")");
+    return stdout ? m_StdOutLines[index] : m_StdErrLines[index];
+  }
+
+  /**
+   * Returns the specified range of lines of either stdout or stderr.
+   *
+   * @param from	the index of the first line of the stream (incl)
+   * @param to		the index of the last line of the stream (excl)
+   * @param stdout	whether to return lines from stdout or stderr
+   * @return		the lines, without terminators
+   */
+  public synchronized List<String> getLines(int from, int to, boolean stdout) {
+    List<String>	result;
+    int[]		lines;
+    int			size;
+    int			index;
+    int			i;
+
+    size = size(stdout);
+    if ((from < 0) || (to > size) || (from > to))
+      throw new IndexOutOfBoundsException("Invalid range [" + from + "," + to + ") for " + size + " lines");
+
+    lines  = stdout ? m_StdOutLines : m_StdErrLines;
+    result = new ArrayList<>(to - from);
+    for (i = from; i < to; i++) {
+      index = lines[i];
+      result.add(m_Text.substring(m_Offsets[index], end(index) - 1));
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the specified line.
+   *
+   * @param index	the index (= sequence number) of the line
+   * @return		the line, without terminator
+   */
+  public synchronized String getLine(int index) {
+    if ((index < 0) || (index >= m_Size))
+      throw new IndexOutOfBoundsException("Line " + index + " not in [0," + m_Size + ")");
+    return m_Text.substring(m_Offsets[index], end(index) - 1);
+  }
+
+  /**
+   * Returns whether the specified line came from stdout or stderr.
+   *
+   * @param index	the index (= sequence number) of the line
+   * @return		true if from stdout
+   */
+  public synchronized boolean isStdOut(int index) {
+    if ((index < 0) || (index >= m_Size))
+      throw new IndexOutOfBoundsException("Line " + index + " not in [0," + m_Size + ")");
+    return !m_StdErr.get(index);
+  }
+
+  /**
+   * Returns the arrival time of the specified line.
+   *
+   * @param index	the index (= sequence number) of the line
+   * @return		the timestamp (msec since epoch), 0 if unknown
+   */
+  public synchronized long getTimestamp(int index) {
+    if ((index < 0) || (index >= m_Size))
+      throw new IndexOutOfBoundsException("Line " + index + " not in [0," + m_Size + ")");
+    return m_Timestamps[index];
+  }
+
+  /**
+   * Returns the offset after the specified line (incl. terminator).
+   *
+   * @param index	the index of the line
+   * @return		the end offset
+   */
+  protected int end(int index) {
+    if (index == m_Size - 1)
+      return m_Text.length();
+    else
+      return m_Offsets[index + 1];
+  }
+
+  /**
+   * Returns the lines of stdout and stderr in the order they arrived.
+   *
+   * @return		the text, each line terminated by \n
+   */
+  public synchronized String getText() {
+    return m_Text.toString();
+  }
+
+  /**
+   * Returns only the lines of either stdout or stderr.
+   *
+   * @param stdout	whether to return stdout or stderr
+   * @return		the text, each line terminated by \n
+   */
+  public synchronized String getText(boolean stdout) {
+    StringBuilder	result;
+    int			i;
+
+    result = new StringBuilder();
+    for (i = 0; i < m_Size; i++) {
+      if (m_StdErr.get(i) != stdout)
+	result.append(m_Text, m_Offsets[i], end(i));
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Returns the lines of stdout and stderr in the order they arrived.
+   *
+   * @return		the text
+   */
+  @Override
+  public String toString() {
+    return getText();
+  }
+}
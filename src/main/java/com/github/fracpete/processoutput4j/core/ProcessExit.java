@@ -0,0 +1,80 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ProcessExit.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import java.io.Serializable;
+
+/**
+ * Container for the exit code of a process and when it exited.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class ProcessExit
+  implements Serializable {
+
+  /** for serialization. */
+  private static final long serialVersionUID = -2417780215334183862L;
+
+  /** the exit code. */
+  protected int m_ExitCode;
+
+  /** the timestamp (msec since epoch). */
+  protected long m_Timestamp;
+
+  /**
+   * Initializes the container.
+   *
+   * @param exitCode	the exit code
+   * @param timestamp	the timestamp (msec since epoch) of the exit
+   */
+  public ProcessExit(int exitCode, long timestamp) {
+    m_ExitCode  = exitCode;
+    m_Timestamp = timestamp;
+  }
+
+  /**
+   * Returns the exit code.
+   *
+   * @return		the exit code
+   */
+  public int getExitCode() {
+    return m_ExitCode;
+  }
+
+  /**
+   * Returns when the process exited.
+   *
+   * @return		the timestamp (msec since epoch)
+   */
+  public long getTimestamp() {
+    return m_Timestamp;
+  }
+
+  /**
+   * Returns a short description string.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return "exit code=" + m_ExitCode + ", timestamp=" + m_Timestamp;
+  }
+}
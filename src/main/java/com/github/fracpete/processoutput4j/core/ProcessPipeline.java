@@ -0,0 +1,277 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ProcessPipeline.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ProcessBuilder.Redirect;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Starts a pipeline of processes (like <code>A | B | C</code> in a shell),
+ * with stdout of each stage connected to stdin of the next one. On
+ * Java 9+, the stages get started via <code>ProcessBuilder.startPipeline</code>
+ * (accessed via reflection, as the library still targets Java 8), i.e., the
+ * operating system connects the stages directly. On older JVMs, the bytes
+ * get pumped from one stage to the next by tasks run by an executor instead.
+ * <br>
+ * Just like with <code>startPipeline</code>, stdout of all but the last
+ * stage and stdin of all but the first stage must not be redirected.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class ProcessPipeline {
+
+  /** the size of the buffer for pumping bytes between stages. */
+  public static final int PUMP_BUFFER_SIZE = 65536;
+
+  /** the startPipeline method, null if not available. */
+  protected static Method m_StartMethod;
+
+  /** whether the startPipeline method has been determined. */
+  protected static boolean m_StartMethodDetermined;
+
+  /** the processes of the stages. */
+  protected List<Process> m_Processes;
+
+  /** completes once all bytes have been pumped between the stages. */
+  protected CompletableFuture<Void> m_Pumps;
+
+  /** whether the stages are connected by the operating system. */
+  protected boolean m_Native;
+
+  /**
+   * Initializes the pipeline.
+   *
+   * @param processes	the processes of the stages
+   * @param pumps	completes once all bytes have been pumped, null if
+   * 			connected by the operating system
+   */
+  protected ProcessPipeline(List<Process> processes, CompletableFuture<Void> pumps) {
+    m_Processes = Collections.unmodifiableList(new ArrayList<>(processes));
+    m_Native    = (pumps == null);
+    m_Pumps     = (pumps == null) ? CompletableFuture.completedFuture(null) : pumps;
+  }
+
+  /**
+   * Returns the processes of the stages.
+   *
+   * @return		the processes, in pipeline order
+   */
+  public List<Process> getProcesses() {
+    return m_Processes;
+  }
+
+  /**
+   * Returns the first stage.
+   *
+   * @return		the process
+   */
+  public Process getFirst() {
+    return m_Processes.get(0);
+  }
+
+  /**
+   * Returns the last stage.
+   *
+   * @return		the process
+   */
+  public Process getLast() {
+    return m_Processes.get(m_Processes.size() - 1);
+  }
+
+  /**
+   * Returns the future that completes once all bytes have been pumped
+   * between the stages.
+   *
+   * @return		the future, already completed if connected by the
+   * 			operating system
+   */
+  public CompletableFuture<Void> getPumps() {
+    return m_Pumps;
+  }
+
+  /**
+   * Returns whether the stages are connected by the operating system.
+   *
+   * @return		true if no bytes get pumped by the JVM
+   */
+  public boolean isNative() {
+    return m_Native;
+  }
+
+  /**
+   * Destroys all stages.
+   */
+  public void destroy() {
+    for (Process process: m_Processes)
+      process.destroy();
+  }
+
+  /**
+   * Returns the <code>ProcessBuilder.startPipeline</code> method (Java 9+).
+   *
+   * @return		the method, null if not available
+   */
+  protected static synchronized Method getStartMethod() {
+    if (!m_StartMethodDetermined) {
+      try {
+	m_StartMethod = ProcessBuilder.class.getMethod("startPipeline", List.class);
+      }
+      catch (Exception e) {
+	m_StartMethod = null;
+      }
+      m_StartMethodDetermined = true;
+    }
+    return m_StartMethod;
+  }
+
+  /**
+   * Returns whether the JVM connects the stages natively (Java 9+).
+   *
+   * @return		true if available
+   */
+  public static boolean isNativeAvailable() {
+    return (getStartMethod() != null);
+  }
+
+  /**
+   * Starts the pipeline.
+   *
+   * @param builders	the builders of the stages, in pipeline order
+   * @param executor	the executor for pumping the bytes between the
+   * 			stages, if not connected by the operating system
+   * @return		the started pipeline
+   * @throws IOException	if starting a stage fails, any already started
+   * 				stages get destroyed
+   * @throws IllegalArgumentException	if no stages or invalid redirects
+   */
+  @SuppressWarnings("unchecked")
+  public static ProcessPipeline start(List<ProcessBuilder> builders, Executor executor) throws IOException {
+    Method	method;
+
+    if (builders.isEmpty())
+      throw new IllegalArgumentException("At least one stage required!");
+
+    method = getStartMethod();
+    if (method == null)
+      return startPumped(builders, executor);
+
+    try {
+      return new ProcessPipeline((List<Process>) method.invoke(null, builders), null);
+    }
+    catch (InvocationTargetException e) {
+      if (e.getCause() instanceof IOException)
+	throw (IOException) e.getCause();
+      if (e.getCause() instanceof RuntimeException)
+	throw (RuntimeException) e.getCause();
+      throw new IOException("Failed to start pipeline", e.getCause());
+    }
+    catch (IllegalAccessException e) {
+      throw new IOException("Failed to start pipeline", e);
+    }
+  }
+
+  /**
+   * Starts the stages one by one, pumping the bytes between them.
+   *
+   * @param builders	the builders of the stages, in pipeline order
+   * @param executor	the executor for pumping the bytes
+   * @return		the started pipeline
+   * @throws IOException	if starting a stage fails
+   */
+  protected static ProcessPipeline startPumped(List<ProcessBuilder> builders, Executor executor) throws IOException {
+    List<Process>			processes;
+    List<CompletableFuture<Void>>	pumps;
+    int					i;
+
+    for (i = 0; i < builders.size(); i++) {
+      if ((i < builders.size() - 1) && (builders.get(i).redirectOutput() != Redirect.PIPE))
+	throw new IllegalArgumentException("Stdout of stage " + i + " must not be redirected: " + builders.get(i).redirectOutput());
+      if ((i > 0) && (builders.get(i).redirectInput() != Redirect.PIPE))
+	throw new IllegalArgumentException("Stdin of stage " + i + " must not be redirected: " + builders.get(i).redirectInput());
+    }
+
+    processes = new ArrayList<>();
+    try {
+      for (ProcessBuilder builder: builders)
+	processes.add(builder.start());
+    }
+    catch (IOException | RuntimeException e) {
+      for (Process process: processes)
+	process.destroy();
+      throw e;
+    }
+
+    pumps = new ArrayList<>();
+    for (i = 0; i < processes.size() - 1; i++) {
+      final InputStream in = processes.get(i).getInputStream();
+      final OutputStream out = processes.get(i + 1).getOutputStream();
+      pumps.add(CompletableFuture.runAsync(() -> pump(in, out), executor));
+    }
+
+    return new ProcessPipeline(processes, CompletableFuture.allOf(pumps.toArray(new CompletableFuture<?>[0])));
+  }
+
+  /**
+   * Copies the bytes from stdout of one stage to stdin of the next one.
+   * Both streams get closed at the end, which lets the next stage see the
+   * end of its input and the previous stage a broken pipe once the next
+   * stage has finished reading early.
+   *
+   * @param in		stdout of the previous stage
+   * @param out		stdin of the next stage
+   */
+  protected static void pump(InputStream in, OutputStream out) {
+    byte[]	buffer;
+    int		read;
+
+    buffer = new byte[PUMP_BUFFER_SIZE];
+    try {
+      while ((read = in.read(buffer)) != -1)
+	out.write(buffer, 0, read);
+    }
+    catch (IOException e) {
+      // next stage stopped reading
+    }
+    finally {
+      try {
+	out.close();
+      }
+      catch (IOException e) {
+	// ignored
+      }
+      try {
+	in.close();
+      }
+      catch (IOException e) {
+	// ignored
+      }
+    }
+  }
+}
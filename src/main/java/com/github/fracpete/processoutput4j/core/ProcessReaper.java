@@ -0,0 +1,217 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ProcessReaper.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Notifies about the exit of processes without blocking a thread per
+ * process in {@link Process#waitFor()}.
+ * <br>
+ * On Java 9+, the notification piggybacks on {@code Process.onExit()},
+ * which is driven by the JVM's own reaper for the process. On Java 8, a
+ * single daemon thread checks all registered processes at the specified
+ * interval.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class ProcessReaper {
+
+  /** the name of the polling thread. */
+  public static final String THREAD_NAME = "processoutput4j-reaper";
+
+  /** the default polling interval in msec. */
+  public static final int DEFAULT_INTERVAL = 10;
+
+  /**
+   * Container for a registered process.
+   */
+  protected static class Entry {
+
+    /** the process. */
+    public Process process;
+
+    /** the future to complete. */
+    public CompletableFuture<ProcessExit> future;
+  }
+
+  /** the shared reaper. */
+  protected static ProcessReaper m_Default;
+
+  /** the polling interval in msec. */
+  protected int m_Interval;
+
+  /** the {@code Process.onExit()} method, null if not available. */
+  protected Method m_OnExit;
+
+  /** the newly registered processes (polling only). */
+  protected Queue<Entry> m_Pending;
+
+  /** the polling thread, null if not started or not required. */
+  protected Thread m_Thread;
+
+  /**
+   * Initializes the reaper with the default polling interval.
+   */
+  public ProcessReaper() {
+    this(DEFAULT_INTERVAL);
+  }
+
+  /**
+   * Initializes the reaper.
+   *
+   * @param interval	the polling interval in msec, only used when
+   * 			{@code Process.onExit()} is not available
+   */
+  public ProcessReaper(int interval) {
+    if (interval < 1)
+      throw new IllegalArgumentException("Interval must be at least 1: " + interval);
+    m_Interval = interval;
+    m_Pending  = new ConcurrentLinkedQueue<>();
+    try {
+      m_OnExit = Process.class.getMethod("onExit");
+    }
+    catch (Exception e) {
+      m_OnExit = null;
+    }
+  }
+
+  /**
+   * Returns the polling interval.
+   *
+   * @return		the interval in msec
+   */
+  public int getInterval() {
+    return m_Interval;
+  }
+
+  /**
+   * Returns whether the reaper polls the processes, rather than relying on
+   * {@code Process.onExit()}.
+   *
+   * @return		true if polling
+   */
+  public boolean isPolling() {
+    return (m_OnExit == null);
+  }
+
+  /**
+   * Registers the process.
+   *
+   * @param process	the process to get notified about
+   * @return		the future that completes once the process has exited
+   */
+  public CompletableFuture<ProcessExit> register(final Process process) {
+    CompletableFuture<ProcessExit>	result;
+    CompletableFuture<?>		exit;
+    Entry				entry;
+
+    result = new CompletableFuture<>();
+
+    if (m_OnExit != null) {
+      try {
+	exit = (CompletableFuture<?>) m_OnExit.invoke(process);
+	exit.whenComplete((p, error) -> {
+	  if (error != null)
+	    result.completeExceptionally(error);
+	  else
+	    result.complete(new ProcessExit(process.exitValue(), System.currentTimeMillis()));
+	});
+	return result;
+      }
+      catch (Exception e) {
+	// fall back to polling
+      }
+    }
+
+    entry         = new Entry();
+    entry.process = process;
+    entry.future  = result;
+    m_Pending.add(entry);
+    startThread();
+
+    return result;
+  }
+
+  /**
+   * Starts the polling thread, if necessary.
+   */
+  protected synchronized void startThread() {
+    if (m_Thread == null) {
+      m_Thread = new Thread(this::poll, THREAD_NAME);
+      m_Thread.setDaemon(true);
+      m_Thread.start();
+    }
+    else {
+      LockSupport.unpark(m_Thread);
+    }
+  }
+
+  /**
+   * Checks the registered processes at the specified interval.
+   */
+  protected void poll() {
+    List<Entry>		active;
+    Iterator<Entry>	iter;
+    Entry		entry;
+    long		now;
+
+    active = new ArrayList<>();
+    while (true) {
+      while ((entry = m_Pending.poll()) != null)
+	active.add(entry);
+
+      now  = System.currentTimeMillis();
+      iter = active.iterator();
+      while (iter.hasNext()) {
+	entry = iter.next();
+	if (!entry.process.isAlive()) {
+	  entry.future.complete(new ProcessExit(entry.process.exitValue(), now));
+	  iter.remove();
+	}
+      }
+
+      if (active.isEmpty())
+	LockSupport.park(this);
+      else
+	LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(m_Interval));
+    }
+  }
+
+  /**
+   * Returns the shared reaper.
+   *
+   * @return		the reaper
+   */
+  public static synchronized ProcessReaper getDefault() {
+    if (m_Default == null)
+      m_Default = new ProcessReaper();
+    return m_Default;
+  }
+}
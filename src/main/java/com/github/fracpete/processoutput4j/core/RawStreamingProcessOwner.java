@@ -0,0 +1,47 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * RawStreamingProcessOwner.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import java.nio.charset.Charset;
+
+/**
+ * Interface for owners that process the raw bytes of the lines, avoiding
+ * the allocation of a string per line. The reader calls
+ * {@link #processOutput(byte[], int, int, Charset, boolean)} instead of
+ * {@link #processOutput(String, boolean)}.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public interface RawStreamingProcessOwner
+  extends StreamingProcessOwner {
+
+  /**
+   * Processes the incoming line. The buffer gets reused by the reader,
+   * i.e., its content is only valid for the duration of the call.
+   *
+   * @param data	the buffer with the line (without line terminator)
+   * @param offset	the offset of the line in the buffer
+   * @param length	the number of bytes of the line
+   * @param charset	the charset for decoding the bytes
+   * @param stdout	whether stdout or stderr
+   */
+  public void processOutput(byte[] data, int offset, int length, Charset charset, boolean stdout);
+}
@@ -0,0 +1,244 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ReaderExecutors.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Helper class for the executors that run the stdout/stderr readers.
+ * <br>
+ * Every monitored process occupies two reader tasks for as long as it
+ * writes output, hence bounded pools must offer at least two threads per
+ * concurrently monitored process. Otherwise a process can block on a
+ * full pipe whose reader is still queued.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public final class ReaderExecutors {
+
+  /** the default prefix for the thread names. */
+  public static final String DEFAULT_PREFIX = "processoutput4j-reader";
+
+  /** the number of seconds idle threads are kept alive. */
+  public static final int KEEP_ALIVE = 60;
+
+  /** the default prefix for the names of virtual threads. */
+  public static final String VIRTUAL_PREFIX = "processoutput4j-vreader";
+
+  /** the name prefix of the scheduler thread. */
+  public static final String SCHEDULER_PREFIX = "processoutput4j-scheduler";
+
+  /** the shared default executor. */
+  protected static ExecutorService m_Default;
+
+  /** the shared executor for virtual threads. */
+  protected static ExecutorService m_Virtual;
+
+  /** whether virtual threads are available (null if not yet determined). */
+  protected static Boolean m_VirtualAvailable;
+
+  /** the shared scheduler for timed tasks. */
+  protected static ScheduledExecutorService m_Scheduler;
+
+  /**
+   * Not to be instantiated.
+   */
+  private ReaderExecutors() {
+  }
+
+  /**
+   * Returns the shared default executor, a cached pool of daemon threads
+   * that reuses idle threads.
+   *
+   * @return		the executor
+   */
+  public static synchronized ExecutorService getDefault() {
+    if (m_Default == null)
+      m_Default = newCachedPool(DEFAULT_PREFIX, 0);
+    return m_Default;
+  }
+
+  /**
+   * Sets the shared default executor that outputs use, which have no
+   * executor of their own.
+   *
+   * @param value	the executor, null to revert to the built-in one
+   */
+  public static synchronized void setDefault(ExecutorService value) {
+    m_Default = value;
+  }
+
+  /**
+   * Returns the shared scheduler for short, timed tasks of the readers
+   * (e.g., flushing). Uses a single daemon thread.
+   *
+   * @return		the scheduler
+   */
+  public static synchronized ScheduledExecutorService getScheduler() {
+    ScheduledThreadPoolExecutor	scheduler;
+
+    if (m_Scheduler == null) {
+      scheduler = new ScheduledThreadPoolExecutor(1, new ReaderThreadFactory(SCHEDULER_PREFIX));
+      scheduler.setRemoveOnCancelPolicy(true);
+      m_Scheduler = scheduler;
+    }
+    return m_Scheduler;
+  }
+
+  /**
+   * Returns whether the JVM supports virtual threads (Java 21+). Probes
+   * this by actually running a task in a virtual thread, as the API is
+   * present but only usable with --enable-preview on Java 19 and 20.
+   *
+   * @return		true if available
+   */
+  public static synchronized boolean isVirtualAvailable() {
+    ExecutorService	probe;
+
+    if (m_VirtualAvailable == null) {
+      try {
+	probe = newVirtualExecutor(VIRTUAL_PREFIX + "-probe");
+	try {
+	  probe.submit(() -> {}).get();
+	}
+	finally {
+	  probe.shutdown();
+	}
+	m_VirtualAvailable = true;
+      }
+      catch (InterruptedException e) {
+	Thread.currentThread().interrupt();
+	return false;
+      }
+      catch (Exception | LinkageError e) {
+	m_VirtualAvailable = false;
+      }
+    }
+    return m_VirtualAvailable;
+  }
+
+  /**
+   * Returns the shared executor that runs each task in its own virtual
+   * thread. Falls back to the default executor if the JVM does not support
+   * virtual threads.
+   *
+   * @return		the executor
+   * @see		#isVirtualAvailable()
+   * @see		#getDefault()
+   */
+  public static synchronized ExecutorService getVirtual() {
+    if (m_Virtual == null) {
+      if (isVirtualAvailable())
+	m_Virtual = newVirtualExecutor(VIRTUAL_PREFIX);
+      else
+	return getDefault();
+    }
+    return m_Virtual;
+  }
+
+  /**
+   * Returns the executor for the specified thread mode.
+   *
+   * @param mode	the thread mode
+   * @return		the shared executor for this mode
+   */
+  public static ExecutorService getDefault(ReaderThreadMode mode) {
+    if (mode == ReaderThreadMode.VIRTUAL)
+      return getVirtual();
+    else
+      return getDefault();
+  }
+
+  /**
+   * Creates an executor that starts a new named virtual thread per task.
+   * The virtual thread API gets accessed via reflection, as the library
+   * still targets Java 8.
+   *
+   * @param prefix	the prefix for the thread names
+   * @return		the executor
+   * @throws IllegalStateException	if the JVM does not support virtual threads
+   */
+  public static ExecutorService newVirtualExecutor(String prefix) {
+    Object		builder;
+    Class<?>		cls;
+    Method		method;
+    ThreadFactory	factory;
+
+    try {
+      builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      cls     = Class.forName("java.lang.Thread$Builder");
+      builder = cls.getMethod("name", String.class, Long.TYPE).invoke(builder, prefix + "-", 1L);
+      factory = (ThreadFactory) cls.getMethod("factory").invoke(builder);
+      method  = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+      return (ExecutorService) method.invoke(null, factory);
+    }
+    catch (Exception e) {
+      throw new IllegalStateException("Virtual threads not supported by JVM " + System.getProperty("java.version"), e);
+    }
+  }
+
+  /**
+   * Creates an unbounded pool that reuses idle threads.
+   *
+   * @param prefix	the prefix for the thread names
+   * @param stackSize	the stack size in bytes, 0 for JVM default
+   * @return		the executor
+   */
+  public static ExecutorService newCachedPool(String prefix, long stackSize) {
+    return new ThreadPoolExecutor(
+      0, Integer.MAX_VALUE, KEEP_ALIVE, TimeUnit.SECONDS,
+      new SynchronousQueue<Runnable>(),
+      new ReaderThreadFactory(prefix, stackSize, true));
+  }
+
+  /**
+   * Creates a pool with a fixed maximum number of threads. Idle threads
+   * time out.
+   *
+   * @param size	the maximum number of threads
+   * @param prefix	the prefix for the thread names
+   * @param stackSize	the stack size in bytes, 0 for JVM default
+   * @return		the executor
+   */
+  public static ExecutorService newPool(int size, String prefix, long stackSize) {
+    ThreadPoolExecutor	result;
+
+    if (size < 1)
+      throw new IllegalArgumentException("Pool size must be at least 1: " + size);
+
+    result = new ThreadPoolExecutor(
+      size, size, KEEP_ALIVE, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>(),
+      new ReaderThreadFactory(prefix, stackSize, true));
+    result.allowCoreThreadTimeOut(true);
+
+    return result;
+  }
+}
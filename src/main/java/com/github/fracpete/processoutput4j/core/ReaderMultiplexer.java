@@ -0,0 +1,410 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ReaderMultiplexer.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import com.github.fracpete.processoutput4j.reader.AbstractProcessReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads stdout/stderr of many processes with a small, fixed number of I/O
+ * threads, rather than blocking one thread per stream. The I/O threads
+ * take turns on all streams registered with them, only reading the data
+ * that is already available, and pass it on to the readers via
+ * {@link AbstractProcessReader#feed(byte[], int, int)}. Idle threads back
+ * off up to the configured maximum delay.
+ * <br>
+ * Since the streams of {@link Process} objects are not selectable, the end
+ * of a stream is detected once the process has exited: the remainder of
+ * the stream then gets drained by a blocking task on the drain executor
+ * (see {@link #setDrainExecutor(Executor)}), as a child process left
+ * running by the process may keep the pipe open. This way, such a pipe
+ * does not stall the other streams of the I/O thread.
+ * <br>
+ * Readers always get notified of the end of their stream, also when
+ * reading fails or the multiplexer gets closed, so that they can release
+ * any waiting consumers (e.g., decoupled readers).
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class ReaderMultiplexer {
+
+  /** the default prefix for the thread names. */
+  public static final String DEFAULT_PREFIX = "processoutput4j-mux";
+
+  /** the default buffer size. */
+  public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+  /** the default maximum delay in msec when idle. */
+  public static final int DEFAULT_MAX_IDLE = 20;
+
+  /**
+   * Container for a registered reader.
+   */
+  protected static class Entry {
+
+    /** the reader. */
+    public AbstractProcessReader reader;
+
+    /** the stream to read from. */
+    public InputStream stream;
+
+    /** the future to complete once the stream is exhausted. */
+    public CompletableFuture<Void> future;
+
+    /** whether the entry has been handed over for draining. */
+    public boolean draining;
+  }
+
+  /**
+   * An I/O thread, taking turns on its registered streams.
+   */
+  protected class Worker
+    implements Runnable {
+
+    /** the newly registered readers. */
+    protected Queue<Entry> m_Pending = new ConcurrentLinkedQueue<>();
+
+    /** the readers currently being read from. */
+    protected List<Entry> m_Active = new ArrayList<>();
+
+    /** the number of streams (pending and active). */
+    protected AtomicInteger m_Count = new AtomicInteger();
+
+    /** the thread executing the worker. */
+    protected Thread m_Thread;
+
+    /** the read buffer. */
+    protected byte[] m_Buffer = new byte[m_BufferSize];
+
+    /**
+     * Reads from the entry, if possible.
+     *
+     * @param entry	the entry to read from
+     * @return		true if data was read or the stream got handed
+     * 			over for draining
+     * @throws Exception	if reading fails
+     */
+    protected boolean poll(Entry entry) throws Exception {
+      int	avail;
+      int	read;
+
+      avail = entry.stream.available();
+      if (avail > 0) {
+	read = entry.stream.read(m_Buffer, 0, Math.min(avail, m_Buffer.length));
+	entry.reader.feed(m_Buffer, 0, read);
+	return true;
+      }
+
+      if (!entry.reader.getProcess().isAlive()) {
+	// reading could block if a child of the process keeps the pipe open
+	entry.draining = true;
+	CompletableFuture.runAsync(() -> drain(entry), m_DrainExecutor);
+	return true;
+      }
+
+      return false;
+    }
+
+    /**
+     * Fails the future of the entry, as its stream won't get read any further.
+     * The reader gets notified of the end of the stream.
+     *
+     * @param entry	the entry to fail
+     */
+    protected void closed(Entry entry) {
+      finish(entry, new IOException("Multiplexer closed"));
+    }
+
+    /**
+     * Takes turns on the registered streams until the multiplexer is closed.
+     */
+    @Override
+    public void run() {
+      Iterator<Entry>	iter;
+      Entry		entry;
+      Entry		pending;
+      boolean		busy;
+      long		idle;
+
+      idle = 0;
+      while (!m_Closed) {
+	while ((pending = m_Pending.poll()) != null)
+	  m_Active.add(pending);
+
+	busy = false;
+	iter = m_Active.iterator();
+	while (iter.hasNext()) {
+	  entry = iter.next();
+	  try {
+	    if (poll(entry)) {
+	      busy = true;
+	      if (entry.draining) {
+		iter.remove();
+		m_Count.decrementAndGet();
+	      }
+	    }
+	  }
+	  catch (Exception e) {
+	    failed(entry, e);
+	    iter.remove();
+	    m_Count.decrementAndGet();
+	  }
+	}
+
+	if (busy) {
+	  idle = 0;
+	}
+	else {
+	  idle = Math.min(Math.max(idle * 2, 1), m_MaxIdle);
+	  LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(idle));
+	}
+      }
+
+      // release any remaining readers
+      for (Entry e: m_Active)
+	closed(e);
+      while ((pending = m_Pending.poll()) != null)
+	closed(pending);
+    }
+  }
+
+  /** the I/O threads. */
+  protected Worker[] m_Workers;
+
+  /** for draining the streams of exited processes. */
+  protected Executor m_DrainExecutor;
+
+  /** the buffer size per I/O thread. */
+  protected int m_BufferSize;
+
+  /** the maximum delay in msec when idle. */
+  protected int m_MaxIdle;
+
+  /** whether the multiplexer has been closed. */
+  protected volatile boolean m_Closed;
+
+  /**
+   * Initializes the multiplexer with the specified number of I/O threads
+   * and default settings otherwise.
+   *
+   * @param numThreads	the number of I/O threads
+   */
+  public ReaderMultiplexer(int numThreads) {
+    this(numThreads, DEFAULT_PREFIX, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_IDLE);
+  }
+
+  /**
+   * Initializes the multiplexer.
+   *
+   * @param numThreads	the number of I/O threads
+   * @param prefix	the prefix for the thread names
+   * @param bufferSize	the read buffer size per I/O thread
+   * @param maxIdle	the maximum delay in msec when idle
+   */
+  public ReaderMultiplexer(int numThreads, String prefix, int bufferSize, int maxIdle) {
+    ReaderThreadFactory	factory;
+    int			i;
+
+    if (numThreads < 1)
+      throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
+    if (bufferSize < 1)
+      throw new IllegalArgumentException("Buffer size must be at least 1: " + bufferSize);
+    if (maxIdle < 1)
+      throw new IllegalArgumentException("Maximum idle delay must be at least 1: " + maxIdle);
+
+    m_BufferSize    = bufferSize;
+    m_MaxIdle       = maxIdle;
+    m_Closed        = false;
+    m_DrainExecutor = ReaderExecutors.getDefault();
+    m_Workers       = new Worker[numThreads];
+    factory         = new ReaderThreadFactory(prefix);
+    for (i = 0; i < m_Workers.length; i++) {
+      m_Workers[i]          = new Worker();
+      m_Workers[i].m_Thread = factory.newThread(m_Workers[i]);
+      m_Workers[i].m_Thread.start();
+    }
+  }
+
+  /**
+   * Sets the executor for draining the remainder of the streams once their
+   * process has exited. Draining blocks until the pipe gets closed, e.g.,
+   * by a child process left running.
+   *
+   * @param value	the executor
+   */
+  public void setDrainExecutor(Executor value) {
+    if (value == null)
+      throw new IllegalArgumentException("Executor cannot be null!");
+    m_DrainExecutor = value;
+  }
+
+  /**
+   * Returns the executor for draining the remainder of the streams once
+   * their process has exited.
+   *
+   * @return		the executor
+   */
+  public Executor getDrainExecutor() {
+    return m_DrainExecutor;
+  }
+
+  /**
+   * Reads the remainder of the stream of an exited process, blocking until
+   * the end of the stream.
+   *
+   * @param entry	the entry to drain
+   */
+  protected void drain(Entry entry) {
+    byte[]	buffer;
+    int		read;
+
+    try {
+      buffer = new byte[m_BufferSize];
+      while ((read = entry.stream.read(buffer)) != -1)
+	entry.reader.feed(buffer, 0, read);
+      finish(entry, null);
+    }
+    catch (Exception e) {
+      failed(entry, e);
+    }
+  }
+
+  /**
+   * Reports the failure to read from the stream and finishes the entry.
+   *
+   * @param entry	the entry that failed
+   * @param error	the error
+   */
+  protected void failed(Entry entry, Exception error) {
+    System.err.println("Failed to read from " + (entry.reader.isStdout() ? "stdout" : "stderr") + " for process #" + entry.reader.getProcess().hashCode() + ":");
+    error.printStackTrace();
+    finish(entry, null);
+  }
+
+  /**
+   * Notifies the reader of the end of the stream (processing any incomplete
+   * last line) and completes the future of the entry.
+   *
+   * @param entry	the entry to finish
+   * @param error	the error to complete the future with, null to
+   * 			complete it normally
+   */
+  protected void finish(Entry entry, Throwable error) {
+    try {
+      entry.reader.finish();
+    }
+    catch (Exception e) {
+      System.err.println("Failed to finish " + (entry.reader.isStdout() ? "stdout" : "stderr") + " for process #" + entry.reader.getProcess().hashCode() + ":");
+      e.printStackTrace();
+    }
+    if (error == null)
+      entry.future.complete(null);
+    else
+      entry.future.completeExceptionally(error);
+  }
+
+  /**
+   * Returns the number of I/O threads.
+   *
+   * @return		the number of threads
+   */
+  public int getNumThreads() {
+    return m_Workers.length;
+  }
+
+  /**
+   * Returns the number of streams currently being read from by the I/O
+   * threads, i.e., excluding the ones being drained.
+   *
+   * @return		the number of streams
+   */
+  public int getNumStreams() {
+    int		result;
+
+    result = 0;
+    for (Worker worker: m_Workers)
+      result += worker.m_Count.get();
+
+    return result;
+  }
+
+  /**
+   * Registers the reader with the least busy I/O thread.
+   *
+   * @param reader	the reader to feed with the data from its stream
+   * @return		the future that completes once the stream is exhausted,
+   * 			exceptionally if the multiplexer gets closed before
+   */
+  public CompletableFuture<Void> register(AbstractProcessReader reader) {
+    CompletableFuture<Void>	result;
+    Entry			entry;
+    Worker			worker;
+
+    if (m_Closed)
+      throw new IllegalStateException("Multiplexer has been closed!");
+
+    result       = new CompletableFuture<>();
+    entry        = new Entry();
+    entry.reader = reader;
+    entry.stream = reader.getInputStream();
+    entry.future = result;
+
+    worker = m_Workers[0];
+    for (Worker w: m_Workers) {
+      if (w.m_Count.get() < worker.m_Count.get())
+	worker = w;
+    }
+    worker.m_Count.incrementAndGet();
+    worker.m_Pending.add(entry);
+    LockSupport.unpark(worker.m_Thread);
+
+    // closed concurrently, worker may have exited already
+    if (m_Closed && worker.m_Pending.remove(entry))
+      worker.closed(entry);
+
+    return result;
+  }
+
+  /**
+   * Stops the I/O threads. The readers that are still registered get
+   * notified of the end of their streams and their futures complete
+   * exceptionally with an {@link IOException}, as the remainder of their
+   * streams won't get read. Streams already being drained get read to the
+   * end.
+   */
+  public void close() {
+    m_Closed = true;
+    for (Worker worker: m_Workers)
+      LockSupport.unpark(worker.m_Thread);
+  }
+}
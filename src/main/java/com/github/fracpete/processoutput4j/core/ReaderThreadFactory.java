@@ -0,0 +1,116 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ReaderThreadFactory.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factory for the threads that read stdout/stderr of processes.
+ * Generates daemon threads with a common name prefix and an optional
+ * stack size.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class ReaderThreadFactory
+  implements ThreadFactory {
+
+  /** the prefix for the thread names. */
+  protected String m_Prefix;
+
+  /** the stack size (0 for JVM default). */
+  protected long m_StackSize;
+
+  /** whether to create daemon threads. */
+  protected boolean m_Daemon;
+
+  /** the counter for the thread names. */
+  protected AtomicInteger m_Counter;
+
+  /**
+   * Initializes the factory, generating daemon threads with the default
+   * stack size.
+   *
+   * @param prefix	the prefix for the thread names
+   */
+  public ReaderThreadFactory(String prefix) {
+    this(prefix, 0, true);
+  }
+
+  /**
+   * Initializes the factory.
+   *
+   * @param prefix	the prefix for the thread names
+   * @param stackSize	the stack size in bytes, 0 for JVM default
+   * @param daemon	whether to generate daemon threads
+   */
+  public ReaderThreadFactory(String prefix, long stackSize, boolean daemon) {
+    if (stackSize < 0)
+      throw new IllegalArgumentException("Stack size cannot be negative: " + stackSize);
+    m_Prefix    = prefix;
+    m_StackSize = stackSize;
+    m_Daemon    = daemon;
+    m_Counter   = new AtomicInteger();
+  }
+
+  /**
+   * Returns the prefix for the thread names.
+   *
+   * @return		the prefix
+   */
+  public String getPrefix() {
+    return m_Prefix;
+  }
+
+  /**
+   * Returns the stack size.
+   *
+   * @return		the stack size in bytes, 0 for JVM default
+   */
+  public long getStackSize() {
+    return m_StackSize;
+  }
+
+  /**
+   * Returns whether daemon threads are generated.
+   *
+   * @return		true if daemon threads
+   */
+  public boolean isDaemon() {
+    return m_Daemon;
+  }
+
+  /**
+   * Constructs a new thread.
+   *
+   * @param r		the runnable to execute
+   * @return		the thread, not yet started
+   */
+  @Override
+  public Thread newThread(Runnable r) {
+    Thread	result;
+
+    result = new Thread(null, r, m_Prefix + "-" + m_Counter.incrementAndGet(), m_StackSize);
+    result.setDaemon(m_Daemon);
+
+    return result;
+  }
+}
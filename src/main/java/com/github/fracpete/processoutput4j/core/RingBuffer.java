@@ -0,0 +1,309 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * RingBuffer.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bounded, lock-free ring buffer for handing over lines (raw bytes plus
+ * timestamp) from exactly one producer thread to one consumer thread. The
+ * capacity gets rounded up to a power of two. The bytes get copied into
+ * buffers owned by the slots, which get reused once the consumer has
+ * processed the line, and the timestamps are kept in a parallel array,
+ * i.e., no allocations occur in the steady state.
+ * <br>
+ * Besides the consumer, the producer may discard lines as well, e.g., the
+ * oldest line when full.
+ * <br>
+ * With {@link WaitStrategy#PARK}, a waiting thread parks until the other
+ * side unparks it, rather than waking up periodically.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class RingBuffer {
+
+  /**
+   * Processes a line, in place.
+   */
+  public interface Handler {
+
+    /**
+     * Processes the line. The content is only valid for the duration of
+     * the call.
+     *
+     * @param data	the buffer with the line
+     * @param offset	the offset in the buffer
+     * @param length	the number of bytes
+     * @param timestamp	the timestamp of the line
+     */
+    public void handle(byte[] data, int offset, int length, long timestamp);
+  }
+
+  /** the minimum size of a slot buffer. */
+  public static final int MIN_SLOT_SIZE = 128;
+
+  /** the slot buffers larger than this get replaced by smaller ones when possible. */
+  public static final int MAX_SLOT_SIZE = 64 * 1024;
+
+  /** the buffers of the slots. */
+  protected final byte[][] m_Data;
+
+  /** the lengths of the lines in the slots. */
+  protected final int[] m_Lengths;
+
+  /** the timestamps of the lines in the slots. */
+  protected final long[] m_Timestamps;
+
+  /** the mask for turning positions into slot indices. */
+  protected final int m_Mask;
+
+  /** the position of the next line to take. */
+  protected final AtomicLong m_Head;
+
+  /** the position of the next line to add (only advanced by producer). */
+  protected final AtomicLong m_Tail;
+
+  /** the position of the line the consumer is processing, Long.MAX_VALUE if none. */
+  protected volatile long m_Reading;
+
+  /** the parked consumer, null if none. */
+  protected volatile Thread m_WaitingConsumer;
+
+  /** the parked producer, null if none. */
+  protected volatile Thread m_WaitingProducer;
+
+  /**
+   * Initializes the buffer.
+   *
+   * @param capacity	the minimum capacity, gets rounded up to a power of two
+   */
+  public RingBuffer(int capacity) {
+    int		size;
+
+    if (capacity < 1)
+      throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+    if (capacity > (1 << 30))
+      throw new IllegalArgumentException("Capacity too large: " + capacity);
+
+    size = Integer.highestOneBit(capacity);
+    if (size < capacity)
+      size <<= 1;
+    m_Data       = new byte[size][];
+    m_Lengths    = new int[size];
+    m_Timestamps = new long[size];
+    m_Mask       = size - 1;
+    m_Head       = new AtomicLong();
+    m_Tail       = new AtomicLong();
+    m_Reading    = Long.MAX_VALUE;
+  }
+
+  /**
+   * Returns the capacity.
+   *
+   * @return		the number of slots
+   */
+  public int capacity() {
+    return m_Data.length;
+  }
+
+  /**
+   * Returns the current number of lines.
+   *
+   * @return		the number of lines
+   */
+  public int size() {
+    return (int) (m_Tail.get() - m_Head.get());
+  }
+
+  /**
+   * Returns whether the buffer is currently empty.
+   *
+   * @return		true if empty
+   */
+  public boolean isEmpty() {
+    return (m_Tail.get() == m_Head.get());
+  }
+
+  /**
+   * Returns whether the buffer is currently full, including the slot of
+   * the line that the consumer is still processing.
+   *
+   * @return		true if full
+   */
+  public boolean isFull() {
+    long	head;
+
+    head = m_Head.get();
+    return (m_Tail.get() - Math.min(head, m_Reading) >= m_Data.length);
+  }
+
+  /**
+   * Copies the line into the next slot, if there is space. Producer only.
+   *
+   * @param data	the buffer with the line
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   * @param timestamp	the timestamp of the line
+   * @return		true if added, false if full
+   */
+  public boolean offer(byte[] data, int offset, int length, long timestamp) {
+    long	tail;
+    int		slot;
+    byte[]	buffer;
+
+    if (isFull())
+      return false;
+
+    tail   = m_Tail.get();
+    slot   = (int) tail & m_Mask;
+    buffer = m_Data[slot];
+    if ((buffer == null) || (buffer.length < length) || ((buffer.length > MAX_SLOT_SIZE) && (length <= MAX_SLOT_SIZE))) {
+      buffer = new byte[Math.max(MIN_SLOT_SIZE, length)];
+      m_Data[slot] = buffer;
+    }
+    System.arraycopy(data, offset, buffer, 0, length);
+    m_Lengths[slot]    = length;
+    m_Timestamps[slot] = timestamp;
+    m_Tail.set(tail + 1);
+    wakeConsumer();
+
+    return true;
+  }
+
+  /**
+   * Lets the handler process the next line, if any, in place. The slot
+   * only gets reused once the handler has returned. Consumer only.
+   *
+   * @param handler	the handler to process the line with
+   * @return		true if a line was processed, false if empty
+   */
+  public boolean take(Handler handler) {
+    long	head;
+    int		slot;
+
+    while (true) {
+      head = m_Head.get();
+      if (head >= m_Tail.get()) {
+	release();
+	return false;
+      }
+      // announce before claiming, so the producer won't overwrite the slot
+      m_Reading = head;
+      if (m_Head.compareAndSet(head, head + 1))
+	break;
+    }
+
+    slot = (int) head & m_Mask;
+    try {
+      handler.handle(m_Data[slot], 0, m_Lengths[slot], m_Timestamps[slot]);
+    }
+    finally {
+      release();
+    }
+
+    return true;
+  }
+
+  /**
+   * Frees the slot of the line the consumer was processing (if any) and
+   * wakes up a parked producer.
+   */
+  protected void release() {
+    Thread	producer;
+
+    if (m_Reading == Long.MAX_VALUE)
+      return;
+    m_Reading = Long.MAX_VALUE;
+    producer  = m_WaitingProducer;
+    if (producer != null)
+      LockSupport.unpark(producer);
+  }
+
+  /**
+   * Discards the oldest line, if any. Producer or consumer.
+   *
+   * @return		true if a line was discarded, false if empty
+   */
+  public boolean discard() {
+    long	head;
+
+    while (true) {
+      head = m_Head.get();
+      if (head >= m_Tail.get())
+	return false;
+      if (m_Head.compareAndSet(head, head + 1))
+	return true;
+    }
+  }
+
+  /**
+   * Wakes up the consumer if it is parked, e.g., after signalling the end
+   * of the stream.
+   */
+  public void wakeConsumer() {
+    Thread	consumer;
+
+    consumer = m_WaitingConsumer;
+    if (consumer != null)
+      LockSupport.unpark(consumer);
+  }
+
+  /**
+   * Waits for lines to arrive, according to the strategy. Consumer only.
+   * May return early, callers have to check again.
+   *
+   * @param strategy	how to wait
+   * @param count	the number of times waited in a row so far (0-based)
+   * @param done	whether to stop waiting regardless, e.g., at the end of
+   * 			the stream (producer calls {@link #wakeConsumer()} when
+   * 			this changes)
+   */
+  public void awaitLines(WaitStrategy strategy, int count, BooleanSupplier done) {
+    if (strategy != WaitStrategy.PARK) {
+      strategy.idle(count);
+      return;
+    }
+    m_WaitingConsumer = Thread.currentThread();
+    if (isEmpty() && !done.getAsBoolean())
+      LockSupport.park(this);
+    m_WaitingConsumer = null;
+  }
+
+  /**
+   * Waits for space to become available, according to the strategy.
+   * Producer only. May return early, callers have to check again.
+   *
+   * @param strategy	how to wait
+   * @param count	the number of times waited in a row so far (0-based)
+   */
+  public void awaitSpace(WaitStrategy strategy, int count) {
+    if (strategy != WaitStrategy.PARK) {
+      strategy.idle(count);
+      return;
+    }
+    m_WaitingProducer = Thread.currentThread();
+    if (isFull())
+      LockSupport.park(this);
+    m_WaitingProducer = null;
+  }
+}
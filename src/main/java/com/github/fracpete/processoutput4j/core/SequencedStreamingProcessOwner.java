@@ -0,0 +1,44 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SequencedStreamingProcessOwner.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+/**
+ * Interface for owners that need the relative order of the lines from
+ * stdout and stderr. The reader calls
+ * {@link #processSequencedOutput(long, String, boolean)} instead of
+ * {@link #processOutput(String, boolean)}, one line at a time and in the
+ * order of the sequence numbers.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public interface SequencedStreamingProcessOwner
+  extends StreamingProcessOwner {
+
+  /**
+   * Processes the incoming line.
+   *
+   * @param sequence	the sequence number of the line across stdout and
+   * 			stderr, starting at 0
+   * @param line	the line to process
+   * @param stdout	whether stdout or stderr
+   */
+  public void processSequencedOutput(long sequence, String line, boolean stdout);
+}
@@ -0,0 +1,205 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * StreamingLineIterator.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+package com.github.fracpete.processoutput4j.core;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Owner that hands the lines of a live process to a consumer thread, via
+ * {@link Iterator} or lazy {@link Stream}. The lines get buffered in a
+ * bounded queue; once it is full, the reader blocks until the consumer
+ * catches up, which eventually blocks the process on its full pipe.
+ * <br>
+ * Closing the stream (or calling {@link #close()}) is mandatory unless all
+ * lines get consumed: it discards any further lines, letting the process
+ * run to completion. Otherwise, once the queue is full (e.g., after
+ * 1024 lines with the default capacity), the process blocks forever and
+ * the reader threads leak.
+ * <br>
+ * Example:
+ * <pre>
+ * StreamingLineIterator lines = new StreamingLineIterator(StreamingProcessOutputType.STDOUT, 1024);
+ * new StreamingProcessOutput(lines).monitorAsync(builder);
+ * try (Stream&lt;String&gt; s = lines.stream()) {
+ *   s.filter(l -&gt; l.contains("ERROR")).limit(10).forEach(System.out::println);
+ * }
+ * </pre>
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class StreamingLineIterator
+  implements CompletionAwareStreamingProcessOwner, Iterator<String> {
+
+  /** the default capacity of the queue. */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  /** the delay in msec between checks while waiting. */
+  public static final int POLL_INTERVAL = 10;
+
+  /** what output to forward. */
+  protected StreamingProcessOutputType m_OutputType;
+
+  /** the queued lines. */
+  protected BlockingQueue<String> m_Queue;
+
+  /** whether the process output has been processed completely. */
+  protected volatile boolean m_Finished;
+
+  /** whether the consumer has closed the iterator. */
+  protected volatile boolean m_Closed;
+
+  /** the next line, null if not yet fetched. */
+  protected String m_Next;
+
+  /**
+   * Initializes the iterator with the default capacity.
+   *
+   * @param type	what output to forward
+   */
+  public StreamingLineIterator(StreamingProcessOutputType type) {
+    this(type, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Initializes the iterator.
+   *
+   * @param type	what output to forward
+   * @param capacity	the maximum number of lines to buffer
+   */
+  public StreamingLineIterator(StreamingProcessOutputType type, int capacity) {
+    if (capacity < 1)
+      throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+    m_OutputType = type;
+    m_Queue      = new ArrayBlockingQueue<>(capacity);
+    m_Finished   = false;
+    m_Closed     = false;
+    m_Next       = null;
+  }
+
+  /**
+   * Returns what output from the process to forward.
+   *
+   * @return 		the output type
+   */
+  @Override
+  public StreamingProcessOutputType getOutputType() {
+    return m_OutputType;
+  }
+
+  /**
+   * Queues the incoming line, waiting for space if necessary.
+   *
+   * @param line	the line to process
+   * @param stdout	whether stdout or stderr
+   */
+  @Override
+  public void processOutput(String line, boolean stdout) {
+    try {
+      while (!m_Closed) {
+	if (m_Queue.offer(line, POLL_INTERVAL, TimeUnit.MILLISECONDS))
+	  return;
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Marks the end of the lines.
+   */
+  @Override
+  public void processFinished() {
+    m_Finished = true;
+  }
+
+  /**
+   * Returns whether there is another line, waiting for it if necessary.
+   *
+   * @return		true if another line available
+   * @throws IllegalStateException	if interrupted while waiting
+   */
+  @Override
+  public boolean hasNext() {
+    boolean	finished;
+
+    try {
+      while ((m_Next == null) && !m_Closed) {
+	// check before polling, so no lines get missed after finishing
+	finished = m_Finished;
+	m_Next   = m_Queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+	if ((m_Next == null) && finished)
+	  break;
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for output!");
+    }
+
+    return (m_Next != null);
+  }
+
+  /**
+   * Returns the next line, waiting for it if necessary.
+   *
+   * @return		the line
+   * @throws NoSuchElementException	if no more lines
+   */
+  @Override
+  public String next() {
+    String	result;
+
+    if (!hasNext())
+      throw new NoSuchElementException();
+    result = m_Next;
+    m_Next = null;
+
+    return result;
+  }
+
+  /**
+   * Returns a lazy stream over the lines. Closing the stream closes the
+   * iterator; use try-with-resources unless all lines get consumed.
+   *
+   * @return		the stream
+   */
+  public Stream<String> stream() {
+    return StreamSupport.stream(
+      Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+      .onClose(this::close);
+  }
+
+  /**
+   * Stops iterating, discarding any queued and further lines.
+   */
+  public void close() {
+    m_Closed = true;
+    m_Queue.clear();
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TempFiles.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Manages the temporary files of the library. Rather than using
+ * {@link File#deleteOnExit()}, which keeps every path until the JVM exits,
+ * the files are tracked in a set that only holds the files not deleted
+ * yet. A single shutdown hook deletes any files left over.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public final class TempFiles {
+
+  /** the prefix for the temporary files. */
+  public static final String PREFIX = "processoutput4j-";
+
+  /** the files not deleted yet. */
+  protected static final Set<File> m_Files = ConcurrentHashMap.newKeySet();
+
+  /** whether the shutdown hook has been installed. */
+  protected static boolean m_HookInstalled;
+
+  /**
+   * Not to be instantiated.
+   */
+  private TempFiles() {
+  }
+
+  /**
+   * Installs the shutdown hook, if not yet installed.
+   */
+  protected static synchronized void installHook() {
+    if (m_HookInstalled)
+      return;
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      for (File file: m_Files)
+	file.delete();
+    }, PREFIX + "cleanup"));
+    m_HookInstalled = true;
+  }
+
+  /**
+   * Creates a new temporary file, which gets deleted at the latest when
+   * the JVM exits.
+   *
+   * @param suffix	the suffix of the file
+   * @param directory	the directory, null for the system's temp directory
+   * @return		the file
+   * @throws IOException	if creating the file fails
+   */
+  public static File create(String suffix, File directory) throws IOException {
+    File	result;
+
+    installHook();
+    result = File.createTempFile(PREFIX, suffix, directory);
+    m_Files.add(result);
+
+    return result;
+  }
+
+  /**
+   * Deletes the temporary file. If deleting fails, the file gets deleted
+   * when the JVM exits.
+   *
+   * @param file	the file to delete
+   * @return		true if deleted
+   */
+  public static boolean delete(File file) {
+    if (file.delete() || !file.exists()) {
+      m_Files.remove(file);
+      return true;
+    }
+    if (m_Files.add(file))
+      installHook();
+    return false;
+  }
+
+  /**
+   * Returns the number of temporary files not deleted yet.
+   *
+   * @return		the number of files
+   */
+  public static int size() {
+    return m_Files.size();
+  }
+}
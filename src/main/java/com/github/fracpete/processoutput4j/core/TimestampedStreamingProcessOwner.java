@@ -0,0 +1,43 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TimestampedStreamingProcessOwner.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+/**
+ * Interface for owners that need the arrival times of the lines. The
+ * reader calls {@link #processTimestampedOutput(long, String, boolean)}
+ * instead of {@link #processOutput(String, boolean)}. Timestamps are only
+ * available if enabled via the {@link TimestampMode} of the output.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public interface TimestampedStreamingProcessOwner
+  extends StreamingProcessOwner {
+
+  /**
+   * Processes the incoming line.
+   *
+   * @param timestamp	when the line arrived (msec since epoch), 0 if
+   * 			timestamps are not enabled
+   * @param line	the line to process
+   * @param stdout	whether stdout or stderr
+   */
+  public void processTimestampedOutput(long timestamp, String line, boolean stdout);
+}
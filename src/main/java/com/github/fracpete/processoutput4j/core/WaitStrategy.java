@@ -0,0 +1,58 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * WaitStrategy.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How to wait for a {@link RingBuffer} to become non-empty (consumer) or
+ * non-full (producer). Trades latency against CPU usage.
+ */
+public enum WaitStrategy {
+  /** busy spinning, lowest latency, occupies a CPU. */
+  SPIN,
+  /** yields the CPU to other threads. */
+  YIELD,
+  /** parks the thread until the other side unparks it, no CPU usage while idle. */
+  PARK;
+
+  /**
+   * Waits according to the strategy. With {@link #PARK}, the thread must
+   * have made itself known to the other side beforehand, so that it gets
+   * unparked again, as done by {@link RingBuffer}.
+   *
+   * @param count	the number of times waited in a row so far (0-based)
+   */
+  public void idle(int count) {
+    switch (this) {
+      case SPIN:
+	break;
+      case YIELD:
+	Thread.yield();
+	break;
+      case PARK:
+	LockSupport.park(this);
+	break;
+      default:
+	throw new IllegalStateException("Unhandled wait strategy: " + this);
+    }
+  }
+}
@@ -20,9 +20,30 @@
 
 package com.github.fracpete.processoutput4j.output;
 
+import com.github.fracpete.processoutput4j.core.BackpressurePolicy;
+import com.github.fracpete.processoutput4j.core.BackpressureStats;
+import com.github.fracpete.processoutput4j.core.CoarseClock;
+import com.github.fracpete.processoutput4j.core.ProcessExit;
+import com.github.fracpete.processoutput4j.core.ProcessPipeline;
+import com.github.fracpete.processoutput4j.core.ProcessReaper;
+import com.github.fracpete.processoutput4j.core.ReaderExecutors;
+import com.github.fracpete.processoutput4j.core.ReaderMultiplexer;
+import com.github.fracpete.processoutput4j.core.ReaderThreadMode;
+import com.github.fracpete.processoutput4j.core.TimestampMode;
+import com.github.fracpete.processoutput4j.core.WaitStrategy;
+import com.github.fracpete.processoutput4j.reader.AbstractProcessReader;
+import com.github.fracpete.processoutput4j.reader.DecoupledProcessReader;
+
 import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Ancestor for classes that give access to the output generated by a process.
@@ -45,9 +66,60 @@ public abstract class AbstractProcessOutput
   /** the exit code. */
   protected int m_ExitCode;
 
-  /** the process. */
+  /** when the monitoring started (msec since epoch). */
+  protected long m_StartTime;
+
+  /** when the process exited (msec since epoch). */
+  protected long m_EndTime;
+
+  /** the process (the last stage if monitoring a pipeline). */
   protected transient Process m_Process;
 
+  /** the pipeline, null if not monitoring one. */
+  protected transient ProcessPipeline m_Pipeline;
+
+  /** the exit codes of the pipeline stages, null if not a pipeline. */
+  protected int[] m_ExitCodes;
+
+  /** the future of the readers of the current process, null if none started. */
+  protected transient volatile CompletableFuture<Void> m_Readers;
+
+  /** the executor for the readers, null for the shared default one. */
+  protected transient Executor m_Executor;
+
+  /** the kind of threads to use if no executor set. */
+  protected ReaderThreadMode m_ThreadMode;
+
+  /** the multiplexer to read with instead of the executor, can be null. */
+  protected transient ReaderMultiplexer m_Multiplexer;
+
+  /** the size of the read buffer of the readers. */
+  protected int m_BufferSize;
+
+  /** the maximum length of a line in bytes, longer lines get split. */
+  protected int m_MaxLineLength;
+
+  /** the number of times a line got split due to its length. */
+  protected AtomicLong m_SplitLines;
+
+  /** the capacity (in lines) of the buffer between reading and processing, 0 to process directly. */
+  protected int m_HandoffCapacity;
+
+  /** how to wait for the buffer between reading and processing. */
+  protected WaitStrategy m_WaitStrategy;
+
+  /** what to do when the buffer between reading and processing is full. */
+  protected BackpressurePolicy m_BackpressurePolicy;
+
+  /** how often the backpressure policy got triggered. */
+  protected BackpressureStats m_BackpressureStats;
+
+  /** how to timestamp the lines. */
+  protected TimestampMode m_TimestampMode;
+
+  /** the precision in msec when using a coarse clock for the timestamps. */
+  protected int m_TimestampPrecision;
+
   /**
    * Starts the monitoring process.
    */
@@ -59,10 +131,292 @@ public abstract class AbstractProcessOutput
    * For initializing the members.
    */
   protected void initialize() {
-    m_Command     = new String[0];
-    m_Environment = null;
-    m_ExitCode    = 0;
-    m_Process     = null;
+    m_Command            = new String[0];
+    m_Environment        = null;
+    m_ExitCode           = 0;
+    m_StartTime          = 0;
+    m_EndTime            = 0;
+    m_Process            = null;
+    m_Pipeline           = null;
+    m_ExitCodes          = null;
+    m_Readers            = null;
+    m_Executor           = null;
+    m_ThreadMode         = ReaderThreadMode.PLATFORM;
+    m_Multiplexer        = null;
+    m_BufferSize         = AbstractProcessReader.DEFAULT_BUFFER_SIZE;
+    m_MaxLineLength      = AbstractProcessReader.DEFAULT_MAX_LINE_LENGTH;
+    m_SplitLines         = new AtomicLong();
+    m_HandoffCapacity    = 0;
+    m_WaitStrategy       = WaitStrategy.PARK;
+    m_BackpressurePolicy = BackpressurePolicy.BLOCK;
+    m_BackpressureStats  = new BackpressureStats();
+    m_TimestampMode      = TimestampMode.NONE;
+    m_TimestampPrecision = CoarseClock.DEFAULT_PRECISION;
+  }
+
+  /**
+   * Sets the executor to run the stdout/stderr readers with.
+   *
+   * @param value	the executor, null for the shared default one
+   * @see		#setThreadMode(ReaderThreadMode)
+   */
+  public void setExecutor(Executor value) {
+    m_Executor = value;
+  }
+
+  /**
+   * Returns the executor to run the stdout/stderr readers with.
+   *
+   * @return		the executor in use
+   */
+  public Executor getExecutor() {
+    if (m_Executor == null)
+      return ReaderExecutors.getDefault(m_ThreadMode);
+    return m_Executor;
+  }
+
+  /**
+   * Sets the kind of threads to use for the readers, when no executor has
+   * been set explicitly. Virtual threads require Java 21+, older JVMs fall
+   * back to platform threads. Only the readers are affected: the blocking
+   * <code>monitor</code> methods still wait for the process in the calling
+   * thread, call them from a virtual thread or use the asynchronous
+   * methods to avoid tying up a platform thread.
+   *
+   * @param value	the mode
+   * @see		ReaderExecutors#isVirtualAvailable()
+   */
+  public void setThreadMode(ReaderThreadMode value) {
+    if (value == null)
+      throw new IllegalArgumentException("Thread mode cannot be null!");
+    m_ThreadMode = value;
+  }
+
+  /**
+   * Returns the kind of threads to use for the readers, when no executor
+   * has been set explicitly.
+   *
+   * @return		the mode
+   */
+  public ReaderThreadMode getThreadMode() {
+    return m_ThreadMode;
+  }
+
+  /**
+   * Sets the multiplexer that reads stdout/stderr, instead of occupying
+   * threads of the executor. Since its I/O threads are shared with other
+   * processes, they must not wait for a full handoff buffer:
+   * {@link BackpressurePolicy#BLOCK} gets replaced by
+   * {@link BackpressurePolicy#SPILL} when using a multiplexer.
+   *
+   * @param value	the multiplexer, null to use the executor
+   * @see		#getEffectiveBackpressurePolicy()
+   */
+  public void setMultiplexer(ReaderMultiplexer value) {
+    m_Multiplexer = value;
+  }
+
+  /**
+   * Returns the multiplexer that reads stdout/stderr.
+   *
+   * @return		the multiplexer, null if using the executor
+   */
+  public ReaderMultiplexer getMultiplexer() {
+    return m_Multiplexer;
+  }
+
+  /**
+   * Sets the size of the buffer the readers use for reading from the
+   * process (not used by the multiplexer, which has its own buffers).
+   *
+   * @param value	the size in bytes
+   */
+  public void setBufferSize(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Buffer size must be at least 1: " + value);
+    m_BufferSize = value;
+  }
+
+  /**
+   * Returns the size of the buffer the readers use for reading from the
+   * process.
+   *
+   * @return		the size in bytes
+   */
+  public int getBufferSize() {
+    return m_BufferSize;
+  }
+
+  /**
+   * Sets the maximum length of a line in bytes. Longer lines get split
+   * into several lines, which limits the memory required for a process
+   * that never outputs a line terminator.
+   *
+   * @param value	the maximum length
+   * @see		#getSplitLines()
+   */
+  public void setMaxLineLength(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Maximum line length must be at least 1: " + value);
+    m_MaxLineLength = value;
+  }
+
+  /**
+   * Returns the maximum length of a line in bytes.
+   *
+   * @return		the maximum length
+   */
+  public int getMaxLineLength() {
+    return m_MaxLineLength;
+  }
+
+  /**
+   * Returns how often a line got split while monitoring the last process
+   * (stdout and stderr combined), as it exceeded the maximum line length.
+   *
+   * @return		the count
+   * @see		#getMaxLineLength()
+   */
+  public long getSplitLines() {
+    return m_SplitLines.get();
+  }
+
+  /**
+   * Sets the capacity of the buffer between reading from the process and
+   * processing the lines. With a capacity greater than 0, the lines get
+   * processed by a separate consumer task, so slow processing does not
+   * stall the reading (as long as the buffer has space).
+   *
+   * @param value	the capacity in lines, 0 to process the lines directly
+   * @see		DecoupledProcessReader
+   */
+  public void setHandoffCapacity(int value) {
+    if (value < 0)
+      throw new IllegalArgumentException("Capacity cannot be negative: " + value);
+    m_HandoffCapacity = value;
+  }
+
+  /**
+   * Returns the capacity of the buffer between reading from the process and
+   * processing the lines.
+   *
+   * @return		the capacity in lines, 0 if processing the lines directly
+   */
+  public int getHandoffCapacity() {
+    return m_HandoffCapacity;
+  }
+
+  /**
+   * Sets how to wait for the buffer between reading from the process and
+   * processing the lines.
+   *
+   * @param value	the strategy
+   */
+  public void setWaitStrategy(WaitStrategy value) {
+    if (value == null)
+      throw new IllegalArgumentException("Wait strategy cannot be null!");
+    m_WaitStrategy = value;
+  }
+
+  /**
+   * Returns how to wait for the buffer between reading from the process and
+   * processing the lines.
+   *
+   * @return		the strategy
+   */
+  public WaitStrategy getWaitStrategy() {
+    return m_WaitStrategy;
+  }
+
+  /**
+   * Sets what to do when the buffer between reading from the process and
+   * processing the lines is full.
+   *
+   * @param value	the policy
+   * @see		#setHandoffCapacity(int)
+   */
+  public void setBackpressurePolicy(BackpressurePolicy value) {
+    if (value == null)
+      throw new IllegalArgumentException("Backpressure policy cannot be null!");
+    m_BackpressurePolicy = value;
+  }
+
+  /**
+   * Returns what to do when the buffer between reading from the process and
+   * processing the lines is full.
+   *
+   * @return		the policy
+   */
+  public BackpressurePolicy getBackpressurePolicy() {
+    return m_BackpressurePolicy;
+  }
+
+  /**
+   * Returns the policy that actually gets applied: with a multiplexer,
+   * {@link BackpressurePolicy#BLOCK} gets replaced by
+   * {@link BackpressurePolicy#SPILL}, as blocking would stall the streams
+   * of all the other processes read by the same I/O thread.
+   *
+   * @return		the policy
+   * @see		#setMultiplexer(ReaderMultiplexer)
+   */
+  public BackpressurePolicy getEffectiveBackpressurePolicy() {
+    if ((m_Multiplexer != null) && (m_BackpressurePolicy == BackpressurePolicy.BLOCK))
+      return BackpressurePolicy.SPILL;
+    return m_BackpressurePolicy;
+  }
+
+  /**
+   * Returns how often the backpressure policy got triggered while
+   * monitoring the last process (stdout and stderr combined).
+   *
+   * @return		the statistics
+   */
+  public BackpressureStats getBackpressureStats() {
+    return m_BackpressureStats;
+  }
+
+  /**
+   * Sets how to timestamp the lines.
+   *
+   * @param value	the mode
+   * @see		#setTimestampPrecision(int)
+   */
+  public void setTimestampMode(TimestampMode value) {
+    if (value == null)
+      throw new IllegalArgumentException("Timestamp mode cannot be null!");
+    m_TimestampMode = value;
+  }
+
+  /**
+   * Returns how to timestamp the lines.
+   *
+   * @return		the mode
+   */
+  public TimestampMode getTimestampMode() {
+    return m_TimestampMode;
+  }
+
+  /**
+   * Sets the precision of the clock for {@link TimestampMode#COARSE}.
+   * Gets snapped to one of the precisions of the shared clocks.
+   *
+   * @param value	the precision in msec
+   * @see		CoarseClock#snap(int)
+   */
+  public void setTimestampPrecision(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Precision must be at least 1: " + value);
+    m_TimestampPrecision = value;
+  }
+
+  /**
+   * Returns the precision of the clock for {@link TimestampMode#COARSE}.
+   *
+   * @return		the precision in msec
+   */
+  public int getTimestampPrecision() {
+    return m_TimestampPrecision;
   }
 
   /**
@@ -82,7 +436,7 @@ public abstract class AbstractProcessOutput
    * @throws Exception	if writing to stdin fails
    */
   public void monitor(String input, ProcessBuilder builder) throws Exception {
-    monitor(builder.command().toArray(new String[0]), null, input, builder.start());
+    monitor(builder.command().toArray(new String[0]), null, input, start(builder));
   }
 
   /**
@@ -120,58 +474,469 @@ public abstract class AbstractProcessOutput
    * @throws Exception	if writing to stdin fails
    */
   public void monitor(String cmd[], String[] env, String input, Process process) throws Exception {
-    m_Command     = cmd;
-    m_Environment = env;
-    m_Process     = process;
+    prepare(cmd, env, process);
+
+    CompletableFuture<Void> readers = startReaders();
+
+    // writing the input to the standard input of the process
+    if (input != null)
+      writeInput(input);
 
-    // stderr
-    Thread threade = new Thread(configureStdErr(m_Process));
-    threade.start();
+    m_ExitCode = m_Process.waitFor();
+    m_EndTime  = System.currentTimeMillis();
+
+    // wait for readers to finish
+    readers.get();
+
+    m_Process = null;
+    monitoringFinished();
+  }
 
-    // stdout
-    Thread threado = new Thread(configureStdOut(m_Process));
-    threado.start();
+  /**
+   * Starts the process monitoring without blocking the caller.
+   *
+   * @param builder 	the process builder to monitor
+   * @return		the future exit code, completes once the process has
+   * 			finished and stdout/stderr have been fully read; cancelling
+   * 			it destroys the process
+   * @throws IOException	if starting the process fails
+   */
+  public CompletableFuture<Integer> monitorAsync(ProcessBuilder builder) throws IOException {
+    return monitorAsync(null, builder);
+  }
+
+  /**
+   * Starts the process monitoring without blocking the caller.
+   *
+   * @param input	the input to be written to the process via stdin, ignored if null
+   * @param builder 	the process builder to monitor
+   * @return		the future exit code, completes once the process has
+   * 			finished and stdout/stderr have been fully read; cancelling
+   * 			it destroys the process; completes exceptionally
+   * 			if writing the input fails
+   * @throws IOException	if starting the process fails
+   */
+  public CompletableFuture<Integer> monitorAsync(String input, ProcessBuilder builder) throws IOException {
+    return monitorAsync(builder.command().toArray(new String[0]), null, input, start(builder));
+  }
+
+  /**
+   * Starts the process monitoring without blocking the caller.
+   *
+   * @param cmd		the command that was used
+   * @param env		the environment
+   * @param input	the input to be written to the process via stdin, ignored if null
+   * @param process 	the process to monitor
+   * @return		the future exit code, completes once the process has
+   * 			finished and stdout/stderr have been fully read; cancelling
+   * 			it destroys the process; completes exceptionally
+   * 			if writing the input fails
+   */
+  public CompletableFuture<Integer> monitorAsync(String cmd[], String[] env, String input, final Process process) {
+    final CompletableFuture<Integer>	result;
+    CompletableFuture<Void>		readers;
+    CompletableFuture<Void>		stdin;
+    CompletableFuture<ProcessExit>	exit;
+
+    prepare(cmd, env, process);
+
+    result = new CompletableFuture<>();
+    result.whenComplete((code, error) -> {
+      if (result.isCancelled())
+	process.destroy();
+    });
+
+    readers = startReaders();
 
     // writing the input to the standard input of the process
     if (input != null) {
-      BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
-	m_Process.getOutputStream()));
-      writer.write(input);
-      writer.close();
+      stdin = CompletableFuture.runAsync(() -> {
+	try {
+	  writeInput(process, input);
+	}
+	catch (IOException e) {
+	  throw new UncheckedIOException(e);
+	}
+      }, getExecutor());
+    }
+    else {
+      stdin = CompletableFuture.completedFuture(null);
     }
 
-    m_ExitCode = m_Process.waitFor();
+    exit = ProcessReaper.getDefault().register(process);
+
+    exit.thenCombine(readers, (pexit, dummy) -> pexit).thenCombine(stdin, (pexit, dummy) -> pexit).whenComplete((pexit, error) -> {
+      if (error != null) {
+	result.completeExceptionally(error);
+      }
+      else {
+	m_ExitCode = pexit.getExitCode();
+	m_EndTime  = pexit.getTimestamp();
+	m_Process  = null;
+	monitoringFinished();
+	result.complete(m_ExitCode);
+      }
+    });
+
+    return result;
+  }
+
+  /**
+   * Performs the monitoring of a pipeline of processes (like
+   * <code>A | B | C</code> in a shell), with stdout of each stage connected
+   * to stdin of the next one. Only stdout of the last stage and stderr of
+   * all the stages get read.
+   *
+   * @param builders 	the builders of the stages, in pipeline order
+   * @throws Exception	if starting the stages or writing to stdin fails
+   * @see		#getExitCodes()
+   */
+  public void monitorPipeline(List<ProcessBuilder> builders) throws Exception {
+    monitorPipeline(null, builders);
+  }
+
+  /**
+   * Performs the monitoring of a pipeline of processes (like
+   * <code>A | B | C</code> in a shell), with stdout of each stage connected
+   * to stdin of the next one. Only stdout of the last stage and stderr of
+   * all the stages get read.
+   *
+   * @param input	the input to be written to the first stage via stdin, ignored if null
+   * @param builders 	the builders of the stages, in pipeline order
+   * @throws Exception	if starting the stages or writing to stdin fails
+   * @see		#getExitCodes()
+   */
+  public void monitorPipeline(String input, List<ProcessBuilder> builders) throws Exception {
+    ProcessPipeline	pipeline;
+    List<Process>	stages;
+    int[]		codes;
+    int			i;
+
+    pipeline = startPipeline(builders);
+    prepare(builders, pipeline);
+
+    CompletableFuture<Void> readers = startPipelineReaders();
+
+    // writing the input to the standard input of the first stage
+    if (input != null)
+      writeInput(pipeline.getFirst(), input);
+
+    stages = pipeline.getProcesses();
+    codes  = new int[stages.size()];
+    for (i = 0; i < stages.size(); i++)
+      codes[i] = stages.get(i).waitFor();
+    m_ExitCodes = codes;
+    m_ExitCode  = codes[codes.length - 1];
+    m_EndTime   = System.currentTimeMillis();
+
+    // wait for readers to finish
+    readers.get();
+
+    m_Process  = null;
+    m_Pipeline = null;
+    monitoringFinished();
+  }
+
+  /**
+   * Starts the monitoring of a pipeline of processes without blocking the
+   * caller.
+   *
+   * @param builders 	the builders of the stages, in pipeline order
+   * @return		the future exit code of the last stage, completes once
+   * 			all stages have finished and their output has been
+   * 			fully read; cancelling it destroys all stages
+   * @throws IOException	if starting the stages fails
+   * @see		#getExitCodes()
+   */
+  public CompletableFuture<Integer> monitorPipelineAsync(List<ProcessBuilder> builders) throws IOException {
+    return monitorPipelineAsync(null, builders);
+  }
 
-    // wait for threads to finish
-    while (threade.isAlive() || threado.isAlive()) {
-      try {
-	synchronized (this) {
-	  wait(100);
+  /**
+   * Starts the monitoring of a pipeline of processes without blocking the
+   * caller.
+   *
+   * @param input	the input to be written to the first stage via stdin, ignored if null
+   * @param builders 	the builders of the stages, in pipeline order
+   * @return		the future exit code of the last stage, completes once
+   * 			all stages have finished and their output has been
+   * 			fully read; cancelling it destroys all stages; completes exceptionally
+   * 			if writing the input fails
+   * @throws IOException	if starting the stages fails
+   * @see		#getExitCodes()
+   */
+  public CompletableFuture<Integer> monitorPipelineAsync(String input, List<ProcessBuilder> builders) throws IOException {
+    final ProcessPipeline			pipeline;
+    final CompletableFuture<Integer>		result;
+    final List<CompletableFuture<ProcessExit>>	exits;
+    CompletableFuture<Void>			readers;
+    List<CompletableFuture<?>>			all;
+
+    pipeline = startPipeline(builders);
+    prepare(builders, pipeline);
+
+    result = new CompletableFuture<>();
+    result.whenComplete((code, error) -> {
+      if (result.isCancelled())
+	pipeline.destroy();
+    });
+
+    readers = startPipelineReaders();
+
+    exits = new ArrayList<>();
+    for (Process stage: pipeline.getProcesses())
+      exits.add(ProcessReaper.getDefault().register(stage));
+    all = new ArrayList<>(exits);
+    all.add(readers);
+
+    // writing the input to the standard input of the first stage
+    if (input != null) {
+      all.add(CompletableFuture.runAsync(() -> {
+	try {
+	  writeInput(pipeline.getFirst(), input);
+	}
+	catch (IOException e) {
+	  throw new UncheckedIOException(e);
 	}
+      }, getExecutor()));
+    }
+
+    CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).whenComplete((dummy, error) -> {
+      int[]	codes;
+      long	end;
+      int	i;
+
+      if (error != null) {
+	result.completeExceptionally(error);
       }
-      catch (Exception e) {
-	// ignored
+      else {
+	codes = new int[exits.size()];
+	end   = 0;
+	for (i = 0; i < codes.length; i++) {
+	  codes[i] = exits.get(i).join().getExitCode();
+	  end      = Math.max(end, exits.get(i).join().getTimestamp());
+	}
+	m_ExitCodes = codes;
+	m_ExitCode  = codes[codes.length - 1];
+	m_EndTime   = end;
+	m_Process   = null;
+	m_Pipeline  = null;
+	monitoringFinished();
+	result.complete(m_ExitCode);
       }
+    });
+
+    return result;
+  }
+
+  /**
+   * Starts the process. Derived classes can override this method to adjust
+   * the builder, e.g., to redirect stdout/stderr.
+   *
+   * @param builder	the builder to start the process with
+   * @return		the started process
+   * @throws IOException	if starting the process fails
+   */
+  protected Process start(ProcessBuilder builder) throws IOException {
+    return builder.start();
+  }
+
+  /**
+   * Resets the state for monitoring the process.
+   *
+   * @param cmd		the command that was used
+   * @param env		the environment
+   * @param process 	the process to monitor
+   */
+  protected void prepare(String[] cmd, String[] env, Process process) {
+    m_Command           = cmd;
+    m_Environment       = env;
+    m_Process           = process;
+    m_StartTime         = System.currentTimeMillis();
+    m_EndTime           = 0;
+    m_Pipeline          = null;
+    m_ExitCodes         = null;
+    m_BackpressureStats = new BackpressureStats();
+    m_SplitLines        = new AtomicLong();
+  }
+
+  /**
+   * Resets the state for monitoring the pipeline. The command consists of
+   * the commands of the stages, separated by "|".
+   *
+   * @param builders	the builders of the stages
+   * @param pipeline	the started pipeline
+   */
+  protected void prepare(List<ProcessBuilder> builders, ProcessPipeline pipeline) {
+    List<String>	cmd;
+    int			i;
+
+    cmd = new ArrayList<>();
+    for (i = 0; i < builders.size(); i++) {
+      if (i > 0)
+	cmd.add("|");
+      cmd.addAll(builders.get(i).command());
     }
+    prepare(cmd.toArray(new String[0]), null, pipeline.getLast());
+    m_Pipeline = pipeline;
+  }
 
-    m_Process = null;
+  /**
+   * Starts the stages of a pipeline. Derived classes can override this
+   * method to adjust the builders, e.g., to redirect stdout/stderr.
+   *
+   * @param builders	the builders of the stages, in pipeline order
+   * @return		the started pipeline
+   * @throws IOException	if starting a stage fails
+   * @see		ProcessPipeline#start(List, Executor)
+   */
+  protected ProcessPipeline startPipeline(List<ProcessBuilder> builders) throws IOException {
+    return ProcessPipeline.start(builders, getExecutor());
+  }
+
+  /**
+   * Starts the readers for stdout of the last stage and stderr of all the
+   * stages of the pipeline.
+   *
+   * @return		the future that completes once all readers have finished
+   */
+  protected CompletableFuture<Void> startPipelineReaders() {
+    List<CompletableFuture<Void>>	readers;
+
+    readers = new ArrayList<>();
+    for (Process stage: m_Pipeline.getProcesses())
+      readers.add(startReader(configureStdErr(stage)));
+    readers.add(startReader(configureStdOut(m_Pipeline.getLast())));
+    readers.add(m_Pipeline.getPumps());
+    m_Readers = CompletableFuture.allOf(readers.toArray(new CompletableFuture<?>[0]));
+
+    return readersStarted(m_Readers);
+  }
+
+  /**
+   * Starts the readers for stderr and stdout.
+   *
+   * @return		the future that completes once both readers have finished
+   * @see		#startReader(AbstractProcessReader)
+   */
+  protected CompletableFuture<Void> startReaders() {
+    CompletableFuture<Void>	stderr;
+    CompletableFuture<Void>	stdout;
+
+    stderr    = startReader(configureStdErr(m_Process));
+    stdout    = startReader(configureStdOut(m_Process));
+    m_Readers = CompletableFuture.allOf(stderr, stdout);
+
+    return readersStarted(m_Readers);
   }
 
   /**
-   * Configures the thread for stderr.
+   * Gets called once the readers for stderr and stdout have been started.
+   * Derived classes can chain actions to be performed once reading has
+   * finished. Default implementation returns the future as is.
+   *
+   * @param readers	the future that completes once both readers have finished
+   * @return		the future to wait for
+   */
+  protected CompletableFuture<Void> readersStarted(CompletableFuture<Void> readers) {
+    return readers;
+  }
+
+  /**
+   * Gets called once monitoring has finished successfully, i.e., after the
+   * exit code and end time have been recorded and the readers have finished.
+   * Default implementation does nothing.
+   */
+  protected void monitoringFinished() {
+  }
+
+  /**
+   * Starts the reader, either by registering it with the multiplexer (if
+   * set) or by submitting it to the executor. If a handoff capacity is set,
+   * the reader gets decoupled and its consumer task is submitted to the
+   * executor as well.
+   *
+   * @param reader	the reader to start, null if nothing to read
+   * @return		the future that completes once the reader has finished
+   * @see		#getMultiplexer()
+   * @see		#getExecutor()
+   * @see		#getHandoffCapacity()
+   */
+  protected CompletableFuture<Void> startReader(AbstractProcessReader reader) {
+    CompletableFuture<Void>	result;
+    CompletableFuture<Void>	consumer;
+    DecoupledProcessReader	decoupled;
+    final CoarseClock		clock;
+
+    if (reader == null)
+      return CompletableFuture.completedFuture(null);
+
+    consumer = null;
+    if (m_HandoffCapacity > 0) {
+      decoupled = new DecoupledProcessReader(reader, m_HandoffCapacity, m_WaitStrategy, getEffectiveBackpressurePolicy(), m_BackpressureStats);
+      consumer  = CompletableFuture.runAsync(decoupled::consume, getExecutor());
+      reader    = decoupled;
+    }
+
+    reader.setBufferSize(m_BufferSize);
+    reader.setMaxLineLength(m_MaxLineLength);
+    reader.setSplitLines(m_SplitLines);
+    clock = (m_TimestampMode == TimestampMode.COARSE) ? CoarseClock.acquire(m_TimestampPrecision) : null;
+    reader.setTimestampMode(m_TimestampMode, clock);
+    if (m_Multiplexer != null)
+      result = m_Multiplexer.register(reader);
+    else
+      result = CompletableFuture.runAsync(reader, getExecutor());
+    if (clock != null)
+      result = result.whenComplete((dummy, error) -> clock.release());
+
+    if (consumer != null)
+      result = CompletableFuture.allOf(result, consumer);
+
+    return result;
+  }
+
+  /**
+   * Writes the input to stdin of the process and closes the stream.
+   *
+   * @param input	the input to write
+   * @throws IOException	if writing fails
+   */
+  protected void writeInput(String input) throws IOException {
+    writeInput(m_Process, input);
+  }
+
+  /**
+   * Writes the input to stdin of the process and closes the stream.
+   *
+   * @param process	the process to write to
+   * @param input	the input to write
+   * @throws IOException	if writing fails
+   */
+  protected void writeInput(Process process, String input) throws IOException {
+    BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+      process.getOutputStream()));
+    writer.write(input);
+    writer.close();
+  }
+
+  /**
+   * Configures the reader for stderr.
    *
    * @param process 	the process to monitor
-   * @return		the configured thread, not yet started
+   * @return		the configured reader, not yet started, null if
+   * 			the stream does not need reading (e.g., inherited)
    */
-  protected abstract Thread configureStdErr(Process process);
+  protected abstract AbstractProcessReader configureStdErr(Process process);
 
   /**
-   * Configures the thread for stdout.
+   * Configures the reader for stdout.
    *
    * @param process 	the process to monitor
-   * @return		the configured thread, not yet started
+   * @return		the configured reader, not yet started, null if
+   * 			the stream does not need reading (e.g., inherited)
    */
-  protected abstract Thread configureStdOut(Process process);
+  protected abstract AbstractProcessReader configureStdOut(Process process);
 
   /**
    * Returns the command that was used for the process.
@@ -201,14 +966,66 @@ public abstract class AbstractProcessOutput
   }
 
   /**
-   * Returns the exit code.
+   * Returns the exit code. For pipelines, the one of the last stage.
    *
    * @return the exit code
+   * @see #getExitCodes()
    */
   public int getExitCode() {
     return m_ExitCode;
   }
 
+  /**
+   * Returns the exit codes of all the stages of a pipeline, e.g., for
+   * checking whether any stage failed.
+   *
+   * @return the exit codes, in pipeline order; just the exit code if not
+   *         a pipeline
+   */
+  public int[] getExitCodes() {
+    if (m_ExitCodes == null)
+      return new int[]{m_ExitCode};
+    return m_ExitCodes.clone();
+  }
+
+  /**
+   * Returns the pipeline currently being monitored.
+   *
+   * @return the pipeline, null if not available
+   */
+  public ProcessPipeline getPipeline() {
+    return m_Pipeline;
+  }
+
+  /**
+   * Returns when the monitoring of the process started.
+   *
+   * @return the timestamp (msec since epoch), 0 if not started yet
+   */
+  public long getStartTime() {
+    return m_StartTime;
+  }
+
+  /**
+   * Returns when the process exited.
+   *
+   * @return the timestamp (msec since epoch), 0 if not finished yet
+   */
+  public long getEndTime() {
+    return m_EndTime;
+  }
+
+  /**
+   * Returns how long the process ran.
+   *
+   * @return the runtime in msec, -1 if not finished yet
+   */
+  public long getRuntime() {
+    if (m_EndTime == 0)
+      return -1;
+    return m_EndTime - m_StartTime;
+  }
+
   /**
    * Returns the process.
    *
@@ -219,11 +1036,30 @@ public abstract class AbstractProcessOutput
   }
 
   /**
-   * Destroys the process if possible.
+   * Returns whether stdout/stderr of the process are still being read.
+   *
+   * @return  true if still reading
+   */
+  public boolean isReading() {
+    CompletableFuture<Void>	readers;
+
+    readers = m_Readers;
+    return (readers != null) && !readers.isDone();
+  }
+
+  /**
+   * Destroys the process (all stages of a pipeline) if possible.
    */
   public void destroy() {
-    if (m_Process != null)
-      m_Process.destroy();
+    ProcessPipeline	pipeline;
+    Process		process;
+
+    pipeline = m_Pipeline;
+    process  = m_Process;
+    if (pipeline != null)
+      pipeline.destroy();
+    else if (process != null)
+      process.destroy();
   }
 
   /**
@@ -20,7 +20,28 @@
 
 package com.github.fracpete.processoutput4j.output;
 
+import com.github.fracpete.processoutput4j.core.MergedTranscript;
+import com.github.fracpete.processoutput4j.reader.AbstractProcessReader;
 import com.github.fracpete.processoutput4j.reader.CollectingProcessReader;
+import com.github.fracpete.processoutput4j.store.AbstractIndexedOutputStore;
+import com.github.fracpete.processoutput4j.store.AbstractOutputStore;
+import com.github.fracpete.processoutput4j.store.OutputCursor;
+import com.github.fracpete.processoutput4j.store.SegmentedStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Collects the process output (stdout and stderr) and makes them available
@@ -30,16 +51,117 @@ import com.github.fracpete.processoutput4j.reader.CollectingProcessReader;
  * @version $Revision: 6502 $
  */
 public final class CollectingProcessOutput
-  extends AbstractProcessOutput {
+  extends AbstractProcessOutput
+  implements Closeable {
 
   /** for serialization. */
   private static final long serialVersionUID = 1902809285333524039L;
 
-  /** the stdout content. */
-  protected StringBuilder m_StdOut;
+  /** the maximum number of lines an iterator fetches at a time. */
+  public static final int ITERATOR_BATCH_SIZE = 1024;
+
+  /** the maximum delay in msec of an iterator waiting for more lines. */
+  public static final int ITERATOR_MAX_WAIT = 10;
+
+  /**
+   * Iterates over the lines of stdout or stderr. While the process is
+   * still being read from, the iterator waits for further lines to arrive.
+   */
+  protected class LineIterator
+    implements Iterator<String> {
+
+    /** whether to iterate stdout or stderr. */
+    protected boolean m_Stdout;
+
+    /** the index of the next line to fetch. */
+    protected int m_Next;
+
+    /** the fetched lines. */
+    protected List<String> m_Batch;
+
+    /** the position in the fetched lines. */
+    protected int m_Position;
+
+    /**
+     * Initializes the iterator.
+     *
+     * @param stdout	whether to iterate stdout or stderr
+     */
+    public LineIterator(boolean stdout) {
+      m_Stdout   = stdout;
+      m_Next     = 0;
+      m_Batch    = new ArrayList<>();
+      m_Position = 0;
+    }
+
+    /**
+     * Returns whether there is another line, waiting for it if necessary.
+     *
+     * @return		true if another line available
+     * @throws IllegalStateException	if interrupted while waiting
+     */
+    @Override
+    public boolean hasNext() {
+      boolean	reading;
+      int	count;
+      long	wait;
 
-  /** the stderr content. */
-  protected StringBuilder m_StdErr;
+      if (m_Position < m_Batch.size())
+	return true;
+
+      wait = 0;
+      while (true) {
+	// check before counting, so no lines get missed after reading stopped
+	reading = isReading();
+	count   = lineCount(m_Stdout);
+	if (m_Next < count) {
+	  m_Batch    = getLines(m_Next, Math.min(count, m_Next + ITERATOR_BATCH_SIZE), m_Stdout);
+	  m_Next    += m_Batch.size();
+	  m_Position = 0;
+	  return true;
+	}
+	if (!reading)
+	  return false;
+	wait = Math.min(Math.max(wait * 2, 1), ITERATOR_MAX_WAIT);
+	LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(wait));
+	if (Thread.interrupted()) {
+	  Thread.currentThread().interrupt();
+	  throw new IllegalStateException("Interrupted while waiting for output!");
+	}
+      }
+    }
+
+    /**
+     * Returns the next line, waiting for it if necessary.
+     *
+     * @return		the line, without terminator
+     * @throws NoSuchElementException	if no more lines
+     */
+    @Override
+    public String next() {
+      if (!hasNext())
+	throw new NoSuchElementException();
+      return m_Batch.get(m_Position++);
+    }
+  }
+
+  /** the stdout content, if no other store set. */
+  protected SegmentedStore m_StdOut;
+
+  /** the stderr content, if no other store set. */
+  protected SegmentedStore m_StdErr;
+
+  /** whether to store stdout and stderr in a single transcript. */
+  protected boolean m_MergeStreams;
+
+  /** the lines of stdout and stderr in order of arrival (if merging). */
+  protected MergedTranscript m_Transcript;
+
+  /** the store for stdout, null for the default segmented store. */
+  protected AbstractOutputStore m_StdOutStore;
+
+  /** the store for stderr, null for the default segmented store. */
+  protected AbstractOutputStore m_StdErrStore;
 
   /**
    * For initializing the members.
@@ -47,45 +169,409 @@ public final class CollectingProcessOutput
   @Override
   protected void initialize() {
     super.initialize();
-    m_StdOut = new StringBuilder();
-    m_StdErr = new StringBuilder();
+    m_StdOut       = new SegmentedStore();
+    m_StdErr       = new SegmentedStore();
+    m_MergeStreams = false;
+    m_Transcript   = new MergedTranscript();
+    m_StdOutStore  = null;
+    m_StdErrStore  = null;
   }
 
   /**
-   * Configures the thread for stderr.
+   * Sets the store for stdout, e.g., for limiting the memory usage.
+   * Not used when merging the streams.
+   *
+   * @param value	the store, null for the default segmented store
+   */
+  public void setStdOutStore(AbstractOutputStore value) {
+    m_StdOutStore = value;
+  }
+
+  /**
+   * Returns the store for stdout.
+   *
+   * @return		the store, null for the default segmented store
+   */
+  public AbstractOutputStore getStdOutStore() {
+    return m_StdOutStore;
+  }
+
+  /**
+   * Sets the store for stderr, e.g., for limiting the memory usage.
+   * Not used when merging the streams.
+   *
+   * @param value	the store, null for the default segmented store
+   */
+  public void setStdErrStore(AbstractOutputStore value) {
+    m_StdErrStore = value;
+  }
+
+  /**
+   * Returns the store for stderr.
+   *
+   * @return		the store, null for the default segmented store
+   */
+  public AbstractOutputStore getStdErrStore() {
+    return m_StdErrStore;
+  }
+
+  /**
+   * Returns the store in use for stdout or stderr.
+   *
+   * @param stdout	whether for stdout or stderr
+   * @return		the store
+   */
+  protected AbstractOutputStore store(boolean stdout) {
+    if (stdout)
+      return (m_StdOutStore != null) ? m_StdOutStore : m_StdOut;
+    else
+      return (m_StdErrStore != null) ? m_StdErrStore : m_StdErr;
+  }
+
+  /**
+   * Sets whether to store stdout and stderr in a single transcript, which
+   * preserves the order in which the lines arrived.
+   *
+   * @param value	true if to merge
+   * @see		#getTranscript()
+   */
+  public void setMergeStreams(boolean value) {
+    m_MergeStreams = value;
+  }
+
+  /**
+   * Returns whether to store stdout and stderr in a single transcript, which
+   * preserves the order in which the lines arrived.
+   *
+   * @return		true if to merge
+   */
+  public boolean getMergeStreams() {
+    return m_MergeStreams;
+  }
+
+  /**
+   * Configures the reader for stderr.
    *
    * @param process 	the process to monitor
-   * @return		the configured thread, not yet started
+   * @return		the configured reader, not yet started
    */
-  protected Thread configureStdErr(Process process) {
-    return new Thread(new CollectingProcessReader(process, false, m_StdErr));
+  protected AbstractProcessReader configureStdErr(Process process) {
+    if (m_MergeStreams)
+      return new CollectingProcessReader(process, false, m_Transcript);
+    else
+      return new CollectingProcessReader(process, false, store(false));
   }
 
   /**
-   * Configures the thread for stdout.
+   * Configures the reader for stdout.
    *
    * @param process 	the process to monitor
-   * @return		the configured thread, not yet started
+   * @return		the configured reader, not yet started
    */
-  protected Thread configureStdOut(Process process) {
-    return new Thread(new CollectingProcessReader(process, true, m_StdOut));
+  protected AbstractProcessReader configureStdOut(Process process) {
+    if (m_MergeStreams)
+      return new CollectingProcessReader(process, true, m_Transcript);
+    else
+      return new CollectingProcessReader(process, true, store(true));
   }
 
   /**
-   * Returns the output on stdout.
+   * Returns the output on stdout. Can be called while the process is still
+   * running, returning a consistent snapshot of the complete lines.
    *
    * @return the output
    */
   public String getStdOut() {
-    return m_StdOut.toString();
+    if (m_MergeStreams)
+      return m_Transcript.getText(true);
+    else
+      return store(true).getContent();
   }
 
   /**
-   * Returns the output on stderr.
+   * Returns the output on stderr. Can be called while the process is still
+   * running, returning a consistent snapshot of the complete lines.
    *
    * @return the output
    */
   public String getStdErr() {
-    return m_StdErr.toString();
+    if (m_MergeStreams)
+      return m_Transcript.getText(false);
+    else
+      return store(false).getContent();
+  }
+
+  /**
+   * Returns a cursor for incrementally retrieving the output on stdout,
+   * e.g., for polling the progress of a long running process.
+   *
+   * @return		the cursor, positioned at the start
+   * @throws UnsupportedOperationException	if merging the streams or the
+   * 						store does not support it
+   */
+  public OutputCursor getStdOutCursor() {
+    return cursor(true);
+  }
+
+  /**
+   * Returns a cursor for incrementally retrieving the output on stderr,
+   * e.g., for polling the progress of a long running process.
+   *
+   * @return		the cursor, positioned at the start
+   * @throws UnsupportedOperationException	if merging the streams or the
+   * 						store does not support it
+   */
+  public OutputCursor getStdErrCursor() {
+    return cursor(false);
+  }
+
+  /**
+   * Returns a cursor for incrementally retrieving the output.
+   *
+   * @param stdout	whether for stdout or stderr
+   * @return		the cursor, positioned at the start
+   * @throws UnsupportedOperationException	if merging the streams or the
+   * 						store does not support it
+   */
+  protected OutputCursor cursor(boolean stdout) {
+    if (m_MergeStreams)
+      throw new UnsupportedOperationException("Cursors are not available when merging the streams!");
+    return indexed(store(stdout)).newCursor();
+  }
+
+  /**
+   * Returns the store as indexed store.
+   *
+   * @param store	the store to cast
+   * @return		the indexed store
+   * @throws UnsupportedOperationException	if the store does not support line access
+   */
+  protected AbstractIndexedOutputStore indexed(AbstractOutputStore store) {
+    if (store instanceof AbstractIndexedOutputStore)
+      return (AbstractIndexedOutputStore) store;
+    throw new UnsupportedOperationException("Store does not support line access: " + store.getClass().getName());
+  }
+
+  /**
+   * Returns the number of lines on stdout.
+   *
+   * @return		the number of lines
+   */
+  public int lineCount() {
+    return lineCount(true);
+  }
+
+  /**
+   * Returns the number of lines on stdout or stderr.
+   *
+   * @param stdout	whether to count stdout or stderr
+   * @return		the number of lines
+   */
+  public int lineCount(boolean stdout) {
+    if (m_MergeStreams)
+      return m_Transcript.size(stdout);
+    else
+      return indexed(store(stdout)).getLineCount();
+  }
+
+  /**
+   * Returns the specified line of stdout.
+   *
+   * @param index	the index of the line
+   * @return		the line, without terminator
+   */
+  public String getLine(int index) {
+    return getLine(index, true);
+  }
+
+  /**
+   * Returns the specified line of stdout or stderr.
+   *
+   * @param index	the index of the line
+   * @param stdout	whether to use stdout or stderr
+   * @return		the line, without terminator
+   */
+  public String getLine(int index, boolean stdout) {
+    if (m_MergeStreams)
+      return m_Transcript.getLines(index, index + 1, stdout).get(0);
+    else
+      return indexed(store(stdout)).getLine(index);
+  }
+
+  /**
+   * Returns the specified range of lines of stdout.
+   *
+   * @param from	the index of the first line (incl)
+   * @param to		the index of the last line (excl)
+   * @return		the lines, without terminators
+   */
+  public List<String> getLines(int from, int to) {
+    return getLines(from, to, true);
+  }
+
+  /**
+   * Returns the specified range of lines of stdout or stderr.
+   *
+   * @param from	the index of the first line (incl)
+   * @param to		the index of the last line (excl)
+   * @param stdout	whether to use stdout or stderr
+   * @return		the lines, without terminators
+   */
+  public List<String> getLines(int from, int to, boolean stdout) {
+    if (m_MergeStreams)
+      return m_Transcript.getLines(from, to, stdout);
+    else
+      return indexed(store(stdout)).getLines(from, to);
+  }
+
+  /**
+   * Returns the last lines of stdout.
+   *
+   * @param n		the maximum number of lines
+   * @return		the lines, without terminators
+   */
+  public List<String> tail(int n) {
+    return tail(n, true);
+  }
+
+  /**
+   * Returns the last lines of stdout or stderr.
+   *
+   * @param n		the maximum number of lines
+   * @param stdout	whether to use stdout or stderr
+   * @return		the lines, without terminators
+   */
+  public List<String> tail(int n, boolean stdout) {
+    int		count;
+
+    count = lineCount(stdout);
+    return getLines(Math.max(0, count - Math.max(0, n)), count, stdout);
+  }
+
+  /**
+   * Returns an iterator over the lines of stdout. While the process is
+   * still being read from (see {@link #monitorAsync(ProcessBuilder)}), the
+   * iterator blocks until further lines arrive.
+   *
+   * @return		the iterator
+   */
+  public Iterator<String> iterator() {
+    return iterator(true);
+  }
+
+  /**
+   * Returns an iterator over the lines of stdout or stderr. While the
+   * process is still being read from, the iterator blocks until further
+   * lines arrive.
+   *
+   * @param stdout	whether to iterate stdout or stderr
+   * @return		the iterator
+   */
+  public Iterator<String> iterator(boolean stdout) {
+    return new LineIterator(stdout);
+  }
+
+  /**
+   * Returns a lazy stream over the lines of stdout.
+   *
+   * @return		the stream
+   * @see		#lines(boolean)
+   */
+  public Stream<String> lines() {
+    return lines(true);
+  }
+
+  /**
+   * Returns a lazy stream over the lines of stdout or stderr. While the
+   * process is still being read from, the stream blocks until further lines
+   * arrive. Closing the stream (e.g., with try-with-resources after a
+   * {@code limit(n)}) stops the collection early by destroying the process
+   * if it is still being read from.
+   *
+   * @param stdout	whether to stream stdout or stderr
+   * @return		the stream
+   */
+  public Stream<String> lines(boolean stdout) {
+    return StreamSupport.stream(
+      Spliterators.spliteratorUnknownSize(iterator(stdout), Spliterator.ORDERED | Spliterator.NONNULL), false)
+      .onClose(() -> {
+	if (isReading())
+	  destroy();
+      });
+  }
+
+  /**
+   * Returns the output on stdout as bytes. Unless merging the streams, the
+   * bytes are returned as read from the process, without decoding.
+   *
+   * @return the output
+   */
+  public byte[] getStdOutBytes() {
+    if (m_MergeStreams)
+      return getStdOut().getBytes(Charset.defaultCharset());
+    else
+      return store(true).getBytes();
+  }
+
+  /**
+   * Returns the output on stderr as bytes. Unless merging the streams, the
+   * bytes are returned as read from the process, without decoding.
+   *
+   * @return the output
+   */
+  public byte[] getStdErrBytes() {
+    if (m_MergeStreams)
+      return getStdErr().getBytes(Charset.defaultCharset());
+    else
+      return store(false).getBytes();
+  }
+
+  /**
+   * Returns the output on stdout as stream. Stores that hold the raw bytes
+   * (e.g., on disk) avoid materializing the output as string.
+   *
+   * @return the output
+   */
+  public InputStream getStdOutStream() {
+    if (m_MergeStreams)
+      return new ByteArrayInputStream(getStdOutBytes());
+    else
+      return store(true).getInputStream();
+  }
+
+  /**
+   * Returns the output on stderr as stream. Stores that hold the raw bytes
+   * (e.g., on disk) avoid materializing the output as string.
+   *
+   * @return the output
+   */
+  public InputStream getStdErrStream() {
+    if (m_MergeStreams)
+      return new ByteArrayInputStream(getStdErrBytes());
+    else
+      return store(false).getInputStream();
+  }
+
+  /**
+   * Releases the stores, e.g., deleting any temporary files.
+   */
+  @Override
+  public void close() {
+    if (m_StdOutStore != null)
+      m_StdOutStore.close();
+    if (m_StdErrStore != null)
+      m_StdErrStore.close();
+    m_StdOut.close();
+    m_StdErr.close();
+  }
+
+  /**
+   * Returns the lines of stdout and stderr in the order they arrived.
+   *
+   * @return the transcript, empty if not merging the streams
+   * @see #setMergeStreams(boolean)
+   */
+  public MergedTranscript getTranscript() {
+    return m_Transcript;
   }
 }
@@ -20,8 +20,16 @@
 
 package com.github.fracpete.processoutput4j.output;
 
+import com.github.fracpete.processoutput4j.core.ConsoleSink;
+import com.github.fracpete.processoutput4j.core.ProcessPipeline;
+import com.github.fracpete.processoutput4j.reader.AbstractProcessReader;
 import com.github.fracpete.processoutput4j.reader.ConsoleOutputProcessReader;
 
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * A container class for the results obtained from executing a process.
  *
@@ -34,23 +42,195 @@ public final class ConsoleOutputProcessOutput
   /** for serialization. */
   private static final long serialVersionUID = 1902809285333524039L;
 
+  /** the sink to write to, null to print directly. */
+  protected transient ConsoleSink m_Sink;
+
+  /** whether to prefix the lines with the PID (sink only). */
+  protected boolean m_ShowPID;
+
+  /** whether to prefix the lines with the elapsed time (sink only). */
+  protected boolean m_ShowElapsed;
+
+  /** whether the process writes to stdout/stderr of the JVM directly. */
+  protected boolean m_InheritIO;
+
+  /**
+   * For initializing the members.
+   */
+  @Override
+  protected void initialize() {
+    super.initialize();
+    m_Sink        = null;
+    m_ShowPID     = false;
+    m_ShowElapsed = false;
+    m_InheritIO   = false;
+  }
+
+  /**
+   * Sets the sink to write the lines to, e.g., the shared one obtained via
+   * {@link ConsoleSink#getDefault()}. Rather than each reader printing its
+   * lines directly, the sink writes them in batches with a single thread.
+   *
+   * @param value	the sink, null to print directly
+   */
+  public void setSink(ConsoleSink value) {
+    m_Sink = value;
+  }
+
+  /**
+   * Returns the sink to write the lines to.
+   *
+   * @return		the sink, null if printing directly
+   */
+  public ConsoleSink getSink() {
+    return m_Sink;
+  }
+
+  /**
+   * Sets whether to prefix the lines with the PID of the process (Java 9+).
+   * Only used with a sink.
+   *
+   * @param value	true if to show the PID
+   */
+  public void setShowPID(boolean value) {
+    m_ShowPID = value;
+  }
+
+  /**
+   * Returns whether to prefix the lines with the PID of the process.
+   *
+   * @return		true if to show the PID
+   */
+  public boolean getShowPID() {
+    return m_ShowPID;
+  }
+
+  /**
+   * Sets whether to prefix the lines with the time elapsed since the
+   * process started. Only used with a sink.
+   *
+   * @param value	true if to show the elapsed time
+   */
+  public void setShowElapsed(boolean value) {
+    m_ShowElapsed = value;
+  }
+
+  /**
+   * Returns whether to prefix the lines with the time elapsed since the
+   * process started.
+   *
+   * @return		true if to show the elapsed time
+   */
+  public boolean getShowElapsed() {
+    return m_ShowElapsed;
+  }
+
+  /**
+   * Sets whether the process writes directly to the stdout/stderr file
+   * descriptors of the JVM ({@link Redirect#INHERIT}), without any reader
+   * threads or decoding involved. Prefixes and sink are not used then.
+   * Processes passed in already started must have been started with
+   * inherited stdout/stderr as well, as their output does not get read.
+   *
+   * @param value	true if to inherit stdout/stderr
+   */
+  public void setInheritIO(boolean value) {
+    m_InheritIO = value;
+  }
+
+  /**
+   * Returns whether the process writes directly to the stdout/stderr file
+   * descriptors of the JVM.
+   *
+   * @return		true if to inherit stdout/stderr
+   */
+  public boolean getInheritIO() {
+    return m_InheritIO;
+  }
+
+  /**
+   * Returns a copy of the builder, with stderr (and optionally stdout)
+   * redirected to the ones of the JVM. The caller's builder does not get
+   * modified, as it might get used by other threads at the same time.
+   *
+   * @param builder	the builder to copy
+   * @param stdout	whether to redirect stdout as well
+   * @return		the copy
+   */
+  protected ProcessBuilder inherit(ProcessBuilder builder, boolean stdout) {
+    ProcessBuilder	result;
+
+    result = new ProcessBuilder(new ArrayList<>(builder.command()));
+    result.directory(builder.directory());
+    result.environment().clear();
+    result.environment().putAll(builder.environment());
+    result.redirectInput(builder.redirectInput());
+    result.redirectOutput(stdout ? Redirect.INHERIT : builder.redirectOutput());
+    result.redirectError(Redirect.INHERIT);
+    result.redirectErrorStream(builder.redirectErrorStream());
+
+    return result;
+  }
+
+  /**
+   * Starts the process, redirecting stdout/stderr to the ones of the JVM
+   * if required (using a copy of the builder).
+   *
+   * @param builder	the builder to start the process with
+   * @return		the started process
+   * @throws IOException	if starting the process fails
+   */
+  @Override
+  protected Process start(ProcessBuilder builder) throws IOException {
+    if (!m_InheritIO)
+      return super.start(builder);
+    return super.start(inherit(builder, true));
+  }
+
+  /**
+   * Starts the stages of the pipeline, redirecting stdout of the last stage
+   * and stderr of all stages to the ones of the JVM if required (using
+   * copies of the builders).
+   *
+   * @param builders	the builders of the stages, in pipeline order
+   * @return		the started pipeline
+   * @throws IOException	if starting a stage fails
+   */
+  @Override
+  protected ProcessPipeline startPipeline(List<ProcessBuilder> builders) throws IOException {
+    List<ProcessBuilder>	copies;
+    int				i;
+
+    if (!m_InheritIO)
+      return super.startPipeline(builders);
+
+    copies = new ArrayList<>();
+    for (i = 0; i < builders.size(); i++)
+      copies.add(inherit(builders.get(i), i == builders.size() - 1));
+    return super.startPipeline(copies);
+  }
+
   /**
-   * Configures the thread for stderr.
+   * Configures the reader for stderr.
    *
    * @param process 	the process to monitor
-   * @return		the configured thread, not yet started
+   * @return		the configured reader, not yet started, null if inheriting
    */
-  protected Thread configureStdErr(Process process) {
-    return new Thread(new ConsoleOutputProcessReader(process, false, ""));
+  protected AbstractProcessReader configureStdErr(Process process) {
+    if (m_InheritIO)
+      return null;
+    return new ConsoleOutputProcessReader(process, false, "", m_Sink, m_ShowPID, m_ShowElapsed ? m_StartTime : -1);
   }
 
   /**
-   * Configures the thread for stdout.
+   * Configures the reader for stdout.
    *
    * @param process 	the process to monitor
-   * @return		the configured thread, not yet started
+   * @return		the configured reader, not yet started, null if inheriting
    */
-  protected Thread configureStdOut(Process process) {
-    return new Thread(new ConsoleOutputProcessReader(process, true, ""));
+  protected AbstractProcessReader configureStdOut(Process process) {
+    if (m_InheritIO)
+      return null;
+    return new ConsoleOutputProcessReader(process, true, "", m_Sink, m_ShowPID, m_ShowElapsed ? m_StartTime : -1);
   }
 }
@@ -0,0 +1,509 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * FileRedirectProcessOutput.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.output;
+
+import com.github.fracpete.processoutput4j.core.ProcessPipeline;
+import com.github.fracpete.processoutput4j.core.TempFiles;
+import com.github.fracpete.processoutput4j.reader.AbstractProcessReader;
+import com.github.fracpete.processoutput4j.store.MappedFileStore;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Lets the operating system write stdout and stderr of the process directly
+ * to files ({@link Redirect#to(File)}), without any reader threads or
+ * copying through the JVM. Once the process has finished, the output is
+ * available via memory-mapped, lazily built {@link MappedFileStore}s.
+ * <br>
+ * Unless files have been set explicitly, temporary files get created for
+ * each process, which get deleted when calling {@link #close()} (or when
+ * starting the next process), at the latest when the JVM exits (see
+ * {@link TempFiles}). The process must get started by the output, i.e.,
+ * monitored via a {@link ProcessBuilder}; processes passed in already
+ * started must have been redirected to the files set explicitly, as their
+ * output does not get read.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public final class FileRedirectProcessOutput
+  extends AbstractProcessOutput
+  implements Closeable {
+
+  /** for serialization. */
+  private static final long serialVersionUID = 6026352918330744215L;
+
+  /** the directory for the temporary files, null for the system default. */
+  protected File m_Directory;
+
+  /** the file for stdout, null for a temporary file. */
+  protected File m_StdOutFile;
+
+  /** the file for stderr, null for a temporary file. */
+  protected File m_StdErrFile;
+
+  /** whether to redirect stderr into the stdout file. */
+  protected boolean m_MergeStreams;
+
+  /** the process started by this output. */
+  protected transient Process m_Started;
+
+  /** the store for stdout. */
+  protected MappedFileStore m_StdOut;
+
+  /** the store for stderr. */
+  protected MappedFileStore m_StdErr;
+
+  /**
+   * For initializing the members.
+   */
+  @Override
+  protected void initialize() {
+    super.initialize();
+    m_Directory    = null;
+    m_StdOutFile   = null;
+    m_StdErrFile   = null;
+    m_MergeStreams = false;
+    m_Started      = null;
+    m_StdOut       = new MappedFileStore(null, false);
+    m_StdErr       = new MappedFileStore(null, false);
+  }
+
+  /**
+   * Sets the directory for the temporary files.
+   *
+   * @param value	the directory, null for the system's temp directory
+   */
+  public void setDirectory(File value) {
+    m_Directory = value;
+  }
+
+  /**
+   * Returns the directory for the temporary files.
+   *
+   * @return		the directory, null for the system's temp directory
+   */
+  public File getDirectory() {
+    return m_Directory;
+  }
+
+  /**
+   * Sets the file to redirect stdout to, which gets overwritten and is
+   * not deleted when closing the output.
+   *
+   * @param value	the file, null for a temporary file
+   */
+  public void setStdOutFile(File value) {
+    m_StdOutFile = value;
+  }
+
+  /**
+   * Returns the file to redirect stdout to.
+   *
+   * @return		the file, null for a temporary file
+   */
+  public File getStdOutFile() {
+    return m_StdOutFile;
+  }
+
+  /**
+   * Sets the file to redirect stderr to, which gets overwritten and is
+   * not deleted when closing the output.
+   *
+   * @param value	the file, null for a temporary file
+   */
+  public void setStdErrFile(File value) {
+    m_StdErrFile = value;
+  }
+
+  /**
+   * Returns the file to redirect stderr to.
+   *
+   * @return		the file, null for a temporary file
+   */
+  public File getStdErrFile() {
+    return m_StdErrFile;
+  }
+
+  /**
+   * Sets whether to let the operating system write stderr into the stdout
+   * file as well ({@link ProcessBuilder#redirectErrorStream(boolean)}),
+   * preserving the order of the output. Stderr is empty then.
+   *
+   * @param value	true if to merge
+   */
+  public void setMergeStreams(boolean value) {
+    m_MergeStreams = value;
+  }
+
+  /**
+   * Returns whether to let the operating system write stderr into the
+   * stdout file as well.
+   *
+   * @return		true if to merge
+   */
+  public boolean getMergeStreams() {
+    return m_MergeStreams;
+  }
+
+  /**
+   * Creates the store for the file to redirect to, creating a temporary
+   * file if none set.
+   *
+   * @param file	the file set explicitly, null for a temporary one
+   * @param suffix	the suffix for the temporary file
+   * @return		the store for the file
+   * @throws IOException	if creating the temporary file fails
+   */
+  protected MappedFileStore newStore(File file, String suffix) throws IOException {
+    if (file != null)
+      return new MappedFileStore(file, false);
+    file = TempFiles.create(suffix, m_Directory);
+    return new MappedFileStore(file, true);
+  }
+
+  /**
+   * Starts the process with stdout/stderr redirected to the files. The
+   * redirects of the builder get restored afterwards.
+   *
+   * @param builder	the builder to start the process with
+   * @return		the started process
+   * @throws IOException	if creating the files or starting the process fails
+   */
+  @Override
+  protected Process start(ProcessBuilder builder) throws IOException {
+    Redirect	stdout;
+    Redirect	stderr;
+    boolean	merge;
+
+    close();
+    m_StdOut = newStore(m_StdOutFile, ".out");
+    if (m_MergeStreams)
+      m_StdErr = new MappedFileStore(null, false);
+    else
+      m_StdErr = newStore(m_StdErrFile, ".err");
+
+    stdout = builder.redirectOutput();
+    stderr = builder.redirectError();
+    merge  = builder.redirectErrorStream();
+    try {
+      builder.redirectOutput(Redirect.to(m_StdOut.getFile()));
+      if (m_MergeStreams)
+	builder.redirectErrorStream(true);
+      else
+	builder.redirectError(Redirect.to(m_StdErr.getFile()));
+      m_Started = super.start(builder);
+      return m_Started;
+    }
+    catch (IOException e) {
+      close();
+      throw e;
+    }
+    finally {
+      builder.redirectOutput(stdout);
+      builder.redirectError(stderr);
+      builder.redirectErrorStream(merge);
+    }
+  }
+
+  /**
+   * Starts the stages of the pipeline with stdout of the last stage and
+   * stderr of all stages redirected to the files. The files get appended
+   * to by all the stages, hence explicitly set files get emptied first.
+   * The redirects of the builders get restored afterwards.
+   *
+   * @param builders	the builders of the stages, in pipeline order
+   * @return		the started pipeline
+   * @throws IOException	if creating the files or starting a stage fails
+   */
+  @Override
+  protected ProcessPipeline startPipeline(List<ProcessBuilder> builders) throws IOException {
+    ProcessPipeline	result;
+    ProcessBuilder	last;
+    Redirect		stdout;
+    Redirect[]		stderr;
+    boolean[]		merge;
+    Redirect		err;
+    int			i;
+
+    close();
+    m_StdOut = newStore(m_StdOutFile, ".out");
+    if (m_MergeStreams)
+      m_StdErr = new MappedFileStore(null, false);
+    else
+      m_StdErr = newStore(m_StdErrFile, ".err");
+    new FileOutputStream(m_StdOut.getFile()).close();
+    if (!m_MergeStreams)
+      new FileOutputStream(m_StdErr.getFile()).close();
+    err = Redirect.appendTo(m_MergeStreams ? m_StdOut.getFile() : m_StdErr.getFile());
+
+    last   = builders.get(builders.size() - 1);
+    stdout = last.redirectOutput();
+    stderr = new Redirect[builders.size()];
+    merge  = new boolean[builders.size()];
+    for (i = 0; i < builders.size(); i++) {
+      stderr[i] = builders.get(i).redirectError();
+      merge[i]  = builders.get(i).redirectErrorStream();
+    }
+    try {
+      last.redirectOutput(Redirect.appendTo(m_StdOut.getFile()));
+      for (ProcessBuilder builder: builders) {
+	builder.redirectErrorStream(false);
+	builder.redirectError(err);
+      }
+      result    = super.startPipeline(builders);
+      m_Started = result.getLast();
+      return result;
+    }
+    catch (IOException e) {
+      close();
+      throw e;
+    }
+    finally {
+      last.redirectOutput(stdout);
+      for (i = 0; i < builders.size(); i++) {
+	builders.get(i).redirectError(stderr[i]);
+	builders.get(i).redirectErrorStream(merge[i]);
+      }
+    }
+  }
+
+  /**
+   * Resets the state for monitoring the process. For processes not started
+   * by this output, the explicitly set files (if any) get used.
+   *
+   * @param cmd		the command that was used
+   * @param env		the environment
+   * @param process 	the process to monitor
+   */
+  @Override
+  protected void prepare(String[] cmd, String[] env, Process process) {
+    super.prepare(cmd, env, process);
+    if (process != m_Started) {
+      close();
+      m_StdOut = new MappedFileStore(m_StdOutFile, false);
+      m_StdErr = new MappedFileStore(m_MergeStreams ? null : m_StdErrFile, false);
+    }
+    m_Started = null;
+  }
+
+  /**
+   * Returns no reader, as the operating system writes stderr to the file.
+   *
+   * @param process 	the process to monitor
+   * @return		always null
+   */
+  @Override
+  protected AbstractProcessReader configureStdErr(Process process) {
+    return null;
+  }
+
+  /**
+   * Returns no reader, as the operating system writes stdout to the file.
+   *
+   * @param process 	the process to monitor
+   * @return		always null
+   */
+  @Override
+  protected AbstractProcessReader configureStdOut(Process process) {
+    return null;
+  }
+
+  /**
+   * Returns the store for stdout or stderr.
+   *
+   * @param stdout	whether for stdout or stderr
+   * @return		the store
+   */
+  public MappedFileStore getStore(boolean stdout) {
+    return stdout ? m_StdOut : m_StdErr;
+  }
+
+  /**
+   * Returns the output on stdout, as written by the process.
+   *
+   * @return the output
+   */
+  public String getStdOut() {
+    return m_StdOut.getContent();
+  }
+
+  /**
+   * Returns the output on stderr, as written by the process.
+   *
+   * @return the output
+   */
+  public String getStdErr() {
+    return m_StdErr.getContent();
+  }
+
+  /**
+   * Returns the output on stdout as bytes, without decoding.
+   *
+   * @return the output
+   */
+  public byte[] getStdOutBytes() {
+    return m_StdOut.getBytes();
+  }
+
+  /**
+   * Returns the output on stderr as bytes, without decoding.
+   *
+   * @return the output
+   */
+  public byte[] getStdErrBytes() {
+    return m_StdErr.getBytes();
+  }
+
+  /**
+   * Returns the output on stdout as stream, reading from the file.
+   *
+   * @return the output
+   */
+  public InputStream getStdOutStream() {
+    return m_StdOut.getInputStream();
+  }
+
+  /**
+   * Returns the output on stderr as stream, reading from the file.
+   *
+   * @return the output
+   */
+  public InputStream getStdErrStream() {
+    return m_StdErr.getInputStream();
+  }
+
+  /**
+   * Returns a read-only, memory-mapped buffer over the whole output on
+   * stdout or stderr.
+   *
+   * @param stdout	whether for stdout or stderr
+   * @return		the buffer
+   * @throws IllegalArgumentException	if larger than 2GB, use
+   * 					{@link MappedFileStore#map(long, long)}
+   * 					for ranges instead
+   */
+  public ByteBuffer map(boolean stdout) {
+    MappedFileStore	store;
+
+    store = getStore(stdout);
+    return store.map(0, store.size());
+  }
+
+  /**
+   * Returns the number of lines on stdout.
+   *
+   * @return		the number of lines
+   */
+  public int lineCount() {
+    return lineCount(true);
+  }
+
+  /**
+   * Returns the number of lines on stdout or stderr.
+   *
+   * @param stdout	whether to count stdout or stderr
+   * @return		the number of lines
+   */
+  public int lineCount(boolean stdout) {
+    return getStore(stdout).getLineCount();
+  }
+
+  /**
+   * Returns the specified line of stdout.
+   *
+   * @param index	the index of the line
+   * @return		the line, without terminator
+   */
+  public String getLine(int index) {
+    return getLine(index, true);
+  }
+
+  /**
+   * Returns the specified line of stdout or stderr.
+   *
+   * @param index	the index of the line
+   * @param stdout	whether to use stdout or stderr
+   * @return		the line, without terminator
+   */
+  public String getLine(int index, boolean stdout) {
+    return getStore(stdout).getLine(index);
+  }
+
+  /**
+   * Returns the specified range of lines of stdout.
+   *
+   * @param from	the index of the first line (incl)
+   * @param to		the index of the last line (excl)
+   * @return		the lines, without terminators
+   */
+  public List<String> getLines(int from, int to) {
+    return getLines(from, to, true);
+  }
+
+  /**
+   * Returns the specified range of lines of stdout or stderr.
+   *
+   * @param from	the index of the first line (incl)
+   * @param to		the index of the last line (excl)
+   * @param stdout	whether to use stdout or stderr
+   * @return		the lines, without terminators
+   */
+  public List<String> getLines(int from, int to, boolean stdout) {
+    return getStore(stdout).getLines(from, to);
+  }
+
+  /**
+   * Returns the last lines of stdout.
+   *
+   * @param n		the maximum number of lines
+   * @return		the lines, without terminators
+   */
+  public List<String> tail(int n) {
+    return tail(n, true);
+  }
+
+  /**
+   * Returns the last lines of stdout or stderr.
+   *
+   * @param n		the maximum number of lines
+   * @param stdout	whether to use stdout or stderr
+   * @return		the lines, without terminators
+   */
+  public List<String> tail(int n, boolean stdout) {
+    return getStore(stdout).tail(n);
+  }
+
+  /**
+   * Releases the stores, deleting any temporary files.
+   */
+  @Override
+  public void close() {
+    m_StdOut.close();
+    m_StdErr.close();
+  }
+}
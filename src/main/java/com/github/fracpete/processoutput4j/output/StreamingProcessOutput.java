@@ -20,9 +20,14 @@
 
 package com.github.fracpete.processoutput4j.output;
 
+import com.github.fracpete.processoutput4j.core.CompletionAwareStreamingProcessOwner;
+import com.github.fracpete.processoutput4j.core.LineSequencer;
 import com.github.fracpete.processoutput4j.core.StreamingProcessOwner;
+import com.github.fracpete.processoutput4j.reader.AbstractProcessReader;
 import com.github.fracpete.processoutput4j.reader.StreamingProcessReader;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Streams the data into the owning {@link StreamingProcessOwner} object.
  *
@@ -36,6 +41,9 @@ public class StreamingProcessOutput
   /** the owner. */
   protected StreamingProcessOwner m_Owner;
 
+  /** the sequencer for the lines of stdout and stderr. */
+  protected transient LineSequencer m_Sequencer;
+
   /**
    * Initializes the process output with the specified owning object.
    *
@@ -47,24 +55,65 @@ public class StreamingProcessOutput
   }
 
   /**
-   * Configures the thread for stderr.
+   * Resets the state for monitoring the process.
    *
+   * @param cmd		the command that was used
+   * @param env		the environment
    * @param process 	the process to monitor
-   * @return		the configured thread, not yet started
    */
   @Override
-  protected Thread configureStdErr(Process process) {
-    return new Thread(new StreamingProcessReader(m_Owner, process, false));
+  protected void prepare(String[] cmd, String[] env, Process process) {
+    super.prepare(cmd, env, process);
+    m_Sequencer = new LineSequencer();
   }
 
   /**
-   * Configures the thread for stdout.
+   * Notifies owners that implement {@link CompletionAwareStreamingProcessOwner}
+   * once both readers have finished.
+   *
+   * @param readers	the future that completes once both readers have finished
+   * @return		the future to wait for
+   */
+  @Override
+  protected CompletableFuture<Void> readersStarted(CompletableFuture<Void> readers) {
+    CompletableFuture<Void>	result;
+
+    result = super.readersStarted(readers);
+    if (m_Owner instanceof CompletionAwareStreamingProcessOwner)
+      result = result.whenComplete((dummy, error) -> ((CompletionAwareStreamingProcessOwner) m_Owner).processFinished());
+
+    return result;
+  }
+
+  /**
+   * Configures the reader for stderr.
    *
    * @param process 	the process to monitor
-   * @return		the configured thread, not yet started
+   * @return		the configured reader, not yet started
    */
   @Override
-  protected Thread configureStdOut(Process process) {
-    return new Thread(new StreamingProcessReader(m_Owner, process, true));
+  protected AbstractProcessReader configureStdErr(Process process) {
+    StreamingProcessReader	result;
+
+    result = new StreamingProcessReader(m_Owner, process, false, m_Sequencer);
+    result.setExecutor(getExecutor());
+
+    return result;
+  }
+
+  /**
+   * Configures the reader for stdout.
+   *
+   * @param process 	the process to monitor
+   * @return		the configured reader, not yet started
+   */
+  @Override
+  protected AbstractProcessReader configureStdOut(Process process) {
+    StreamingProcessReader	result;
+
+    result = new StreamingProcessReader(m_Owner, process, true, m_Sequencer);
+    result.setExecutor(getExecutor());
+
+    return result;
   }
 }
@@ -0,0 +1,227 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TeeProcessOutput.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.output;
+
+import com.github.fracpete.processoutput4j.core.ProcessPipeline;
+import com.github.fracpete.processoutput4j.reader.AbstractProcessReader;
+import com.github.fracpete.processoutput4j.reader.TeeProcessReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Passes the output of the process on to several other outputs, e.g., for
+ * displaying it in the console while also collecting it. Stdout and stderr
+ * only get read once, by a single reader each, which splits the lines and
+ * fans them out to the readers of the outputs. Lines get decoded at most
+ * once, and not at all if all the outputs process the raw bytes.
+ * <br>
+ * Threading, buffering and timestamping are determined by this output,
+ * the settings of the wrapped outputs are ignored. Once monitoring has
+ * finished, exit code(s) and timing get passed on to the wrapped outputs.
+ * <br>
+ * Outputs that rely on the operating system redirecting the streams
+ * cannot be wrapped, i.e., {@link FileRedirectProcessOutput} and
+ * {@link ConsoleOutputProcessOutput} when inheriting I/O.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class TeeProcessOutput
+  extends AbstractProcessOutput {
+
+  private static final long serialVersionUID = -2618470530951883046L;
+
+  /** the outputs to pass the output on to. */
+  protected List<AbstractProcessOutput> m_Outputs;
+
+  /**
+   * Initializes the process output with the outputs to pass the output on to.
+   *
+   * @param outputs	the outputs
+   * @throws IllegalArgumentException	if no outputs provided or an output
+   * 					relies on redirection by the OS
+   */
+  public TeeProcessOutput(AbstractProcessOutput... outputs) {
+    super();
+    if (outputs.length == 0)
+      throw new IllegalArgumentException("At least one output required!");
+    m_Outputs = new ArrayList<>(Arrays.asList(outputs));
+    check();
+  }
+
+  /**
+   * Ensures that all the wrapped outputs read the streams themselves,
+   * as the tee does not redirect any streams.
+   *
+   * @throws IllegalArgumentException	if an output relies on redirection
+   * 					by the OS
+   */
+  protected void check() {
+    for (AbstractProcessOutput output: m_Outputs) {
+      if (output instanceof FileRedirectProcessOutput)
+	throw new IllegalArgumentException("Cannot tee into " + FileRedirectProcessOutput.class.getName() + "!");
+      if ((output instanceof ConsoleOutputProcessOutput) && ((ConsoleOutputProcessOutput) output).getInheritIO())
+	throw new IllegalArgumentException("Cannot tee into " + ConsoleOutputProcessOutput.class.getName() + " that inherits I/O!");
+    }
+  }
+
+  /**
+   * Returns the outputs the output gets passed on to.
+   *
+   * @return		the outputs
+   */
+  public List<AbstractProcessOutput> getOutputs() {
+    return Collections.unmodifiableList(m_Outputs);
+  }
+
+  /**
+   * Starts the process, after ensuring that the wrapped outputs (still)
+   * read the streams themselves.
+   *
+   * @param builder	the builder to start the process with
+   * @return		the started process
+   * @throws IOException	if starting the process fails
+   */
+  @Override
+  protected Process start(ProcessBuilder builder) throws IOException {
+    check();
+    return super.start(builder);
+  }
+
+  /**
+   * Starts the stages of a pipeline, after ensuring that the wrapped
+   * outputs (still) read the streams themselves.
+   *
+   * @param builders	the builders of the stages, in pipeline order
+   * @return		the started pipeline
+   * @throws IOException	if starting a stage fails
+   */
+  @Override
+  protected ProcessPipeline startPipeline(List<ProcessBuilder> builders) throws IOException {
+    check();
+    return super.startPipeline(builders);
+  }
+
+  /**
+   * Resets the state for monitoring the process, including the one of the
+   * wrapped outputs.
+   *
+   * @param cmd		the command that was used
+   * @param env		the environment
+   * @param process 	the process to monitor
+   */
+  @Override
+  protected void prepare(String[] cmd, String[] env, Process process) {
+    super.prepare(cmd, env, process);
+    for (AbstractProcessOutput output: m_Outputs)
+      output.prepare(cmd, env, process);
+  }
+
+  /**
+   * Lets the wrapped outputs know about the readers, so they can tell
+   * whether the process is still being read (e.g., for live iterators)
+   * and chain their own actions.
+   *
+   * @param readers	the future that completes once both readers have finished
+   * @return		the future to wait for
+   */
+  @Override
+  protected CompletableFuture<Void> readersStarted(CompletableFuture<Void> readers) {
+    CompletableFuture<Void>	result;
+
+    result = super.readersStarted(readers);
+    for (AbstractProcessOutput output: m_Outputs) {
+      output.m_Readers = readers;
+      result = CompletableFuture.allOf(result, output.readersStarted(readers));
+    }
+
+    return result;
+  }
+
+  /**
+   * Passes exit code(s) and timing on to the wrapped outputs.
+   */
+  @Override
+  protected void monitoringFinished() {
+    super.monitoringFinished();
+    for (AbstractProcessOutput output: m_Outputs) {
+      output.m_StartTime = m_StartTime;
+      output.m_EndTime   = m_EndTime;
+      output.m_ExitCode  = m_ExitCode;
+      output.m_ExitCodes = (m_ExitCodes == null) ? null : m_ExitCodes.clone();
+      output.m_Process   = null;
+      output.m_Pipeline  = null;
+      output.monitoringFinished();
+    }
+  }
+
+  /**
+   * Configures the reader that fans out the lines of stdout or stderr.
+   *
+   * @param process 	the process to monitor
+   * @param stdout	whether for stdout or stderr
+   * @return		the configured reader, not yet started, null if none
+   * 			of the outputs reads the stream
+   */
+  protected AbstractProcessReader configure(Process process, boolean stdout) {
+    List<AbstractProcessReader>	readers;
+    AbstractProcessReader	reader;
+
+    readers = new ArrayList<>();
+    for (AbstractProcessOutput output: m_Outputs) {
+      reader = stdout ? output.configureStdOut(process) : output.configureStdErr(process);
+      if (reader != null)
+	readers.add(reader);
+    }
+
+    if (readers.isEmpty())
+      return null;
+    return new TeeProcessReader(process, stdout, readers);
+  }
+
+  /**
+   * Configures the reader for stderr.
+   *
+   * @param process 	the process to monitor
+   * @return		the configured reader, not yet started, null if none
+   * 			of the outputs reads stderr
+   */
+  @Override
+  protected AbstractProcessReader configureStdErr(Process process) {
+    return configure(process, false);
+  }
+
+  /**
+   * Configures the reader for stdout.
+   *
+   * @param process 	the process to monitor
+   * @return		the configured reader, not yet started, null if none
+   * 			of the outputs reads stdout
+   */
+  @Override
+  protected AbstractProcessReader configureStdOut(Process process) {
+    return configure(process, true);
+  }
+}
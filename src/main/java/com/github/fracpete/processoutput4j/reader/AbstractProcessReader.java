@@ -20,8 +20,12 @@
 
 package com.github.fracpete.processoutput4j.reader;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import com.github.fracpete.processoutput4j.core.CoarseClock;
+import com.github.fracpete.processoutput4j.core.TimestampMode;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Ancestor for readers that read line from stdout/stderr of the provided
@@ -33,12 +37,51 @@ import java.io.InputStreamReader;
 public abstract class AbstractProcessReader
   implements Runnable {
 
+  /** the default size of the read buffer. */
+  public static final int DEFAULT_BUFFER_SIZE = 16384;
+
+  /** the default maximum length of a line in bytes. */
+  public static final int DEFAULT_MAX_LINE_LENGTH = 8 * 1024 * 1024;
+
   /** the process to read from. */
   protected Process m_Process;
 
   /** whether to use stdout or stderr. */
   protected boolean m_Stdout;
 
+  /** the charset for decoding the lines. */
+  protected Charset m_Charset;
+
+  /** the size of the read buffer. */
+  protected int m_BufferSize;
+
+  /** the bytes of the current line, when bytes are pushed via {@link #feed(byte[], int, int)}. */
+  protected byte[] m_Line;
+
+  /** the number of bytes in the current line. */
+  protected int m_LineLength;
+
+  /** whether the last byte was a carriage return. */
+  protected boolean m_LastCR;
+
+  /** the maximum length of a line in bytes, longer lines get split. */
+  protected int m_MaxLineLength;
+
+  /** the number of times a line got split due to its length. */
+  protected AtomicLong m_SplitLines;
+
+  /** how to timestamp the lines. */
+  protected TimestampMode m_TimestampMode;
+
+  /** the clock to use with {@link TimestampMode#COARSE}. */
+  protected CoarseClock m_Clock;
+
+  /** whether the reader acquired the shared clock itself and has to release it. */
+  protected boolean m_OwnsClock;
+
+  /** the timestamp of the current line (msec since epoch), 0 if none. */
+  protected long m_Timestamp;
+
   /**
    * Initializes the reader.
    *
@@ -48,6 +91,17 @@ public abstract class AbstractProcessReader
   public AbstractProcessReader(Process process, boolean stdout) {
     m_Process = process;
     m_Stdout = stdout;
+    m_Charset = Charset.defaultCharset();
+    m_BufferSize = DEFAULT_BUFFER_SIZE;
+    m_Line = new byte[256];
+    m_LineLength = 0;
+    m_LastCR = false;
+    m_MaxLineLength = DEFAULT_MAX_LINE_LENGTH;
+    m_SplitLines = new AtomicLong();
+    m_TimestampMode = TimestampMode.NONE;
+    m_Clock = null;
+    m_OwnsClock = false;
+    m_Timestamp = 0;
   }
 
   /**
@@ -68,6 +122,307 @@ public abstract class AbstractProcessReader
     return m_Process;
   }
 
+  /**
+   * Returns the stream to read from, i.e., stdout or stderr of the process.
+   *
+   * @return		the stream
+   */
+  public InputStream getInputStream() {
+    if (m_Stdout)
+      return m_Process.getInputStream();
+    else
+      return m_Process.getErrorStream();
+  }
+
+  /**
+   * Sets the charset used for decoding the lines. Lines get split on the
+   * byte level, hence the charset must encode \n and \r as single bytes
+   * (like ASCII, ISO-8859-x or UTF-8 do).
+   *
+   * @param value	the charset
+   */
+  public void setCharset(Charset value) {
+    if (value == null)
+      throw new IllegalArgumentException("Charset cannot be null!");
+    m_Charset = value;
+  }
+
+  /**
+   * Returns the charset used for decoding the lines.
+   *
+   * @return		the charset
+   */
+  public Charset getCharset() {
+    return m_Charset;
+  }
+
+  /**
+   * Sets the size of the buffer for reading from the process.
+   *
+   * @param value	the size in bytes
+   */
+  public void setBufferSize(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Buffer size must be at least 1: " + value);
+    m_BufferSize = value;
+  }
+
+  /**
+   * Returns the size of the buffer for reading from the process.
+   *
+   * @return		the size in bytes
+   */
+  public int getBufferSize() {
+    return m_BufferSize;
+  }
+
+  /**
+   * Sets the maximum length of a line in bytes. Longer lines get split
+   * into several lines, limiting the memory used for an incomplete line
+   * (e.g., when a process never outputs a line terminator).
+   *
+   * @param value	the maximum length
+   * @see		#getSplitLines()
+   */
+  public void setMaxLineLength(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Maximum line length must be at least 1: " + value);
+    m_MaxLineLength = value;
+  }
+
+  /**
+   * Returns the maximum length of a line in bytes.
+   *
+   * @return		the maximum length
+   */
+  public int getMaxLineLength() {
+    return m_MaxLineLength;
+  }
+
+  /**
+   * Sets the counter for the lines that got split due to their length,
+   * e.g., for sharing it between readers.
+   *
+   * @param value	the counter
+   */
+  public void setSplitLines(AtomicLong value) {
+    if (value == null)
+      throw new IllegalArgumentException("Counter cannot be null!");
+    m_SplitLines = value;
+  }
+
+  /**
+   * Returns the number of times a line got split, as it exceeded the
+   * maximum line length.
+   *
+   * @return		the count
+   * @see		#getMaxLineLength()
+   */
+  public long getSplitLines() {
+    return m_SplitLines.get();
+  }
+
+  /**
+   * Sets how to timestamp the lines.
+   *
+   * @param mode	the mode
+   * @param clock	the clock for {@link TimestampMode#COARSE}, null for
+   * 			the shared one with default precision (which the
+   * 			reader releases once the stream has ended)
+   */
+  public void setTimestampMode(TimestampMode mode, CoarseClock clock) {
+    if (mode == null)
+      throw new IllegalArgumentException("Timestamp mode cannot be null!");
+    releaseClock();
+    if ((mode == TimestampMode.COARSE) && (clock == null)) {
+      clock       = CoarseClock.acquire(CoarseClock.DEFAULT_PRECISION);
+      m_OwnsClock = true;
+    }
+    m_TimestampMode = mode;
+    m_Clock         = clock;
+  }
+
+  /**
+   * Releases the shared clock, if the reader acquired it itself.
+   */
+  protected void releaseClock() {
+    if (m_OwnsClock) {
+      m_OwnsClock = false;
+      m_Clock.release();
+    }
+  }
+
+  /**
+   * Returns how to timestamp the lines.
+   *
+   * @return		the mode
+   */
+  public TimestampMode getTimestampMode() {
+    return m_TimestampMode;
+  }
+
+  /**
+   * Returns the arrival time of the line currently being processed, i.e.,
+   * when the chunk completing the line got read.
+   *
+   * @return		the timestamp (msec since epoch), 0 if not timestamping
+   */
+  public long getTimestamp() {
+    return m_Timestamp;
+  }
+
+  /**
+   * Processes a chunk of data read from stdout/stderr. Complete lines get
+   * forwarded to {@link #process(byte[], int, int)}, any incomplete line is
+   * kept until more data arrives or {@link #finish()} gets called. Lines
+   * are terminated by \n, \r or \r\n. Lines longer than the maximum line
+   * length get split.
+   *
+   * @param data	the buffer with the data
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   */
+  public void feed(byte[] data, int offset, int length) {
+    int		start;
+    int		end;
+    int		i;
+    byte	b;
+
+    start = offset;
+    end   = offset + length;
+
+    switch (m_TimestampMode) {
+      case CHUNK:
+	m_Timestamp = System.currentTimeMillis();
+	break;
+      case COARSE:
+	m_Timestamp = m_Clock.now();
+	break;
+      default:
+	break;
+    }
+
+    // \r\n split across chunks?
+    if (m_LastCR && (start < end) && (data[start] == '\n'))
+      start++;
+    m_LastCR = false;
+
+    for (i = start; i < end; i++) {
+      b = data[i];
+      if ((b != '\n') && (b != '\r'))
+	continue;
+      if ((m_LineLength == 0) && (i - start <= m_MaxLineLength)) {
+	process(data, start, i - start);
+      }
+      else {
+	append(data, start, i - start);
+	process(m_Line, 0, m_LineLength);
+	m_LineLength = 0;
+      }
+      if (b == '\r') {
+	if (i + 1 < end) {
+	  if (data[i + 1] == '\n')
+	    i++;
+	}
+	else {
+	  m_LastCR = true;
+	}
+      }
+      start = i + 1;
+    }
+
+    if (start < end)
+      append(data, start, end - start);
+  }
+
+  /**
+   * Appends the bytes to the incomplete current line. Whenever the line
+   * reaches the maximum line length, it gets processed and a new line
+   * started.
+   *
+   * @param data	the buffer with the data
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   */
+  protected void append(byte[] data, int offset, int length) {
+    byte[]	line;
+    int		len;
+
+    while (length > 0) {
+      len = Math.min(length, m_MaxLineLength - m_LineLength);
+      if (len <= 0) {
+	process(m_Line, 0, m_LineLength);
+	m_LineLength = 0;
+	m_SplitLines.incrementAndGet();
+	continue;
+      }
+      if (m_LineLength + len > m_Line.length) {
+	line = new byte[Math.min(m_MaxLineLength, Math.max(m_Line.length * 2, m_LineLength + len))];
+	System.arraycopy(m_Line, 0, line, 0, m_LineLength);
+	m_Line = line;
+      }
+      System.arraycopy(data, offset, m_Line, m_LineLength, len);
+      m_LineLength += len;
+      offset       += len;
+      length       -= len;
+    }
+  }
+
+  /**
+   * Signals the end of the data pushed via {@link #feed(byte[], int, int)},
+   * processing any incomplete last line. {@link #endOfStream()} gets
+   * called even if processing the last line fails.
+   */
+  public void finish() {
+    try {
+      if (m_LineLength > 0)
+	process(m_Line, 0, m_LineLength);
+    }
+    finally {
+      m_LineLength = 0;
+      m_LastCR     = false;
+      releaseClock();
+      endOfStream();
+    }
+  }
+
+  /**
+   * Gets called once the end of the stream has been reached, or reading
+   * failed. Default implementation does nothing.
+   */
+  protected void endOfStream() {
+  }
+
+  /**
+   * For processing the raw bytes of a line read from stdout/stderr (without
+   * line terminator). The bytes are only valid for the duration of the call.
+   * <br>
+   * The default implementation decodes the bytes using the charset and
+   * forwards the line to {@link #process(String)}. Derived classes that do
+   * not need the line as string can override this method and skip the
+   * decoding.
+   *
+   * @param data	the buffer with the line
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   */
+  protected void process(byte[] data, int offset, int length) {
+    process(new String(data, offset, length, m_Charset));
+  }
+
+  /**
+   * Returns whether the reader processes the raw bytes of the lines without
+   * decoding them, i.e., {@link #process(byte[], int, int)} does not
+   * forward to {@link #process(String)}. Readers that fan out lines use
+   * this to decode each line at most once. Default implementation returns
+   * false.
+   *
+   * @return		true if processing the bytes directly
+   */
+  protected boolean prefersBytes() {
+    return false;
+  }
+
   /**
    * For processing the line read from stdout/stderr.
    *
@@ -80,21 +435,22 @@ public abstract class AbstractProcessReader
    */
   @Override
   public void run() {
-    String 		line;
-    BufferedReader reader;
+    InputStream	stream;
+    byte[]	buffer;
+    int		read;
 
     try {
-      if (m_Stdout)
-	reader = new BufferedReader(new InputStreamReader(m_Process.getInputStream()), 1024);
-      else
-	reader = new BufferedReader(new InputStreamReader(m_Process.getErrorStream()), 1024);
-
-      while ((line = reader.readLine()) != null)
-	process(line);
+      stream = getInputStream();
+      buffer = new byte[m_BufferSize];
+      while ((read = stream.read(buffer)) != -1)
+	feed(buffer, 0, read);
+      finish();
     }
     catch (Exception e) {
       System.err.println("Failed to read from " + (m_Stdout ? "stdout" : "stderr") + " for process #" + m_Process.hashCode() + ":");
       e.printStackTrace();
+      releaseClock();
+      endOfStream();
     }
   }
 }
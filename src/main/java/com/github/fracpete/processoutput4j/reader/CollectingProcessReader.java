@@ -20,6 +20,10 @@
 
 package com.github.fracpete.processoutput4j.reader;
 
+import com.github.fracpete.processoutput4j.core.MergedTranscript;
+import com.github.fracpete.processoutput4j.store.AbstractOutputStore;
+import com.github.fracpete.processoutput4j.store.LineIndex;
+
 /**
  * Reader for storing all content.
  *
@@ -32,6 +36,15 @@ public class CollectingProcessReader
   /** the string builder to store the data in. */
   protected StringBuilder m_Content;
 
+  /** the index of the lines in the string builder, can be null. */
+  protected LineIndex m_Index;
+
+  /** the transcript to store the data in instead, can be null. */
+  protected MergedTranscript m_Transcript;
+
+  /** the store to store the data in instead, can be null. */
+  protected AbstractOutputStore m_Store;
+
   /**
    * Initializes the reader.
    *
@@ -40,19 +53,84 @@ public class CollectingProcessReader
    * @param content	for storing the content
    */
   public CollectingProcessReader(Process process, boolean stdout, StringBuilder content) {
+    this(process, stdout, content, null);
+  }
+
+  /**
+   * Initializes the reader, recording the end of each line in the index.
+   *
+   * @param process	the process to monitor
+   * @param stdout  	whether to read stdout or stderr
+   * @param content	for storing the content
+   * @param index	for recording the lines, can be null
+   */
+  public CollectingProcessReader(Process process, boolean stdout, StringBuilder content, LineIndex index) {
     super(process, stdout);
     m_Content = content;
+    m_Index   = index;
+  }
+
+  /**
+   * Initializes the reader, storing the lines in the transcript shared with
+   * the reader for the other stream.
+   *
+   * @param process	the process to monitor
+   * @param stdout  	whether to read stdout or stderr
+   * @param transcript	for storing the content
+   */
+  public CollectingProcessReader(Process process, boolean stdout, MergedTranscript transcript) {
+    super(process, stdout);
+    m_Transcript = transcript;
+  }
+
+  /**
+   * Initializes the reader, storing the lines in the specified store.
+   *
+   * @param process	the process to monitor
+   * @param stdout  	whether to read stdout or stderr
+   * @param store	for storing the content
+   */
+  public CollectingProcessReader(Process process, boolean stdout, AbstractOutputStore store) {
+    super(process, stdout);
+    m_Store = store;
   }
 
   /**
    * Returns the string builder for storing the content.
    *
-   * @return		the string builder
+   * @return		the string builder, null if storing in a transcript or store
    */
   public StringBuilder getContent() {
     return m_Content;
   }
 
+  /**
+   * Returns whether the lines get passed on to a store as raw bytes.
+   *
+   * @return		true if processing the bytes directly
+   */
+  @Override
+  protected boolean prefersBytes() {
+    return (m_Store != null);
+  }
+
+  /**
+   * For processing the raw bytes of a line read from stdout/stderr. Passes
+   * the bytes on to the store (if any), which decides whether to decode
+   * them.
+   *
+   * @param data	the buffer with the line
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   */
+  @Override
+  protected void process(byte[] data, int offset, int length) {
+    if (m_Store != null)
+      m_Store.append(data, offset, length);
+    else
+      super.process(data, offset, length);
+  }
+
   /**
    * For processing the line read from stdout/stderr.
    *
@@ -60,7 +138,35 @@ public class CollectingProcessReader
    */
   @Override
   protected void process(String line) {
-    m_Content.append(line);
-    m_Content.append('\n');
+    if (m_Store != null) {
+      m_Store.append(line);
+    }
+    else if (m_Transcript != null) {
+      m_Transcript.append(line, m_Stdout, getTimestamp());
+    }
+    else {
+      m_Content.append(line);
+      m_Content.append('\n');
+      if (m_Index != null)
+	m_Index.add(m_Content.length());
+    }
+  }
+
+  /**
+   * Returns the transcript for storing the content.
+   *
+   * @return		the transcript, null if storing in a string builder or store
+   */
+  public MergedTranscript getTranscript() {
+    return m_Transcript;
+  }
+
+  /**
+   * Returns the store for storing the content.
+   *
+   * @return		the store, null if storing in a string builder or transcript
+   */
+  public AbstractOutputStore getStore() {
+    return m_Store;
   }
 }
@@ -20,6 +20,8 @@
 
 package com.github.fracpete.processoutput4j.reader;
 
+import com.github.fracpete.processoutput4j.core.ConsoleSink;
+
 /**
  * Just outputs the data to stdout/stderr.
  *
@@ -38,6 +40,12 @@ public class ConsoleOutputProcessReader
   /** the prefix to use. */
   protected String m_Prefix;
 
+  /** the sink to write to, null to print directly. */
+  protected ConsoleSink m_Sink;
+
+  /** the source of the lines for the sink. */
+  protected ConsoleSink.Source m_Source;
+
   /**
    * Initializes the reader.
    *
@@ -56,8 +64,27 @@ public class ConsoleOutputProcessReader
    * @param prefix	the prefix to use, null for auto-prefix
    */
   public ConsoleOutputProcessReader(Process process, boolean stdout, String prefix) {
+    this(process, stdout, prefix, null, false, -1);
+  }
+
+  /**
+   * Initializes the reader.
+   *
+   * @param process 	the process to monitor
+   * @param stdout  	whether to read stdout or stderr
+   * @param prefix	the prefix to use, null for auto-prefix
+   * @param sink	the sink to write to, null to print directly
+   * @param pid		whether to prefix the lines with the PID (sink only)
+   * @param start	the start time of the process (msec since epoch) for
+   * 			prefixing the lines with the elapsed time (sink only),
+   * 			-1 to omit
+   */
+  public ConsoleOutputProcessReader(Process process, boolean stdout, String prefix, ConsoleSink sink, boolean pid, long start) {
     super(process, stdout);
     m_Prefix = (prefix == null) ? (stdout ? PREFIX_STDOUT : PREFIX_STDERR) : prefix;
+    m_Sink   = sink;
+    if (sink != null)
+      m_Source = new ConsoleSink.Source(stdout, pid ? ConsoleSink.getPID(process) : -1, start, m_Prefix);
   }
 
   /**
@@ -69,6 +96,50 @@ public class ConsoleOutputProcessReader
     return m_Prefix;
   }
 
+  /**
+   * Returns the sink in use.
+   *
+   * @return		the sink, null if printing directly
+   */
+  public ConsoleSink getSink() {
+    return m_Sink;
+  }
+
+  /**
+   * Returns whether the lines get enqueued in a sink as raw bytes.
+   *
+   * @return		true if processing the bytes directly
+   */
+  @Override
+  protected boolean prefersBytes() {
+    return (m_Sink != null);
+  }
+
+  /**
+   * For processing the raw bytes of a line read from stdout/stderr. When
+   * using a sink, the bytes get enqueued without decoding.
+   *
+   * @param data	the buffer with the line
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   */
+  @Override
+  protected void process(byte[] data, int offset, int length) {
+    if (m_Sink != null)
+      m_Sink.enqueue(m_Source, data, offset, length);
+    else
+      super.process(data, offset, length);
+  }
+
+  /**
+   * Waits for the sink (if any) to write all lines.
+   */
+  @Override
+  protected void endOfStream() {
+    if (m_Sink != null)
+      m_Sink.flush();
+  }
+
   /**
    * For processing the line read from stdout/stderr.
    *
@@ -76,7 +147,13 @@ public class ConsoleOutputProcessReader
    */
   @Override
   protected void process(String line) {
-    if (m_Stdout)
+    byte[]	data;
+
+    if (m_Sink != null) {
+      data = line.getBytes(m_Charset);
+      m_Sink.enqueue(m_Source, data, 0, data.length);
+    }
+    else if (m_Stdout)
       System.out.println(m_Prefix + line);
     else
       System.err.println(m_Prefix + line);
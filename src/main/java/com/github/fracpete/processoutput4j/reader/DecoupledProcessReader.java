@@ -0,0 +1,394 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * DecoupledProcessReader.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.reader;
+
+import com.github.fracpete.processoutput4j.core.BackpressurePolicy;
+import com.github.fracpete.processoutput4j.core.BackpressureStats;
+import com.github.fracpete.processoutput4j.core.RingBuffer;
+import com.github.fracpete.processoutput4j.core.TempFiles;
+import com.github.fracpete.processoutput4j.core.WaitStrategy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Decouples reading from the process from processing the lines: the
+ * lines read from the pipe get handed over to a separate consumer thread
+ * (executing {@link #consume()}) via a {@link RingBuffer}, which forwards
+ * them to the actual reader, along with their timestamps. The lines get
+ * copied into reused slot buffers, i.e., the actual reader must not hold
+ * on to the bytes beyond the call. A slow reader therefore no longer stalls
+ * reading from the pipe, as long as the buffer has space. What happens
+ * once the buffer is full is determined by the {@link BackpressurePolicy}.
+ * <br>
+ * With {@link BackpressurePolicy#SPILL}, lines get appended to a temporary
+ * file while the buffer is full. All following lines go into temporary
+ * files as well, until the consumer has replayed them all, in order to
+ * preserve the order of the lines.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class DecoupledProcessReader
+  extends AbstractProcessReader {
+
+  /** the reader to forward the lines to. */
+  protected AbstractProcessReader m_Sink;
+
+  /** the buffer for the lines. */
+  protected RingBuffer m_Buffer;
+
+  /** forwards the lines taken from the buffer. */
+  protected final RingBuffer.Handler m_Deliver;
+
+  /** how to wait for the buffer. */
+  protected WaitStrategy m_WaitStrategy;
+
+  /** what to do when the buffer is full. */
+  protected BackpressurePolicy m_Policy;
+
+  /** the statistics. */
+  protected BackpressureStats m_Stats;
+
+  /** whether the end of the stream has been reached. */
+  protected volatile boolean m_Finished;
+
+  /** whether the actual reader failed. */
+  protected boolean m_Failed;
+
+  /** whether lines are currently being written to temporary files. */
+  protected volatile boolean m_Spilling;
+
+  /** for synchronizing access to the temporary file. */
+  protected final Object m_SpillLock;
+
+  /** the current temporary file, null if none. */
+  protected File m_SpillFile;
+
+  /** for writing to the current temporary file, null if none. */
+  protected DataOutputStream m_SpillOut;
+
+  /**
+   * Initializes the reader, waiting for space when the buffer is full.
+   *
+   * @param sink	the reader to forward the lines to
+   * @param capacity	the capacity of the buffer (in lines)
+   * @param strategy	how to wait for the buffer
+   */
+  public DecoupledProcessReader(AbstractProcessReader sink, int capacity, WaitStrategy strategy) {
+    this(sink, capacity, strategy, BackpressurePolicy.BLOCK, new BackpressureStats());
+  }
+
+  /**
+   * Initializes the reader.
+   *
+   * @param sink	the reader to forward the lines to
+   * @param capacity	the capacity of the buffer (in lines)
+   * @param strategy	how to wait for the buffer
+   * @param policy	what to do when the buffer is full
+   * @param stats	for recording how often the policy got triggered
+   */
+  public DecoupledProcessReader(AbstractProcessReader sink, int capacity, WaitStrategy strategy, BackpressurePolicy policy, BackpressureStats stats) {
+    super(sink.getProcess(), sink.isStdout());
+    m_Sink         = sink;
+    m_Buffer       = new RingBuffer(capacity);
+    m_Deliver      = this::deliver;
+    m_WaitStrategy = strategy;
+    m_Policy       = policy;
+    m_Stats        = stats;
+    m_Finished     = false;
+    m_Failed       = false;
+    m_Spilling     = false;
+    m_SpillLock    = new Object();
+    m_SpillFile    = null;
+    m_SpillOut     = null;
+  }
+
+  /**
+   * Returns the reader the lines get forwarded to.
+   *
+   * @return		the reader
+   */
+  public AbstractProcessReader getSink() {
+    return m_Sink;
+  }
+
+  /**
+   * Returns the buffer for the lines.
+   *
+   * @return		the buffer
+   */
+  public RingBuffer getBuffer() {
+    return m_Buffer;
+  }
+
+  /**
+   * Hands over a copy of the line to the consumer.
+   *
+   * @param data	the buffer with the line
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   */
+  @Override
+  protected void process(byte[] data, int offset, int length) {
+    put(data, offset, length, m_Timestamp);
+  }
+
+  /**
+   * Hands over the line to the consumer.
+   *
+   * @param line	the output line
+   */
+  @Override
+  protected void process(String line) {
+    byte[]	bytes;
+
+    bytes = line.getBytes(m_Sink.getCharset());
+    process(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Returns the statistics of the backpressure policy.
+   *
+   * @return		the statistics
+   */
+  public BackpressureStats getStats() {
+    return m_Stats;
+  }
+
+  /**
+   * Adds the line to the buffer, applies the backpressure policy if full.
+   *
+   * @param data	the buffer with the line
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   * @param timestamp	the timestamp of the line
+   */
+  protected void put(byte[] data, int offset, int length, long timestamp) {
+    int		count;
+
+    switch (m_Policy) {
+      case BLOCK:
+	if (!m_Buffer.offer(data, offset, length, timestamp)) {
+	  m_Stats.incBlocked();
+	  count = 0;
+	  while (!m_Buffer.offer(data, offset, length, timestamp))
+	    m_Buffer.awaitSpace(m_WaitStrategy, count++);
+	}
+	break;
+
+      case DROP_NEWEST:
+	if (!m_Buffer.offer(data, offset, length, timestamp))
+	  m_Stats.incDropped();
+	break;
+
+      case DROP_OLDEST:
+	count = 0;
+	while (!m_Buffer.offer(data, offset, length, timestamp)) {
+	  if (m_Buffer.discard())
+	    m_Stats.incDropped();
+	  else  // only the line being processed is left
+	    m_Buffer.awaitSpace(m_WaitStrategy, count++);
+	}
+	break;
+
+      case SPILL:
+	if (m_Spilling || !m_Buffer.offer(data, offset, length, timestamp))
+	  spill(data, offset, length, timestamp);
+	break;
+
+      default:
+	throw new IllegalStateException("Unhandled backpressure policy: " + m_Policy);
+    }
+  }
+
+  /**
+   * Appends the line to the current temporary file. Discards the line if
+   * writing fails.
+   *
+   * @param data	the buffer with the line
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   * @param timestamp	the timestamp of the line
+   */
+  protected void spill(byte[] data, int offset, int length, long timestamp) {
+    synchronized (m_SpillLock) {
+      // consumer might have caught up in the meantime
+      if (!m_Spilling && m_Buffer.offer(data, offset, length, timestamp))
+	return;
+      try {
+	if (m_SpillOut == null) {
+	  m_SpillFile = TempFiles.create(".spill", null);
+	  m_SpillOut  = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(m_SpillFile)));
+	}
+	m_SpillOut.writeInt(length);
+	m_SpillOut.writeLong(timestamp);
+	m_SpillOut.write(data, offset, length);
+	m_Spilling = true;
+	m_Stats.incSpilled();
+	m_Buffer.wakeConsumer();
+      }
+      catch (IOException e) {
+	System.err.println("Failed to spill " + (m_Stdout ? "stdout" : "stderr") + " for process #" + m_Process.hashCode() + " to " + m_SpillFile + ":");
+	e.printStackTrace();
+	m_Stats.incDropped();
+      }
+    }
+  }
+
+  /**
+   * Replays the lines from the current temporary file, if any. Lines that
+   * arrive in the meantime go into a new temporary file.
+   *
+   * @return		true if lines got replayed
+   */
+  protected boolean replay() {
+    File		file;
+    DataInputStream	in;
+    byte[]		line;
+    int			length;
+    long		timestamp;
+
+    synchronized (m_SpillLock) {
+      if (m_SpillOut == null) {
+	m_Spilling = false;
+	return false;
+      }
+      try {
+	m_SpillOut.close();
+      }
+      catch (IOException e) {
+	// ignored
+      }
+      file        = m_SpillFile;
+      m_SpillOut  = null;
+      m_SpillFile = null;
+    }
+
+    in   = null;
+    line = new byte[RingBuffer.MIN_SLOT_SIZE];
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      while (true) {
+	try {
+	  length = in.readInt();
+	}
+	catch (EOFException e) {
+	  break;
+	}
+	timestamp = in.readLong();
+	if (line.length < length)
+	  line = new byte[length];
+	in.readFully(line, 0, length);
+	deliver(line, 0, length, timestamp);
+      }
+    }
+    catch (IOException e) {
+      System.err.println("Failed to replay " + (m_Stdout ? "stdout" : "stderr") + " for process #" + m_Process.hashCode() + " from " + file + ":");
+      e.printStackTrace();
+    }
+    finally {
+      if (in != null) {
+	try {
+	  in.close();
+	}
+	catch (IOException e) {
+	  // ignored
+	}
+      }
+      TempFiles.delete(file);
+    }
+
+    synchronized (m_SpillLock) {
+      if (m_SpillOut == null)
+	m_Spilling = false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Signals the consumer that no more lines will arrive.
+   */
+  @Override
+  protected void endOfStream() {
+    super.endOfStream();
+    m_Finished = true;
+    m_Buffer.wakeConsumer();
+  }
+
+  /**
+   * Forwards the line to the actual reader, unless it has failed before.
+   *
+   * @param data	the buffer with the line
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   * @param timestamp	the timestamp of the line
+   */
+  protected void deliver(byte[] data, int offset, int length, long timestamp) {
+    if (m_Failed)
+      return;
+    try {
+      m_Sink.m_Timestamp = timestamp;
+      m_Sink.process(data, offset, length);
+    }
+    catch (Exception e) {
+      System.err.println("Failed to process " + (m_Stdout ? "stdout" : "stderr") + " for process #" + m_Process.hashCode() + ", discarding remaining output:");
+      e.printStackTrace();
+      m_Failed = true;
+    }
+  }
+
+  /**
+   * Forwards the lines from the buffer to the actual reader until the end
+   * of the stream has been reached. To be executed by the consumer thread.
+   * If the actual reader fails, the remaining lines get discarded.
+   */
+  public void consume() {
+    boolean	finished;
+    int		count;
+
+    count = 0;
+    while (true) {
+      // check before taking, so an empty buffer means no more lines
+      finished = m_Finished;
+      if (!m_Buffer.take(m_Deliver)) {
+	if (m_Spilling && replay()) {
+	  count = 0;
+	  continue;
+	}
+	if (finished)
+	  break;
+	m_Buffer.awaitLines(m_WaitStrategy, count++, () -> m_Finished || m_Spilling);
+	continue;
+      }
+      count = 0;
+    }
+
+    m_Sink.endOfStream();
+  }
+}
@@ -20,8 +20,23 @@
 
 package com.github.fracpete.processoutput4j.reader;
 
+import com.github.fracpete.processoutput4j.core.BatchingStreamingProcessOwner;
+import com.github.fracpete.processoutput4j.core.LineSequencer;
+import com.github.fracpete.processoutput4j.core.RawStreamingProcessOwner;
+import com.github.fracpete.processoutput4j.core.ReaderExecutors;
+import com.github.fracpete.processoutput4j.core.SequencedStreamingProcessOwner;
 import com.github.fracpete.processoutput4j.core.StreamingProcessOutputType;
 import com.github.fracpete.processoutput4j.core.StreamingProcessOwner;
+import com.github.fracpete.processoutput4j.core.TimestampedStreamingProcessOwner;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Forwards the output from the process to the owning {@link StreamingProcessOwner}
@@ -38,6 +53,36 @@ public class StreamingProcessReader
   /** whether to forward the output to the owner. */
   protected boolean m_Forward;
 
+  /** the owner, if it processes raw bytes. */
+  protected RawStreamingProcessOwner m_RawOwner;
+
+  /** the owner, if it processes batches of lines. */
+  protected BatchingStreamingProcessOwner m_BatchOwner;
+
+  /** the current batch. */
+  protected List<String> m_Batch;
+
+  /** the scheduled flush of the current batch, null if none. */
+  protected ScheduledFuture<?> m_Flush;
+
+  /** the full batches waiting to be delivered, in order. */
+  protected Deque<List<String>> m_Pending;
+
+  /** the lock for delivering batches to the owner, one at a time. */
+  protected Object m_DeliveryLock;
+
+  /** the executor for delivering batches after the maximum delay, null for the shared default one. */
+  protected Executor m_Executor;
+
+  /** the owner, if it processes sequenced lines. */
+  protected SequencedStreamingProcessOwner m_SequencedOwner;
+
+  /** the sequencer shared by the stdout/stderr readers. */
+  protected LineSequencer m_Sequencer;
+
+  /** the owner, if it processes timestamped lines. */
+  protected TimestampedStreamingProcessOwner m_TimestampedOwner;
+
   /**
    * Initializes the reader.
    *
@@ -46,11 +91,87 @@ public class StreamingProcessReader
    * @param stdout  whether to read stdout or stderr
    */
   public StreamingProcessReader(StreamingProcessOwner owner, Process process, boolean stdout) {
+    this(owner, process, stdout, null);
+  }
+
+  /**
+   * Initializes the reader.
+   *
+   * @param owner the owning object
+   * @param process the process to monitor
+   * @param stdout  whether to read stdout or stderr
+   * @param sequencer	the sequencer shared with the reader for the other
+   * 			stream, null for numbering this stream only
+   */
+  public StreamingProcessReader(StreamingProcessOwner owner, Process process, boolean stdout, LineSequencer sequencer) {
     super(process, stdout);
     m_Owner = owner;
     m_Forward = (stdout && (m_Owner.getOutputType() == StreamingProcessOutputType.STDOUT))
 	|| (!stdout && (m_Owner.getOutputType() == StreamingProcessOutputType.STDERR))
 	|| (m_Owner.getOutputType() == StreamingProcessOutputType.BOTH);
+    m_RawOwner = (owner instanceof RawStreamingProcessOwner) ? (RawStreamingProcessOwner) owner : null;
+    m_BatchOwner = (owner instanceof BatchingStreamingProcessOwner) ? (BatchingStreamingProcessOwner) owner : null;
+    if (m_BatchOwner != null) {
+      m_Batch        = new ArrayList<>();
+      m_Pending      = new ArrayDeque<>();
+      m_DeliveryLock = new Object();
+    }
+    m_SequencedOwner = (owner instanceof SequencedStreamingProcessOwner) ? (SequencedStreamingProcessOwner) owner : null;
+    m_Sequencer = (sequencer == null) ? new LineSequencer() : sequencer;
+    m_TimestampedOwner = (owner instanceof TimestampedStreamingProcessOwner) ? (TimestampedStreamingProcessOwner) owner : null;
+    m_Executor = null;
+  }
+
+  /**
+   * Sets the executor for delivering batches once the maximum delay has
+   * passed, e.g., the executor of the output that started the reader.
+   *
+   * @param value	the executor, null for the shared default one
+   */
+  public void setExecutor(Executor value) {
+    m_Executor = value;
+  }
+
+  /**
+   * Returns the executor for delivering batches once the maximum delay has
+   * passed.
+   *
+   * @return		the executor
+   */
+  public Executor getExecutor() {
+    if (m_Executor == null)
+      return ReaderExecutors.getDefault();
+    return m_Executor;
+  }
+
+  /**
+   * Returns whether the lines are passed on as raw bytes or skipped.
+   *
+   * @return		true if processing the bytes directly
+   */
+  @Override
+  protected boolean prefersBytes() {
+    return !m_Forward || (m_RawOwner != null);
+  }
+
+  /**
+   * For processing the raw bytes of a line read from stdout/stderr. Forwards
+   * the bytes to a {@link RawStreamingProcessOwner} owner (which takes
+   * precedence over batching), otherwise the line gets decoded (only if the
+   * line is to be forwarded at all).
+   *
+   * @param data	the buffer with the line
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   */
+  @Override
+  protected void process(byte[] data, int offset, int length) {
+    if (!m_Forward)
+      return;
+    if (m_RawOwner != null)
+      m_RawOwner.processOutput(data, offset, length, m_Charset, isStdout());
+    else
+      super.process(data, offset, length);
   }
 
   /**
@@ -60,7 +181,117 @@ public class StreamingProcessReader
    */
   @Override
   protected void process(String line) {
-    if (m_Forward)
+    if (!m_Forward)
+      return;
+    if (m_BatchOwner != null) {
+      addToBatch(line);
+    }
+    else if (m_SequencedOwner != null) {
+      synchronized (m_Sequencer) {
+	m_SequencedOwner.processSequencedOutput(m_Sequencer.next(), line, isStdout());
+      }
+    }
+    else if (m_TimestampedOwner != null) {
+      m_TimestampedOwner.processTimestampedOutput(getTimestamp(), line, isStdout());
+    }
+    else {
       m_Owner.processOutput(line, isStdout());
+    }
+  }
+
+  /**
+   * Adds the line to the current batch, delivers the batch if full.
+   *
+   * @param line	the line to add
+   */
+  protected void addToBatch(String line) {
+    boolean	full;
+    long	delay;
+
+    synchronized (this) {
+      m_Batch.add(line);
+      full = (m_Batch.size() >= m_BatchOwner.getBatchSize());
+      if (full) {
+	swap();
+      }
+      else if (m_Batch.size() == 1) {
+	delay = m_BatchOwner.getMaxBatchDelay();
+	if (delay > 0)
+	  m_Flush = ReaderExecutors.getScheduler().schedule(this::timedFlush, delay, TimeUnit.MILLISECONDS);
+      }
+    }
+    if (full)
+      deliver();
+  }
+
+  /**
+   * Moves the current batch, if not empty, to the batches waiting to be
+   * delivered. Must be called while holding the reader's monitor.
+   */
+  protected void swap() {
+    if (m_Flush != null) {
+      m_Flush.cancel(false);
+      m_Flush = null;
+    }
+    if ((m_Batch == null) || m_Batch.isEmpty())
+      return;
+    m_Pending.add(m_Batch);
+    m_Batch = new ArrayList<>(m_Batch.size());
+  }
+
+  /**
+   * Delivers the waiting batches to the owner, in order. The owner gets
+   * called without holding the reader's monitor, hence adding lines is not
+   * blocked by a slow owner.
+   */
+  protected void deliver() {
+    List<String>	batch;
+
+    synchronized (m_DeliveryLock) {
+      while (true) {
+	synchronized (this) {
+	  batch = m_Pending.poll();
+	}
+	if (batch == null)
+	  break;
+	m_BatchOwner.processOutput(batch, isStdout());
+      }
+    }
+  }
+
+  /**
+   * Gets called by the shared scheduler once the maximum delay has passed.
+   * Merely hands the batch off to be delivered by the reader's executor, as
+   * the scheduler is shared by all readers.
+   *
+   * @see		#getExecutor()
+   */
+  protected void timedFlush() {
+    synchronized (this) {
+      swap();
+    }
+    CompletableFuture.runAsync(this::deliver, getExecutor());
+  }
+
+  /**
+   * Delivers the current batch to the owner, if not empty, as well as any
+   * batches still waiting.
+   */
+  public void flush() {
+    if (m_BatchOwner == null)
+      return;
+    synchronized (this) {
+      swap();
+    }
+    deliver();
+  }
+
+  /**
+   * Delivers any remaining lines to a batching owner.
+   */
+  @Override
+  protected void endOfStream() {
+    super.endOfStream();
+    flush();
   }
 }
@@ -0,0 +1,123 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TeeProcessReader.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.reader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads stdout or stderr once and fans the lines out to several other
+ * readers, which only act as sinks and never read from the process
+ * themselves. Lines get split once, and decoded at most once for all the
+ * readers that process strings; readers that process the raw bytes
+ * (see {@link AbstractProcessReader#prefersBytes()}) receive those.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class TeeProcessReader
+  extends AbstractProcessReader {
+
+  /** the readers to fan out to. */
+  protected List<AbstractProcessReader> m_Readers;
+
+  /**
+   * Initializes the reader.
+   *
+   * @param process	the process to monitor
+   * @param stdout  	whether to read stdout or stderr
+   * @param readers	the readers to fan out to
+   */
+  public TeeProcessReader(Process process, boolean stdout, List<AbstractProcessReader> readers) {
+    super(process, stdout);
+    m_Readers = new ArrayList<>(readers);
+  }
+
+  /**
+   * Returns the readers the lines get fanned out to.
+   *
+   * @return		the readers
+   */
+  public List<AbstractProcessReader> getReaders() {
+    return Collections.unmodifiableList(m_Readers);
+  }
+
+  /**
+   * Returns whether all readers process the raw bytes.
+   *
+   * @return		true if no decoding required
+   */
+  @Override
+  protected boolean prefersBytes() {
+    for (AbstractProcessReader reader: m_Readers) {
+      if (!reader.prefersBytes())
+	return false;
+    }
+    return true;
+  }
+
+  /**
+   * Passes the line on to the readers, decoding it at most once.
+   *
+   * @param data	the buffer with the line
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   */
+  @Override
+  protected void process(byte[] data, int offset, int length) {
+    String	line;
+
+    line = null;
+    for (AbstractProcessReader reader: m_Readers) {
+      reader.m_Timestamp = m_Timestamp;
+      if (reader.prefersBytes()) {
+	reader.process(data, offset, length);
+      }
+      else {
+	if (line == null)
+	  line = new String(data, offset, length, m_Charset);
+	reader.process(line);
+      }
+    }
+  }
+
+  /**
+   * Passes the line on to the readers.
+   *
+   * @param line	the output line
+   */
+  @Override
+  protected void process(String line) {
+    for (AbstractProcessReader reader: m_Readers) {
+      reader.m_Timestamp = m_Timestamp;
+      reader.process(line);
+    }
+  }
+
+  /**
+   * Signals the end of the stream to the readers.
+   */
+  @Override
+  protected void endOfStream() {
+    for (AbstractProcessReader reader: m_Readers)
+      reader.endOfStream();
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * AbstractIndexedOutputStore.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ancestor for stores that keep all bytes and offer random access to
+ * them, maintaining a {@link LineIndex} while collecting. Individual lines
+ * can then be retrieved without decoding the whole content.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public abstract class AbstractIndexedOutputStore
+  extends AbstractOutputStore {
+
+  /** for serialization. */
+  private static final long serialVersionUID = -1279150357396328213L;
+
+  /** the line index. */
+  protected LineIndex m_Index;
+
+  /**
+   * Initializes the store.
+   */
+  public AbstractIndexedOutputStore() {
+    super();
+    m_Index = new LineIndex();
+  }
+
+  /**
+   * Returns the line index.
+   *
+   * @return		the index
+   */
+  public LineIndex getLineIndex() {
+    return m_Index;
+  }
+
+  /**
+   * Returns the number of bytes stored. Only ever covers complete lines.
+   *
+   * @return		the number of bytes (incl line terminators)
+   */
+  public abstract long size();
+
+  /**
+   * Reads a range of the stored bytes.
+   *
+   * @param offset	the position of the first byte
+   * @param length	the maximum number of bytes
+   * @return		the bytes, shorter than requested at the end
+   */
+  public abstract byte[] read(long offset, int length);
+
+  /**
+   * Returns the content stored after the specified offset, e.g., for
+   * picking up only new output while the process is still running.
+   *
+   * @param offset	the offset in bytes, must be the start of a line
+   * 			(e.g., a previously obtained {@link #size()})
+   * @return		the content, each line terminated by \n
+   * @see		#newCursor()
+   */
+  public String getContent(long offset) {
+    long	size;
+
+    size = size();
+    if (size - offset > Integer.MAX_VALUE - 8)
+      throw new IllegalStateException("Content too large for a string (" + (size - offset) + " bytes), use streaming access instead!");
+    return new String(read(offset, (int) Math.max(0, size - offset)), getCharset());
+  }
+
+  /**
+   * Returns a new cursor for incrementally retrieving the content.
+   *
+   * @return		the cursor, positioned at the start
+   */
+  public OutputCursor newCursor() {
+    return new OutputCursor(this);
+  }
+
+  /**
+   * Returns the number of lines stored.
+   *
+   * @return		the number of lines
+   */
+  public int getLineCount() {
+    return m_Index.size();
+  }
+
+  /**
+   * Returns the specified line.
+   *
+   * @param index	the index of the line
+   * @return		the line, without terminator
+   */
+  public String getLine(int index) {
+    long	start;
+
+    start = m_Index.getStart(index);
+    return new String(read(start, (int) (m_Index.getEnd(index) - start)), getCharset());
+  }
+
+  /**
+   * Returns the specified range of lines.
+   *
+   * @param from	the index of the first line (incl)
+   * @param to		the index of the last line (excl)
+   * @return		the lines, without terminators
+   */
+  public List<String> getLines(int from, int to) {
+    List<String>	result;
+    int			i;
+
+    if ((from < 0) || (to > getLineCount()) || (from > to))
+      throw new IndexOutOfBoundsException("Invalid range [" + from + "," + to + ") for " + getLineCount() + " lines");
+
+    result = new ArrayList<>(to - from);
+    for (i = from; i < to; i++)
+      result.add(getLine(i));
+
+    return result;
+  }
+
+  /**
+   * Returns the last lines.
+   *
+   * @param n		the maximum number of lines
+   * @return		the lines, without terminators
+   */
+  public List<String> tail(int n) {
+    int		count;
+
+    count = getLineCount();
+    return getLines(Math.max(0, count - Math.max(0, n)), count);
+  }
+}
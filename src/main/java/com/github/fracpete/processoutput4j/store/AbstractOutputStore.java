@@ -0,0 +1,145 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * AbstractOutputStore.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+
+/**
+ * Ancestor for classes that store the lines collected from stdout or
+ * stderr of a process. Lines get appended without terminator, the
+ * content returned by the store has each line terminated by \n.
+ * <br>
+ * Stores get written to by the reader thread and can be queried from
+ * other threads.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public abstract class AbstractOutputStore
+  implements Serializable, Closeable {
+
+  /** for serialization. */
+  private static final long serialVersionUID = -3410316207318467011L;
+
+  /** the line terminator. */
+  protected static final byte[] NEWLINE = {'\n'};
+
+  /** the charset for decoding/encoding the lines. */
+  protected transient Charset m_Charset;
+
+  /**
+   * Initializes the store.
+   */
+  public AbstractOutputStore() {
+    m_Charset = Charset.defaultCharset();
+  }
+
+  /**
+   * Sets the charset for decoding/encoding the lines.
+   *
+   * @param value	the charset
+   */
+  public void setCharset(Charset value) {
+    if (value == null)
+      throw new IllegalArgumentException("Charset cannot be null!");
+    m_Charset = value;
+  }
+
+  /**
+   * Returns the charset for decoding/encoding the lines.
+   *
+   * @return		the charset
+   */
+  public Charset getCharset() {
+    if (m_Charset == null)
+      m_Charset = Charset.defaultCharset();
+    return m_Charset;
+  }
+
+  /**
+   * Appends the raw bytes of a line. The bytes are only valid for the
+   * duration of the call. Default implementation decodes the bytes and
+   * calls {@link #append(String)}.
+   *
+   * @param data	the buffer with the line (without terminator)
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   */
+  public void append(byte[] data, int offset, int length) {
+    append(new String(data, offset, length, getCharset()));
+  }
+
+  /**
+   * Appends the line.
+   *
+   * @param line	the line (without terminator)
+   */
+  public abstract void append(String line);
+
+  /**
+   * Returns the stored content.
+   *
+   * @return		the content, each line terminated by \n
+   */
+  public abstract String getContent();
+
+  /**
+   * Returns the stored content as bytes, encoded with the charset. Default
+   * implementation encodes the string returned by {@link #getContent()}.
+   *
+   * @return		the content, each line terminated by \n
+   */
+  public byte[] getBytes() {
+    return getContent().getBytes(getCharset());
+  }
+
+  /**
+   * Returns a stream over the stored content, encoded with the charset.
+   * Default implementation wraps the bytes returned by {@link #getBytes()},
+   * derived classes that hold the raw bytes can avoid copying them.
+   *
+   * @return		the stream
+   */
+  public InputStream getInputStream() {
+    return new ByteArrayInputStream(getBytes());
+  }
+
+  /**
+   * Releases any resources held by the store. Default implementation does
+   * nothing.
+   */
+  @Override
+  public void close() {
+  }
+
+  /**
+   * Returns the stored content.
+   *
+   * @return		the content
+   */
+  @Override
+  public String toString() {
+    return getContent();
+  }
+}
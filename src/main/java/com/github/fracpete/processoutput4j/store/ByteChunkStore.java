@@ -0,0 +1,321 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ByteChunkStore.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Stores the raw bytes of the lines in fixed-size chunks, rather than
+ * decoding them into a string builder. For ASCII-heavy output this halves
+ * the memory compared to UTF-16 strings, and growing never copies the
+ * content collected so far. The bytes only get decoded when
+ * {@link #getContent()} is called; callers that hash or persist the output
+ * can use {@link #getBytes()}, {@link #writeTo(OutputStream)} or
+ * {@link #getInputStream()} and skip decoding altogether.
+ * <br>
+ * Written chunks never move or change, and the size only gets published
+ * once a line is complete. Readers therefore obtain consistent snapshots
+ * without locking, even while the process is still being read from, and
+ * only copy the range they are interested in (see {@link #getContent(long)}
+ * and {@link #newCursor()}). Appending is synchronized, reading is
+ * lock-free.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class ByteChunkStore
+  extends AbstractIndexedOutputStore {
+
+  /** for serialization. */
+  private static final long serialVersionUID = -6427702862401876034L;
+
+  /** the default chunk size in bytes. */
+  public static final int DEFAULT_CHUNK_SIZE = 65536;
+
+  /** the chunk size. */
+  protected int m_ChunkSize;
+
+  /** the chunks, replaced with a larger copy when full. */
+  protected volatile byte[][] m_Chunks;
+
+  /** the write position, only used by the writer. */
+  protected long m_Position;
+
+  /** the number of bytes published to readers. */
+  protected volatile long m_Size;
+
+  /**
+   * Initializes the store with the default chunk size.
+   */
+  public ByteChunkStore() {
+    this(DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Initializes the store.
+   *
+   * @param chunkSize	the size of the chunks in bytes
+   */
+  public ByteChunkStore(int chunkSize) {
+    super();
+    if (chunkSize < 1)
+      throw new IllegalArgumentException("Chunk size must be at least 1: " + chunkSize);
+    m_ChunkSize = chunkSize;
+    m_Chunks    = new byte[16][];
+    m_Position  = 0;
+    m_Size      = 0;
+  }
+
+  /**
+   * Returns the chunk size.
+   *
+   * @return		the size in bytes
+   */
+  public int getChunkSize() {
+    return m_ChunkSize;
+  }
+
+  /**
+   * Returns the number of bytes stored. Only ever covers complete lines.
+   *
+   * @return		the number of bytes (incl line terminators)
+   */
+  @Override
+  public long size() {
+    return m_Size;
+  }
+
+  /**
+   * Adds the bytes at the write position, allocating chunks as required.
+   *
+   * @param data	the buffer with the data
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   */
+  protected void add(byte[] data, int offset, int length) {
+    byte[][]	chunks;
+    int		index;
+    int		pos;
+    int		len;
+
+    chunks = m_Chunks;
+    while (length > 0) {
+      index = (int) (m_Position / m_ChunkSize);
+      pos   = (int) (m_Position % m_ChunkSize);
+      if (index == chunks.length) {
+	chunks   = Arrays.copyOf(chunks, chunks.length * 2);
+	m_Chunks = chunks;
+      }
+      if (chunks[index] == null)
+	chunks[index] = new byte[m_ChunkSize];
+      len = Math.min(length, m_ChunkSize - pos);
+      System.arraycopy(data, offset, chunks[index], pos, len);
+      m_Position += len;
+      offset     += len;
+      length     -= len;
+    }
+  }
+
+  /**
+   * Appends the raw bytes of a line, publishing it once complete.
+   *
+   * @param data	the buffer with the line (without terminator)
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   */
+  @Override
+  public synchronized void append(byte[] data, int offset, int length) {
+    add(data, offset, length);
+    add(NEWLINE, 0, 1);
+    // publish the bytes before indexing the line
+    m_Size = m_Position;
+    m_Index.add(m_Position);
+  }
+
+  /**
+   * Appends the line.
+   *
+   * @param line	the line (without terminator)
+   */
+  @Override
+  public void append(String line) {
+    byte[]	data;
+
+    data = line.getBytes(getCharset());
+    append(data, 0, data.length);
+  }
+
+  /**
+   * Copies a range of the published bytes.
+   *
+   * @param chunks	the chunks to read from
+   * @param offset	the position of the first byte
+   * @param result	the array to copy to
+   */
+  protected void copy(byte[][] chunks, long offset, byte[] result) {
+    int		pos;
+    int		len;
+    int		start;
+
+    pos = 0;
+    while (pos < result.length) {
+      start = (int) (offset % m_ChunkSize);
+      len   = Math.min(result.length - pos, m_ChunkSize - start);
+      System.arraycopy(chunks[(int) (offset / m_ChunkSize)], start, result, pos, len);
+      pos    += len;
+      offset += len;
+    }
+  }
+
+  /**
+   * Reads a range of the stored bytes.
+   *
+   * @param offset	the position of the first byte
+   * @param length	the maximum number of bytes
+   * @return		the bytes, shorter than requested at the end
+   */
+  @Override
+  public byte[] read(long offset, int length) {
+    byte[]	result;
+    long	size;
+
+    if ((offset < 0) || (length < 0))
+      throw new IllegalArgumentException("Offset and length cannot be negative: " + offset + "/" + length);
+    size   = m_Size;
+    length = (int) Math.max(0, Math.min(length, size - offset));
+    result = new byte[length];
+    copy(m_Chunks, offset, result);
+
+    return result;
+  }
+
+  /**
+   * Writes the bytes stored at the time of the call to the stream.
+   *
+   * @param out		the stream to write to
+   * @throws IOException	if writing fails
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    long	size;
+    byte[][]	chunks;
+    long	pos;
+    int		i;
+
+    size   = m_Size;
+    chunks = m_Chunks;
+    pos    = 0;
+    for (i = 0; pos < size; i++) {
+      out.write(chunks[i], 0, (int) Math.min(m_ChunkSize, size - pos));
+      pos += m_ChunkSize;
+    }
+  }
+
+  /**
+   * Returns the stored bytes.
+   *
+   * @return		the content, each line terminated by \n
+   * @throws IllegalStateException	if the content is too large for an array
+   */
+  @Override
+  public byte[] getBytes() {
+    long	size;
+
+    size = m_Size;
+    if (size > Integer.MAX_VALUE - 8)
+      throw new IllegalStateException("Content too large for an array (" + size + " bytes), use streaming access instead!");
+    return read(0, (int) size);
+  }
+
+  /**
+   * Returns a stream over the bytes stored at the time of the call,
+   * reading directly from the chunks.
+   *
+   * @return		the stream
+   */
+  @Override
+  public InputStream getInputStream() {
+    final long		size;
+    final byte[][]	chunks;
+
+    size   = m_Size;
+    chunks = m_Chunks;
+
+    return new InputStream() {
+      protected long m_Read = 0;
+
+      @Override
+      public int read() {
+	byte[]	b;
+
+	b = new byte[1];
+	if (read(b, 0, 1) == -1)
+	  return -1;
+	return b[0] & 0xFF;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+	int	pos;
+
+	if (m_Read >= size)
+	  return -1;
+	if (len == 0)
+	  return 0;
+	pos = (int) (m_Read % m_ChunkSize);
+	len = (int) Math.min(len, Math.min(m_ChunkSize - pos, size - m_Read));
+	System.arraycopy(chunks[(int) (m_Read / m_ChunkSize)], pos, b, off, len);
+	m_Read += len;
+	return len;
+      }
+
+      @Override
+      public int available() {
+	return (int) Math.min(Integer.MAX_VALUE, size - m_Read);
+      }
+    };
+  }
+
+  /**
+   * Returns a consistent snapshot of the stored content, decoding the
+   * bytes with the charset.
+   *
+   * @return		the content, each line terminated by \n
+   */
+  @Override
+  public String getContent() {
+    return new String(getBytes(), getCharset());
+  }
+
+  /**
+   * Discards the chunks. Streams obtained beforehand remain valid, but
+   * this must not be called while other threads are still reading from
+   * the store otherwise.
+   */
+  @Override
+  public synchronized void close() {
+    m_Size     = 0;
+    m_Chunks   = new byte[16][];
+    m_Position = 0;
+    m_Index.clear();
+  }
+}
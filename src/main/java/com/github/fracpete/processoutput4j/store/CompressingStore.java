@@ -0,0 +1,495 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CompressingStore.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stores the raw bytes of the lines in chunks, compressing each chunk with
+ * a {@link Deflater} once it is full. Only the chunk currently being filled
+ * is kept uncompressed. Reading decompresses the chunks lazily, one at a
+ * time when streaming via {@link #getInputStream()}.
+ * <br>
+ * Repetitive output like build logs typically compresses 5-20 times. The
+ * ratio and the time spent compressing/decompressing are available from
+ * the store, e.g., for choosing the compression level.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class CompressingStore
+  extends AbstractIndexedOutputStore {
+
+  /** for serialization. */
+  private static final long serialVersionUID = 7799380233614386357L;
+
+  /** the default chunk size in bytes. */
+  public static final int DEFAULT_CHUNK_SIZE = 262144;
+
+  /** the chunk size. */
+  protected int m_ChunkSize;
+
+  /** the compression level. */
+  protected int m_Level;
+
+  /** the compressed chunks, each representing chunk size bytes. */
+  protected List<byte[]> m_Sealed;
+
+  /** the chunk currently being filled. */
+  protected byte[] m_Current;
+
+  /** the number of bytes in the current chunk. */
+  protected int m_Position;
+
+  /** the total number of bytes. */
+  protected long m_Size;
+
+  /** the number of bytes in the compressed chunks. */
+  protected long m_CompressedSize;
+
+  /** the time spent compressing in nsec. */
+  protected long m_CompressionTime;
+
+  /** the time spent decompressing in nsec. */
+  protected long m_DecompressionTime;
+
+  /** the compressor, reused across chunks. */
+  protected transient Deflater m_Deflater;
+
+  /** the buffer for compressing. */
+  protected transient byte[] m_Buffer;
+
+  /** the index of the most recently decompressed chunk for random access. */
+  protected transient int m_CachedIndex;
+
+  /** the most recently decompressed chunk for random access. */
+  protected transient byte[] m_Cached;
+
+  /**
+   * Initializes the store with the default chunk size, favouring speed
+   * over compression ratio.
+   */
+  public CompressingStore() {
+    this(DEFAULT_CHUNK_SIZE, Deflater.BEST_SPEED);
+  }
+
+  /**
+   * Initializes the store.
+   *
+   * @param chunkSize	the size of the chunks in bytes
+   * @param level	the compression level (0-9)
+   */
+  public CompressingStore(int chunkSize, int level) {
+    super();
+    if (chunkSize < 1)
+      throw new IllegalArgumentException("Chunk size must be at least 1: " + chunkSize);
+    if ((level < Deflater.NO_COMPRESSION) || (level > Deflater.BEST_COMPRESSION))
+      throw new IllegalArgumentException("Invalid compression level: " + level);
+    m_ChunkSize         = chunkSize;
+    m_Level             = level;
+    m_Sealed            = new ArrayList<>();
+    m_Current           = new byte[chunkSize];
+    m_Position          = 0;
+    m_Size              = 0;
+    m_CompressedSize    = 0;
+    m_CompressionTime   = 0;
+    m_DecompressionTime = 0;
+  }
+
+  /**
+   * Returns the chunk size.
+   *
+   * @return		the size in bytes
+   */
+  public int getChunkSize() {
+    return m_ChunkSize;
+  }
+
+  /**
+   * Returns the compression level.
+   *
+   * @return		the level (0-9)
+   */
+  public int getLevel() {
+    return m_Level;
+  }
+
+  /**
+   * Returns the number of bytes stored.
+   *
+   * @return		the number of bytes (incl line terminators)
+   */
+  @Override
+  public synchronized long size() {
+    return m_Size;
+  }
+
+  /**
+   * Returns the number of bytes actually occupied by the content, i.e., the
+   * compressed chunks plus the chunk currently being filled.
+   *
+   * @return		the number of bytes
+   */
+  public synchronized long getStoredSize() {
+    return m_CompressedSize + m_Position;
+  }
+
+  /**
+   * Returns the compression ratio of the compressed chunks.
+   *
+   * @return		the ratio (uncompressed/compressed), 1 if nothing
+   * 			compressed yet
+   */
+  public synchronized double getCompressionRatio() {
+    if (m_CompressedSize == 0)
+      return 1.0;
+    return (double) m_Sealed.size() * m_ChunkSize / m_CompressedSize;
+  }
+
+  /**
+   * Returns the time spent compressing.
+   *
+   * @return		the time in nsec
+   */
+  public synchronized long getCompressionTime() {
+    return m_CompressionTime;
+  }
+
+  /**
+   * Returns the time spent decompressing.
+   *
+   * @return		the time in nsec
+   */
+  public synchronized long getDecompressionTime() {
+    return m_DecompressionTime;
+  }
+
+  /**
+   * Compresses the full current chunk.
+   */
+  protected void seal() {
+    ByteArrayOutputStream	out;
+    long			start;
+    int				len;
+
+    start = System.nanoTime();
+    if (m_Deflater == null) {
+      m_Deflater = new Deflater(m_Level);
+      m_Buffer   = new byte[8192];
+    }
+    out = new ByteArrayOutputStream(m_ChunkSize / 4);
+    m_Deflater.setInput(m_Current, 0, m_Position);
+    m_Deflater.finish();
+    while (!m_Deflater.finished()) {
+      len = m_Deflater.deflate(m_Buffer);
+      out.write(m_Buffer, 0, len);
+    }
+    m_Deflater.reset();
+    m_Sealed.add(out.toByteArray());
+    m_CompressedSize  += out.size();
+    m_Position         = 0;
+    m_CompressionTime += System.nanoTime() - start;
+  }
+
+  /**
+   * Adds the bytes, compressing full chunks.
+   *
+   * @param data	the buffer with the data
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   */
+  protected void add(byte[] data, int offset, int length) {
+    int		len;
+
+    while (length > 0) {
+      len = Math.min(length, m_ChunkSize - m_Position);
+      System.arraycopy(data, offset, m_Current, m_Position, len);
+      m_Position += len;
+      offset     += len;
+      length     -= len;
+      if (m_Position == m_ChunkSize)
+	seal();
+    }
+  }
+
+  /**
+   * Appends the raw bytes of a line.
+   *
+   * @param data	the buffer with the line (without terminator)
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   */
+  @Override
+  public synchronized void append(byte[] data, int offset, int length) {
+    add(data, offset, length);
+    add(NEWLINE, 0, 1);
+    m_Size += length + 1;
+    m_Index.add(m_Size);
+  }
+
+  /**
+   * Appends the line.
+   *
+   * @param line	the line (without terminator)
+   */
+  @Override
+  public void append(String line) {
+    byte[]	data;
+
+    data = line.getBytes(getCharset());
+    append(data, 0, data.length);
+  }
+
+  /**
+   * Decompresses a chunk.
+   *
+   * @param inflater	the decompressor to use
+   * @param chunk	the compressed chunk
+   * @param output	the buffer for the uncompressed chunk
+   * @param offset	the offset in the buffer
+   */
+  protected void decompress(Inflater inflater, byte[] chunk, byte[] output, int offset) {
+    long	start;
+    int		pos;
+
+    start = System.nanoTime();
+    inflater.reset();
+    inflater.setInput(chunk);
+    pos = offset;
+    try {
+      while ((pos < offset + m_ChunkSize) && !inflater.finished())
+	pos += inflater.inflate(output, pos, offset + m_ChunkSize - pos);
+    }
+    catch (DataFormatException e) {
+      throw new IllegalStateException("Failed to decompress chunk!", e);
+    }
+    synchronized(this) {
+      m_DecompressionTime += System.nanoTime() - start;
+    }
+  }
+
+  /**
+   * Returns the uncompressed chunk, caching the most recent one for
+   * subsequent accesses.
+   *
+   * @param index	the index of the chunk
+   * @return		the chunk
+   */
+  protected byte[] getChunk(int index) {
+    Inflater	inflater;
+
+    if (index == m_Sealed.size())
+      return m_Current;
+    if ((m_Cached == null) || (m_CachedIndex != index)) {
+      if (m_Cached == null)
+	m_Cached = new byte[m_ChunkSize];
+      inflater = new Inflater();
+      try {
+	decompress(inflater, m_Sealed.get(index), m_Cached, 0);
+      }
+      finally {
+	inflater.end();
+      }
+      m_CachedIndex = index;
+    }
+
+    return m_Cached;
+  }
+
+  /**
+   * Reads a range of the stored bytes, only decompressing the chunks
+   * covering the range.
+   *
+   * @param offset	the position of the first byte
+   * @param length	the maximum number of bytes
+   * @return		the bytes, shorter than requested at the end
+   */
+  @Override
+  public synchronized byte[] read(long offset, int length) {
+    byte[]	result;
+    int		pos;
+    int		len;
+
+    if ((offset < 0) || (length < 0))
+      throw new IllegalArgumentException("Offset and length cannot be negative: " + offset + "/" + length);
+    length = (int) Math.max(0, Math.min(length, m_Size - offset));
+    result = new byte[length];
+    pos    = 0;
+    while (pos < length) {
+      len = (int) Math.min(length - pos, m_ChunkSize - (offset % m_ChunkSize));
+      System.arraycopy(getChunk((int) (offset / m_ChunkSize)), (int) (offset % m_ChunkSize), result, pos, len);
+      pos    += len;
+      offset += len;
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the stored bytes, decompressing all chunks.
+   *
+   * @return		the content, each line terminated by \n
+   * @throws IllegalStateException	if the content is too large for an array
+   */
+  @Override
+  public byte[] getBytes() {
+    List<byte[]>	sealed;
+    byte[]		current;
+    byte[]		result;
+    Inflater		inflater;
+    long		size;
+    int			i;
+
+    synchronized(this) {
+      sealed  = new ArrayList<>(m_Sealed);
+      current = Arrays.copyOf(m_Current, m_Position);
+    }
+    size = (long) sealed.size() * m_ChunkSize + current.length;
+    if (size > Integer.MAX_VALUE - 8)
+      throw new IllegalStateException("Content too large for an array (" + size + " bytes), use streaming access instead!");
+
+    result   = new byte[(int) size];
+    inflater = new Inflater();
+    try {
+      for (i = 0; i < sealed.size(); i++)
+	decompress(inflater, sealed.get(i), result, i * m_ChunkSize);
+    }
+    finally {
+      inflater.end();
+    }
+    System.arraycopy(current, 0, result, sealed.size() * m_ChunkSize, current.length);
+
+    return result;
+  }
+
+  /**
+   * Returns a stream over the bytes stored at the time of the call,
+   * decompressing one chunk at a time.
+   *
+   * @return		the stream
+   */
+  @Override
+  public InputStream getInputStream() {
+    final List<byte[]>	sealed;
+    final byte[]	current;
+
+    synchronized(this) {
+      sealed  = new ArrayList<>(m_Sealed);
+      current = Arrays.copyOf(m_Current, m_Position);
+    }
+
+    return new InputStream() {
+      protected int m_ChunkIndex = -1;
+
+      protected byte[] m_Chunk = null;
+
+      protected int m_Pos = 0;
+
+      protected int m_Length = 0;
+
+      protected Inflater m_Inflater = null;
+
+      protected boolean next() {
+	m_ChunkIndex++;
+	m_Pos = 0;
+	if (m_ChunkIndex < sealed.size()) {
+	  if (m_Inflater == null) {
+	    m_Inflater = new Inflater();
+	    m_Chunk    = new byte[m_ChunkSize];
+	  }
+	  decompress(m_Inflater, sealed.get(m_ChunkIndex), m_Chunk, 0);
+	  m_Length = m_ChunkSize;
+	  return true;
+	}
+	close();
+	if (m_ChunkIndex == sealed.size()) {
+	  m_Chunk  = current;
+	  m_Length = current.length;
+	  return true;
+	}
+	return false;
+      }
+
+      @Override
+      public int read() {
+	byte[]	b;
+
+	b = new byte[1];
+	if (read(b, 0, 1) == -1)
+	  return -1;
+	return b[0] & 0xFF;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+	while (m_Pos == m_Length) {
+	  if (!next())
+	    return -1;
+	}
+	len = Math.min(len, m_Length - m_Pos);
+	System.arraycopy(m_Chunk, m_Pos, b, off, len);
+	m_Pos += len;
+	return len;
+      }
+
+      @Override
+      public void close() {
+	if (m_Inflater != null) {
+	  m_Inflater.end();
+	  m_Inflater = null;
+	}
+      }
+    };
+  }
+
+  /**
+   * Returns the stored content, decompressing and decoding the bytes.
+   *
+   * @return		the content, each line terminated by \n
+   */
+  @Override
+  public String getContent() {
+    return new String(getBytes(), getCharset());
+  }
+
+  /**
+   * Discards the content and releases the compressor.
+   */
+  @Override
+  public synchronized void close() {
+    if (m_Deflater != null) {
+      m_Deflater.end();
+      m_Deflater = null;
+    }
+    m_Sealed.clear();
+    m_Cached         = null;
+    m_Position       = 0;
+    m_Size           = 0;
+    m_CompressedSize = 0;
+    m_Index.clear();
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * DirectBufferPool.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of equally sized direct {@link ByteBuffer}s. Allocating direct
+ * buffers is expensive and their memory only gets freed once the buffer
+ * objects get garbage collected, hence released buffers get kept for
+ * reuse, up to the configured maximum.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class DirectBufferPool {
+
+  /** the default buffer size in bytes. */
+  public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+  /** the default maximum number of idle buffers to keep. */
+  public static final int DEFAULT_MAX_IDLE = 256;
+
+  /** the shared default pool. */
+  protected static DirectBufferPool m_Default;
+
+  /** the size of the buffers. */
+  protected int m_BufferSize;
+
+  /** the maximum number of idle buffers to keep. */
+  protected int m_MaxIdle;
+
+  /** the idle buffers. */
+  protected Queue<ByteBuffer> m_Idle;
+
+  /** the number of idle buffers. */
+  protected AtomicInteger m_NumIdle;
+
+  /** the number of buffers handed out. */
+  protected AtomicInteger m_NumActive;
+
+  /**
+   * Initializes the pool.
+   *
+   * @param bufferSize	the size of the buffers in bytes
+   * @param maxIdle	the maximum number of idle buffers to keep
+   */
+  public DirectBufferPool(int bufferSize, int maxIdle) {
+    if (bufferSize < 1)
+      throw new IllegalArgumentException("Buffer size must be at least 1: " + bufferSize);
+    if (maxIdle < 0)
+      throw new IllegalArgumentException("Maximum number of idle buffers cannot be negative: " + maxIdle);
+    m_BufferSize = bufferSize;
+    m_MaxIdle    = maxIdle;
+    m_Idle       = new ConcurrentLinkedQueue<>();
+    m_NumIdle    = new AtomicInteger();
+    m_NumActive  = new AtomicInteger();
+  }
+
+  /**
+   * Returns the shared default pool.
+   *
+   * @return		the pool
+   */
+  public static synchronized DirectBufferPool getDefault() {
+    if (m_Default == null)
+      m_Default = new DirectBufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_IDLE);
+    return m_Default;
+  }
+
+  /**
+   * Returns the size of the buffers.
+   *
+   * @return		the size in bytes
+   */
+  public int getBufferSize() {
+    return m_BufferSize;
+  }
+
+  /**
+   * Returns the maximum number of idle buffers that are kept.
+   *
+   * @return		the maximum
+   */
+  public int getMaxIdle() {
+    return m_MaxIdle;
+  }
+
+  /**
+   * Returns the number of idle buffers.
+   *
+   * @return		the number of buffers
+   */
+  public int getNumIdle() {
+    return m_NumIdle.get();
+  }
+
+  /**
+   * Returns the number of buffers that are currently in use.
+   *
+   * @return		the number of buffers
+   */
+  public int getNumActive() {
+    return m_NumActive.get();
+  }
+
+  /**
+   * Returns a cleared buffer, reusing an idle one if possible.
+   *
+   * @return		the buffer
+   */
+  public ByteBuffer acquire() {
+    ByteBuffer	result;
+
+    result = m_Idle.poll();
+    if (result == null)
+      result = ByteBuffer.allocateDirect(m_BufferSize);
+    else
+      m_NumIdle.decrementAndGet();
+    m_NumActive.incrementAndGet();
+    result.clear();
+
+    return result;
+  }
+
+  /**
+   * Returns the buffer to the pool. The buffer must not be used afterwards.
+   *
+   * @param buffer	the buffer to release
+   */
+  public void release(ByteBuffer buffer) {
+    m_NumActive.decrementAndGet();
+    if (m_NumIdle.incrementAndGet() <= m_MaxIdle)
+      m_Idle.offer(buffer);
+    else
+      m_NumIdle.decrementAndGet();
+  }
+
+  /**
+   * Gives up the buffer without returning it to the pool, e.g., as it might
+   * still get read elsewhere. It no longer counts as active and its memory
+   * gets freed once the buffer gets garbage collected.
+   *
+   * @param buffer	the buffer to give up
+   */
+  public void discard(ByteBuffer buffer) {
+    m_NumActive.decrementAndGet();
+  }
+}
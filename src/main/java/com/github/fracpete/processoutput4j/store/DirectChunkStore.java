@@ -0,0 +1,325 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * DirectChunkStore.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stores the raw bytes of the lines off-heap, in direct {@link ByteBuffer}
+ * chunks taken from a {@link DirectBufferPool}. Large outputs therefore do
+ * not end up as large old-generation objects that the garbage collector
+ * has to deal with. {@link #close()} returns the chunks to the pool, unless
+ * views of the chunks have been handed out via {@link #getByteBuffers()}:
+ * in that case, the chunks get discarded from the pool and left to the
+ * garbage collector, as they might still get read. This trades reuse of
+ * the buffers for safety, the pool then has to allocate new ones. Streams obtained via {@link #getInputStream()}
+ * copy from the chunks under the lock of the store and fail once it has
+ * been closed.
+ * <br>
+ * The content does not get serialized.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class DirectChunkStore
+  extends AbstractIndexedOutputStore {
+
+  /** for serialization. */
+  private static final long serialVersionUID = 4404419581813532473L;
+
+  /** the pool to take the chunks from. */
+  protected transient DirectBufferPool m_Pool;
+
+  /** the chunks, all but the last one are full. */
+  protected transient List<ByteBuffer> m_Chunks;
+
+  /** the total number of bytes. */
+  protected long m_Size;
+
+  /** whether views of the chunks have been handed out. */
+  protected transient boolean m_Shared;
+
+  /**
+   * Initializes the store with the default pool.
+   */
+  public DirectChunkStore() {
+    this(DirectBufferPool.getDefault());
+  }
+
+  /**
+   * Initializes the store.
+   *
+   * @param pool	the pool to take the chunks from
+   */
+  public DirectChunkStore(DirectBufferPool pool) {
+    super();
+    if (pool == null)
+      throw new IllegalArgumentException("Pool cannot be null!");
+    m_Pool   = pool;
+    m_Chunks = new ArrayList<>();
+    m_Size   = 0;
+    m_Shared = false;
+  }
+
+  /**
+   * Returns the pool the chunks are taken from.
+   *
+   * @return		the pool
+   */
+  public DirectBufferPool getPool() {
+    return m_Pool;
+  }
+
+  /**
+   * Returns the number of bytes stored.
+   *
+   * @return		the number of bytes (incl line terminators)
+   */
+  @Override
+  public synchronized long size() {
+    return m_Size;
+  }
+
+  /**
+   * Adds the bytes, starting new chunks as required.
+   *
+   * @param data	the buffer with the data
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   */
+  protected void add(byte[] data, int offset, int length) {
+    ByteBuffer	chunk;
+    int		len;
+
+    if (m_Chunks == null)
+      throw new IllegalStateException("Store has been closed!");
+
+    while (length > 0) {
+      chunk = m_Chunks.isEmpty() ? null : m_Chunks.get(m_Chunks.size() - 1);
+      if ((chunk == null) || !chunk.hasRemaining()) {
+	chunk = m_Pool.acquire();
+	m_Chunks.add(chunk);
+      }
+      len = Math.min(length, chunk.remaining());
+      chunk.put(data, offset, len);
+      offset += len;
+      length -= len;
+    }
+  }
+
+  /**
+   * Appends the raw bytes of a line.
+   *
+   * @param data	the buffer with the line (without terminator)
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   */
+  @Override
+  public synchronized void append(byte[] data, int offset, int length) {
+    add(data, offset, length);
+    add(NEWLINE, 0, 1);
+    m_Size += length + 1;
+    m_Index.add(m_Size);
+  }
+
+  /**
+   * Appends the line.
+   *
+   * @param line	the line (without terminator)
+   */
+  @Override
+  public void append(String line) {
+    byte[]	data;
+
+    data = line.getBytes(getCharset());
+    append(data, 0, data.length);
+  }
+
+  /**
+   * Reads a range of the stored bytes.
+   *
+   * @param offset	the position of the first byte
+   * @param length	the maximum number of bytes
+   * @return		the bytes, shorter than requested at the end
+   */
+  @Override
+  public synchronized byte[] read(long offset, int length) {
+    byte[]	result;
+
+    if ((offset < 0) || (length < 0))
+      throw new IllegalArgumentException("Offset and length cannot be negative: " + offset + "/" + length);
+    length = (int) Math.max(0, Math.min(length, m_Size - offset));
+    result = new byte[length];
+    copy(offset, result, 0, length);
+
+    return result;
+  }
+
+  /**
+   * Copies stored bytes into the buffer. Offset and length must lie
+   * within the stored bytes.
+   *
+   * @param offset	the position of the first byte
+   * @param buffer	the buffer to copy into
+   * @param pos		the position in the buffer
+   * @param length	the number of bytes
+   */
+  protected synchronized void copy(long offset, byte[] buffer, int pos, int length) {
+    ByteBuffer	view;
+    int		chunkSize;
+    int		len;
+
+    chunkSize = m_Pool.getBufferSize();
+    while (length > 0) {
+      view = m_Chunks.get((int) (offset / chunkSize)).duplicate();
+      view.position((int) (offset % chunkSize));
+      len = Math.min(length, chunkSize - view.position());
+      view.get(buffer, pos, len);
+      pos    += len;
+      offset += len;
+      length -= len;
+    }
+  }
+
+  /**
+   * Returns read-only views of the chunks, covering the bytes stored at
+   * the time of the call. Once views have been handed out, the chunks no
+   * longer get returned to the pool when closing the store.
+   *
+   * @return		the views, positioned at the start of the content
+   */
+  public synchronized List<ByteBuffer> getByteBuffers() {
+    List<ByteBuffer>	result;
+    ByteBuffer		view;
+
+    result = new ArrayList<>();
+    if (m_Chunks == null)
+      return result;
+    m_Shared = true;
+    for (ByteBuffer chunk: m_Chunks) {
+      view = chunk.asReadOnlyBuffer();
+      view.flip();
+      result.add(view);
+    }
+
+    return Collections.unmodifiableList(result);
+  }
+
+  /**
+   * Returns the stored bytes, copied onto the heap.
+   *
+   * @return		the content, each line terminated by \n
+   * @throws IllegalStateException	if the content is too large for an array
+   */
+  @Override
+  public synchronized byte[] getBytes() {
+    byte[]	result;
+
+    if (m_Size > Integer.MAX_VALUE - 8)
+      throw new IllegalStateException("Content too large for an array (" + m_Size + " bytes), use streaming access instead!");
+
+    result = new byte[(int) m_Size];
+    copy(0, result, 0, result.length);
+
+    return result;
+  }
+
+  /**
+   * Returns a stream over the bytes stored at the time of the call.
+   * The bytes get copied from the chunks under the lock of the store,
+   * reading fails once the store has been closed.
+   *
+   * @return		the stream
+   */
+  @Override
+  public InputStream getInputStream() {
+    final long	size;
+
+    size = size();
+
+    return new InputStream() {
+      protected long m_Position = 0;
+
+      @Override
+      public int read() throws IOException {
+	byte[]	b;
+
+	b = new byte[1];
+	if (read(b, 0, 1) == -1)
+	  return -1;
+	return b[0] & 0xFF;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+	if (m_Position == size)
+	  return -1;
+	if (len == 0)
+	  return 0;
+	len = (int) Math.min(len, size - m_Position);
+	synchronized (DirectChunkStore.this) {
+	  if (m_Chunks == null)
+	    throw new IOException("Store has been closed!");
+	  copy(m_Position, b, off, len);
+	}
+	m_Position += len;
+	return len;
+      }
+    };
+  }
+
+  /**
+   * Returns the stored content, decoding the bytes with the charset.
+   *
+   * @return		the content, each line terminated by \n
+   */
+  @Override
+  public String getContent() {
+    return new String(getBytes(), getCharset());
+  }
+
+  /**
+   * Returns the chunks to the pool, unless views have been handed out,
+   * in which case they get discarded from the pool instead. The store
+   * cannot be used afterwards.
+   *
+   * @see		#getByteBuffers()
+   * @see		DirectBufferPool#discard(ByteBuffer)
+   */
+  @Override
+  public synchronized void close() {
+    if (m_Chunks == null)
+      return;
+    for (ByteBuffer chunk: m_Chunks) {
+      if (m_Shared)
+	m_Pool.discard(chunk);
+      else
+	m_Pool.release(chunk);
+    }
+    m_Chunks = null;
+    m_Size   = 0;
+    m_Index.clear();
+  }
+}
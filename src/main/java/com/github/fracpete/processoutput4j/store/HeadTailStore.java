@@ -0,0 +1,489 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * HeadTailStore.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Only keeps the first and the last lines or bytes of the output, putting
+ * a hard limit on the memory used. The tail is kept in a byte ring buffer
+ * and only whole lines are kept. The number of lines and bytes that got
+ * skipped are counted.
+ * <br>
+ * When limiting bytes, the ring buffer gets allocated upfront. When
+ * limiting lines, head and tail are additionally limited to a maximum
+ * number of bytes each (see {@link #getMaxBytes()}), as a few lines can
+ * be arbitrarily large; the ring buffer grows up to that limit as needed.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class HeadTailStore
+  extends AbstractOutputStore {
+
+  /** for serialization. */
+  private static final long serialVersionUID = 2710325893461271520L;
+
+  /**
+   * What the limits refer to.
+   */
+  public enum Unit {
+    /** number of lines. */
+    LINES,
+    /** number of bytes (incl. line terminators). */
+    BYTES,
+  }
+
+  /** the default maximum number of bytes for head and tail each, when limiting lines. */
+  public static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+
+  /** the initial size of the tail ring buffer, when limiting lines. */
+  public static final int INITIAL_TAIL_SIZE = 4096;
+
+  /** the default marker for skipped content. */
+  public static final String DEFAULT_SKIP_MARKER = "[... skipped %d lines, %d bytes ...]";
+
+  /** what the limits refer to. */
+  protected Unit m_Unit;
+
+  /** the limit for the head. */
+  protected int m_HeadLimit;
+
+  /** the limit for the tail. */
+  protected int m_TailLimit;
+
+  /** the maximum number of bytes for head and tail each. */
+  protected int m_MaxBytes;
+
+  /** the head (\n-terminated lines). */
+  protected ByteArrayOutputStream m_Head;
+
+  /** the number of lines in the head. */
+  protected long m_HeadLines;
+
+  /** whether the head is complete. */
+  protected boolean m_HeadFull;
+
+  /** the tail bytes (ring buffer). */
+  protected byte[] m_TailBytes;
+
+  /** the position of the oldest tail byte in the ring buffer. */
+  protected int m_TailStart;
+
+  /** the number of tail bytes in the ring buffer. */
+  protected int m_TailCount;
+
+  /** the lengths (incl. terminator) of the tail lines (ring buffer, when limiting lines). */
+  protected int[] m_TailLengths;
+
+  /** the position of the length of the oldest tail line. */
+  protected int m_TailLineStart;
+
+  /** the number of tail lines (when limiting lines). */
+  protected int m_TailLineCount;
+
+  /** whether the tail bytes start with a complete line. */
+  protected boolean m_TailAligned;
+
+  /** the total number of lines appended. */
+  protected long m_TotalLines;
+
+  /** the total number of bytes appended (incl. terminators). */
+  protected long m_TotalBytes;
+
+  /** the marker for skipped content, with placeholders for lines and bytes, null for none. */
+  protected String m_SkipMarker;
+
+  /**
+   * Initializes the store, using {@link #DEFAULT_MAX_BYTES} when limiting
+   * lines.
+   *
+   * @param unit	what the limits refer to
+   * @param head	the number of lines/bytes to keep from the start
+   * @param tail	the number of lines/bytes to keep from the end
+   */
+  public HeadTailStore(Unit unit, int head, int tail) {
+    this(unit, head, tail, DEFAULT_MAX_BYTES);
+  }
+
+  /**
+   * Initializes the store.
+   *
+   * @param unit	what the limits refer to
+   * @param head	the number of lines/bytes to keep from the start
+   * @param tail	the number of lines/bytes to keep from the end
+   * @param maxBytes	the maximum number of bytes for head and tail each
+   * 			when limiting lines, ignored when limiting bytes
+   */
+  public HeadTailStore(Unit unit, int head, int tail, int maxBytes) {
+    super();
+    if (head < 0)
+      throw new IllegalArgumentException("Head limit cannot be negative: " + head);
+    if (tail < 0)
+      throw new IllegalArgumentException("Tail limit cannot be negative: " + tail);
+    if (maxBytes < 1)
+      throw new IllegalArgumentException("Maximum number of bytes must be at least 1: " + maxBytes);
+    m_Unit          = unit;
+    m_HeadLimit     = head;
+    m_TailLimit     = tail;
+    m_Head          = new ByteArrayOutputStream();
+    m_HeadLines     = 0;
+    m_HeadFull      = (head == 0);
+    if (unit == Unit.LINES) {
+      m_MaxBytes    = maxBytes;
+      m_TailBytes   = new byte[(tail == 0) ? 0 : Math.min(maxBytes, INITIAL_TAIL_SIZE)];
+      m_TailLengths = new int[tail];
+    }
+    else {
+      m_MaxBytes    = Math.max(head, tail);
+      m_TailBytes   = new byte[tail];
+    }
+    m_TailStart     = 0;
+    m_TailCount     = 0;
+    m_TailLineStart = 0;
+    m_TailLineCount = 0;
+    m_TailAligned   = true;
+    m_TotalLines    = 0;
+    m_TotalBytes    = 0;
+    m_SkipMarker    = DEFAULT_SKIP_MARKER;
+  }
+
+  /**
+   * Returns what the limits refer to.
+   *
+   * @return		the unit
+   */
+  public Unit getUnit() {
+    return m_Unit;
+  }
+
+  /**
+   * Returns the limit for the head.
+   *
+   * @return		the number of lines/bytes
+   */
+  public int getHeadLimit() {
+    return m_HeadLimit;
+  }
+
+  /**
+   * Returns the limit for the tail.
+   *
+   * @return		the number of lines/bytes
+   */
+  public int getTailLimit() {
+    return m_TailLimit;
+  }
+
+  /**
+   * Returns the maximum number of bytes for head and tail each.
+   *
+   * @return		the number of bytes
+   */
+  public int getMaxBytes() {
+    return m_MaxBytes;
+  }
+
+  /**
+   * Sets the marker that gets inserted between head and tail in the
+   * content if anything got skipped. The marker is a format string with
+   * placeholders for the number of skipped lines and bytes.
+   *
+   * @param value	the marker, null for none
+   */
+  public synchronized void setSkipMarker(String value) {
+    m_SkipMarker = value;
+  }
+
+  /**
+   * Returns the marker that gets inserted between head and tail in the
+   * content if anything got skipped.
+   *
+   * @return		the marker, null for none
+   */
+  public synchronized String getSkipMarker() {
+    return m_SkipMarker;
+  }
+
+  /**
+   * Appends the line.
+   *
+   * @param line	the line (without terminator)
+   */
+  @Override
+  public void append(String line) {
+    byte[]	data;
+
+    data = line.getBytes(getCharset());
+    append(data, 0, data.length);
+  }
+
+  /**
+   * Appends the raw bytes of a line.
+   *
+   * @param data	the buffer with the line (without terminator)
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   */
+  @Override
+  public synchronized void append(byte[] data, int offset, int length) {
+    int		maxHead;
+
+    m_TotalLines++;
+    m_TotalBytes += length + 1;
+
+    if (!m_HeadFull) {
+      maxHead = (m_Unit == Unit.LINES) ? m_MaxBytes : m_HeadLimit;
+      if (m_Head.size() + length + 1 > maxHead) {
+	m_HeadFull = true;
+	appendTail(data, offset, length);
+	return;
+      }
+      if (m_Unit == Unit.LINES)
+	m_HeadFull = (m_HeadLines + 1 >= m_HeadLimit);
+      m_Head.write(data, offset, length);
+      m_Head.write('\n');
+      m_HeadLines++;
+      return;
+    }
+
+    appendTail(data, offset, length);
+  }
+
+  /**
+   * Appends the line to the tail.
+   *
+   * @param data	the buffer with the line (without terminator)
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   */
+  protected void appendTail(byte[] data, int offset, int length) {
+    int		size;
+    int		skip;
+    int		evict;
+    int		pos;
+
+    if (m_TailLimit == 0)
+      return;
+
+    if (m_Unit == Unit.LINES) {
+      if (length + 1 > m_MaxBytes) {
+	// line too long for the tail, the preceding lines are no longer the last ones
+	m_TailStart     = 0;
+	m_TailCount     = 0;
+	m_TailLineStart = 0;
+	m_TailLineCount = 0;
+	return;
+      }
+      while ((m_TailLineCount == m_TailLimit) || (m_TailCount + length + 1 > m_MaxBytes)) {
+	size             = m_TailLengths[m_TailLineStart];
+	m_TailStart      = (m_TailStart + size) % m_TailBytes.length;
+	m_TailCount     -= size;
+	m_TailLineStart  = (m_TailLineStart + 1) % m_TailLimit;
+	m_TailLineCount--;
+      }
+      if (m_TailCount + length + 1 > m_TailBytes.length)
+	growTail(m_TailCount + length + 1);
+      pos = (m_TailStart + m_TailCount) % m_TailBytes.length;
+      writeTail(pos, data, offset, length);
+      writeTail((pos + length) % m_TailBytes.length, NEWLINE, 0, 1);
+      m_TailCount += length + 1;
+      m_TailLengths[(m_TailLineStart + m_TailLineCount) % m_TailLimit] = length + 1;
+      m_TailLineCount++;
+    }
+    else {
+      // only the last bytes of lines longer than the ring buffer fit
+      skip  = Math.max(0, length + 1 - m_TailLimit);
+      evict = Math.max(0, m_TailCount + length + 1 - skip - m_TailLimit);
+      if (evict > 0) {
+	m_TailAligned = (m_TailBytes[(m_TailStart + evict - 1) % m_TailLimit] == '\n');
+	m_TailStart   = (m_TailStart + evict) % m_TailLimit;
+	m_TailCount  -= evict;
+      }
+      pos = (m_TailStart + m_TailCount) % m_TailLimit;
+      writeTail(pos, data, offset + skip, length - skip);
+      writeTail((pos + length - skip) % m_TailLimit, NEWLINE, 0, 1);
+      m_TailCount += length + 1 - skip;
+      if (skip > 0)
+	m_TailAligned = false;
+    }
+  }
+
+  /**
+   * Grows the tail ring buffer (when limiting lines), at most up to the
+   * maximum number of bytes. The content gets moved to the start.
+   *
+   * @param required	the required number of bytes
+   */
+  protected void growTail(int required) {
+    byte[]	tail;
+
+    tail = new byte[Math.min(m_MaxBytes, Math.max(required, m_TailBytes.length * 2))];
+    copyTail(tail);
+    m_TailBytes = tail;
+    m_TailStart = 0;
+  }
+
+  /**
+   * Copies the bytes into the tail ring buffer, wrapping around at the end.
+   *
+   * @param pos		the position in the ring buffer
+   * @param data	the buffer with the data
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes, at most the size of the ring buffer
+   */
+  protected void writeTail(int pos, byte[] data, int offset, int length) {
+    int		first;
+
+    first = Math.min(length, m_TailBytes.length - pos);
+    System.arraycopy(data, offset, m_TailBytes, pos, first);
+    if (length > first)
+      System.arraycopy(data, offset + first, m_TailBytes, 0, length - first);
+  }
+
+  /**
+   * Copies the bytes of the tail ring buffer, oldest first.
+   *
+   * @param bytes	the array to copy to, at least as large as the
+   * 			number of tail bytes
+   */
+  protected void copyTail(byte[] bytes) {
+    int		first;
+
+    if (m_TailCount == 0)
+      return;
+    first = Math.min(m_TailCount, m_TailBytes.length - m_TailStart);
+    System.arraycopy(m_TailBytes, m_TailStart, bytes, 0, first);
+    if (m_TailCount > first)
+      System.arraycopy(m_TailBytes, 0, bytes, first, m_TailCount - first);
+  }
+
+  /**
+   * Returns the first lines that got stored.
+   *
+   * @return		the head, each line terminated by \n
+   */
+  public synchronized String getHead() {
+    return new String(m_Head.toByteArray(), getCharset());
+  }
+
+  /**
+   * Returns the bytes of the complete lines in the tail.
+   *
+   * @return		the bytes
+   */
+  protected byte[] tailBytes() {
+    byte[]	bytes;
+    int		start;
+
+    bytes = new byte[m_TailCount];
+    copyTail(bytes);
+    if (m_TailAligned)
+      return bytes;
+
+    // drop incomplete first line
+    start = 0;
+    while ((start < bytes.length) && (bytes[start] != '\n'))
+      start++;
+    start++;
+    if (start >= bytes.length)
+      return new byte[0];
+
+    return Arrays.copyOfRange(bytes, start, bytes.length);
+  }
+
+  /**
+   * Returns the last lines that got stored (complete lines only).
+   *
+   * @return		the tail, each line terminated by \n
+   */
+  public synchronized String getTail() {
+    return new String(tailBytes(), getCharset());
+  }
+
+  /**
+   * Returns the number of lines that got skipped.
+   *
+   * @return		the number of lines
+   */
+  public synchronized long getSkippedLines() {
+    byte[]	tail;
+    int		lines;
+
+    tail  = tailBytes();
+    lines = 0;
+    for (byte b: tail) {
+      if (b == '\n')
+	lines++;
+    }
+
+    return m_TotalLines - m_HeadLines - lines;
+  }
+
+  /**
+   * Returns the number of bytes (incl. terminators) that got skipped.
+   *
+   * @return		the number of bytes
+   */
+  public synchronized long getSkippedBytes() {
+    return m_TotalBytes - m_Head.size() - tailBytes().length;
+  }
+
+  /**
+   * Returns the total number of lines that got appended.
+   *
+   * @return		the number of lines
+   */
+  public synchronized long getTotalLines() {
+    return m_TotalLines;
+  }
+
+  /**
+   * Returns the total number of bytes (incl. terminators) that got appended.
+   *
+   * @return		the number of bytes
+   */
+  public synchronized long getTotalBytes() {
+    return m_TotalBytes;
+  }
+
+  /**
+   * Returns the head and tail, separated by the skip marker if anything
+   * got skipped.
+   *
+   * @return		the content, each line terminated by \n
+   */
+  @Override
+  public synchronized String getContent() {
+    StringBuilder	result;
+    long		lines;
+    long		bytes;
+
+    result = new StringBuilder(getHead());
+    lines  = getSkippedLines();
+    bytes  = getSkippedBytes();
+    if ((m_SkipMarker != null) && ((lines > 0) || (bytes > 0)))
+      result.append(String.format(m_SkipMarker, lines, bytes)).append('\n');
+    result.append(getTail());
+
+    return result.toString();
+  }
+}
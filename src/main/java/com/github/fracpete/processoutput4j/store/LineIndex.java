@@ -0,0 +1,152 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * LineIndex.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Records where the lines of collected content end, allowing random access
+ * to individual lines without splitting the content. The offsets are kept
+ * in an int array and only switch to a long array once the content grows
+ * beyond 2GB (or 2G chars). Each line is assumed to be terminated by a
+ * single \n.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class LineIndex
+  implements Serializable {
+
+  /** for serialization. */
+  private static final long serialVersionUID = 3356318006838553619L;
+
+  /** the end offsets (incl terminator), while all fit into an int. */
+  protected int[] m_Ends;
+
+  /** the end offsets (incl terminator), once they no longer fit an int. */
+  protected long[] m_LongEnds;
+
+  /** the number of lines. */
+  protected int m_Size;
+
+  /**
+   * Initializes the index.
+   */
+  public LineIndex() {
+    m_Ends     = new int[64];
+    m_LongEnds = null;
+    m_Size     = 0;
+  }
+
+  /**
+   * Adds the next line.
+   *
+   * @param end		the offset after the line's terminator
+   */
+  public synchronized void add(long end) {
+    int		i;
+
+    if ((m_LongEnds == null) && (end > Integer.MAX_VALUE)) {
+      m_LongEnds = new long[m_Ends.length];
+      for (i = 0; i < m_Size; i++)
+	m_LongEnds[i] = m_Ends[i];
+      m_Ends = null;
+    }
+
+    if (m_LongEnds == null) {
+      if (m_Size == m_Ends.length)
+	m_Ends = Arrays.copyOf(m_Ends, m_Ends.length * 2);
+      m_Ends[m_Size] = (int) end;
+    }
+    else {
+      if (m_Size == m_LongEnds.length)
+	m_LongEnds = Arrays.copyOf(m_LongEnds, m_LongEnds.length * 2);
+      m_LongEnds[m_Size] = end;
+    }
+    m_Size++;
+  }
+
+  /**
+   * Returns the number of lines.
+   *
+   * @return		the number of lines
+   */
+  public synchronized int size() {
+    return m_Size;
+  }
+
+  /**
+   * Returns the offset after the specified line (incl terminator).
+   *
+   * @param index	the index of the line, -1 for the start of the content
+   * @return		the offset
+   */
+  protected long end(int index) {
+    if (index < 0)
+      return 0;
+    else if (m_LongEnds == null)
+      return m_Ends[index];
+    else
+      return m_LongEnds[index];
+  }
+
+  /**
+   * Checks the index.
+   *
+   * @param index	the index of the line
+   * @throws IndexOutOfBoundsException	if invalid index
+   */
+  protected void check(int index) {
+    if ((index < 0) || (index >= m_Size))
+      throw new IndexOutOfBoundsException("Line " + index + " not in [0," + m_Size + ")");
+  }
+
+  /**
+   * Returns the start offset of the specified line.
+   *
+   * @param index	the index of the line
+   * @return		the offset
+   */
+  public synchronized long getStart(int index) {
+    check(index);
+    return end(index - 1);
+  }
+
+  /**
+   * Returns the end offset of the specified line, excluding terminator.
+   *
+   * @param index	the index of the line
+   * @return		the offset
+   */
+  public synchronized long getEnd(int index) {
+    check(index);
+    return end(index) - 1;
+  }
+
+  /**
+   * Removes all lines.
+   */
+  public synchronized void clear() {
+    m_Ends     = new int[64];
+    m_LongEnds = null;
+    m_Size     = 0;
+  }
+}
@@ -0,0 +1,378 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MappedFileStore.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+import com.github.fracpete.processoutput4j.core.TempFiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only store over a file that got written by someone else, e.g., by
+ * the operating system when redirecting the output of a process to a file.
+ * The file gets memory-mapped lazily on first access (and again if it has
+ * grown since), the line index only gets built when accessing individual
+ * lines. The content is returned as written, i.e., line terminators are
+ * not normalized, though {@link #getLine(int)} removes a trailing \r.
+ * <br>
+ * If owning the file, {@link #close()} deletes it. Since mapped memory
+ * only gets released once garbage collected, some platforms (e.g.,
+ * Windows) cannot delete the file straight away; it then gets deleted
+ * when the JVM exits.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class MappedFileStore
+  extends AbstractIndexedOutputStore {
+
+  /** for serialization. */
+  private static final long serialVersionUID = -4471843508261175932L;
+
+  /** the maximum size of a mapped region (1GB). */
+  public static final int REGION_SIZE = 1 << 30;
+
+  /** the file. */
+  protected File m_File;
+
+  /** whether to delete the file when closing the store. */
+  protected boolean m_Owner;
+
+  /** the mapped regions of the file, null if not mapped yet. */
+  protected transient MappedByteBuffer[] m_Regions;
+
+  /** the number of bytes mapped. */
+  protected long m_Size;
+
+  /** whether the line index is up-to-date. */
+  protected boolean m_Indexed;
+
+  /**
+   * Initializes the store.
+   *
+   * @param file	the file to read from, null for an empty store
+   * @param owner	whether to delete the file when closing the store
+   */
+  public MappedFileStore(File file, boolean owner) {
+    super();
+    m_File    = file;
+    m_Owner   = owner;
+    m_Regions = null;
+    m_Size    = 0;
+    m_Indexed = false;
+  }
+
+  /**
+   * Returns the file.
+   *
+   * @return		the file, null if none (or deleted)
+   */
+  public File getFile() {
+    return m_File;
+  }
+
+  /**
+   * Returns whether the file gets deleted when closing the store.
+   *
+   * @return		true if owning the file
+   */
+  public boolean isOwner() {
+    return m_Owner;
+  }
+
+  /**
+   * Maps the file into memory, if not yet mapped or if it has grown.
+   */
+  protected void open() {
+    FileChannel		channel;
+    long		length;
+    long		offset;
+    int			i;
+
+    if (m_File == null) {
+      if (m_Regions == null) {
+	m_Regions = new MappedByteBuffer[0];
+	m_Size    = 0;
+      }
+      return;
+    }
+    length = m_File.length();
+    if ((m_Regions != null) && (length == m_Size))
+      return;
+
+    m_Regions = new MappedByteBuffer[(int) ((length + REGION_SIZE - 1) / REGION_SIZE)];
+    if (m_Regions.length > 0) {
+      try {
+	channel = new RandomAccessFile(m_File, "r").getChannel();
+	try {
+	  for (i = 0; i < m_Regions.length; i++) {
+	    offset       = (long) i * REGION_SIZE;
+	    m_Regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(REGION_SIZE, length - offset));
+	  }
+	}
+	finally {
+	  // mappings stay valid after closing the channel
+	  channel.close();
+	}
+      }
+      catch (IOException e) {
+	m_Regions = null;
+	throw new UncheckedIOException("Failed to map " + m_File, e);
+      }
+    }
+    m_Size    = length;
+    m_Indexed = false;
+  }
+
+  /**
+   * Builds the line index, if not up-to-date. Lines are terminated by \n,
+   * a last line without terminator counts as line as well.
+   */
+  protected void index() {
+    ByteBuffer	region;
+    long	offset;
+    int		i;
+    int		n;
+
+    open();
+    if (m_Indexed)
+      return;
+
+    m_Index.clear();
+    for (i = 0; i < m_Regions.length; i++) {
+      region = m_Regions[i].duplicate();
+      offset = (long) i * REGION_SIZE;
+      for (n = 0; n < region.limit(); n++) {
+	if (region.get(n) == '\n')
+	  m_Index.add(offset + n + 1);
+      }
+    }
+    if ((m_Size > 0) && ((m_Index.size() == 0) || (m_Index.getEnd(m_Index.size() - 1) + 1 < m_Size)))
+      m_Index.add(m_Size + 1);
+    m_Indexed = true;
+  }
+
+  /**
+   * Not supported, the content gets written by someone else.
+   *
+   * @param line	ignored
+   * @throws UnsupportedOperationException	always
+   */
+  @Override
+  public void append(String line) {
+    throw new UnsupportedOperationException("Store is read-only: " + m_File);
+  }
+
+  /**
+   * Returns the size of the file.
+   *
+   * @return		the number of bytes
+   */
+  @Override
+  public synchronized long size() {
+    open();
+    return m_Size;
+  }
+
+  /**
+   * Reads a range of the file.
+   *
+   * @param offset	the position of the first byte
+   * @param length	the maximum number of bytes
+   * @return		the bytes, shorter than requested at the end
+   */
+  @Override
+  public synchronized byte[] read(long offset, int length) {
+    byte[]	result;
+    ByteBuffer	region;
+    int		pos;
+    int		len;
+
+    if ((offset < 0) || (length < 0))
+      throw new IllegalArgumentException("Offset and length cannot be negative: " + offset + "/" + length);
+    open();
+    length = (int) Math.max(0, Math.min(length, m_Size - offset));
+    result = new byte[length];
+    pos    = 0;
+    while (pos < length) {
+      region = m_Regions[(int) ((offset + pos) / REGION_SIZE)].duplicate();
+      region.position((int) ((offset + pos) % REGION_SIZE));
+      len = Math.min(length - pos, region.remaining());
+      region.get(result, pos, len);
+      pos += len;
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns a read-only buffer over a range of the file. Ranges within a
+   * mapped region get returned as views on that region, others get mapped
+   * separately.
+   *
+   * @param offset	the position of the first byte
+   * @param length	the number of bytes, at most {@link Integer#MAX_VALUE}
+   * @return		the buffer
+   */
+  public synchronized ByteBuffer map(long offset, long length) {
+    ByteBuffer	result;
+    FileChannel	channel;
+    int		region;
+
+    open();
+    if ((offset < 0) || (length < 0) || (offset + length > m_Size) || (length > Integer.MAX_VALUE))
+      throw new IllegalArgumentException("Invalid range (size=" + m_Size + "): offset=" + offset + ", length=" + length);
+    if (length == 0)
+      return ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+    region = (int) (offset / REGION_SIZE);
+    if (region == (offset + length - 1) / REGION_SIZE) {
+      result = m_Regions[region].duplicate();
+      result.position((int) (offset % REGION_SIZE));
+      result.limit(result.position() + (int) length);
+      return result.slice();
+    }
+
+    try {
+      channel = new RandomAccessFile(m_File, "r").getChannel();
+      try {
+	return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+      }
+      finally {
+	channel.close();
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to map " + m_File, e);
+    }
+  }
+
+  /**
+   * Returns a stream reading directly from the file.
+   *
+   * @return		the stream
+   */
+  @Override
+  public synchronized InputStream getInputStream() {
+    if (m_File == null)
+      return new ByteArrayInputStream(new byte[0]);
+    try {
+      return new FileInputStream(m_File);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to open " + m_File, e);
+    }
+  }
+
+  /**
+   * Returns the content of the file. Only suitable for content that fits
+   * into an array, use {@link #getInputStream()}, {@link #read(long, int)}
+   * or {@link #map(long, long)} for huge outputs.
+   *
+   * @return		the content
+   * @throws IllegalStateException	if the content is too large
+   */
+  @Override
+  public synchronized byte[] getBytes() {
+    open();
+    if (m_Size > Integer.MAX_VALUE - 8)
+      throw new IllegalStateException("Content too large for an array (" + m_Size + " bytes), use streaming, ranged or mapped access instead!");
+    return read(0, (int) m_Size);
+  }
+
+  /**
+   * Returns the content of the file. Only suitable for content that fits
+   * into a string, use {@link #getInputStream()}, {@link #read(long, int)}
+   * or {@link #map(long, long)} for huge outputs.
+   *
+   * @return		the content
+   * @throws IllegalStateException	if the content is too large
+   */
+  @Override
+  public synchronized String getContent() {
+    return new String(getBytes(), getCharset());
+  }
+
+  /**
+   * Returns the line index, building it if necessary.
+   *
+   * @return		the index
+   */
+  @Override
+  public synchronized LineIndex getLineIndex() {
+    index();
+    return m_Index;
+  }
+
+  /**
+   * Returns the number of lines in the file.
+   *
+   * @return		the number of lines
+   */
+  @Override
+  public synchronized int getLineCount() {
+    index();
+    return m_Index.size();
+  }
+
+  /**
+   * Returns the specified line.
+   *
+   * @param index	the index of the line
+   * @return		the line, without terminator
+   */
+  @Override
+  public synchronized String getLine(int index) {
+    byte[]	data;
+    int		length;
+    long	start;
+
+    index();
+    start  = m_Index.getStart(index);
+    data   = read(start, (int) (m_Index.getEnd(index) - start));
+    length = data.length;
+    if ((length > 0) && (data[length - 1] == '\r'))
+      length--;
+    return new String(data, 0, length, getCharset());
+  }
+
+  /**
+   * Releases the mapped regions and, if owning it, deletes the file.
+   */
+  @Override
+  public synchronized void close() {
+    m_Regions = null;
+    m_Size    = 0;
+    m_Indexed = false;
+    m_Index.clear();
+    if (m_Owner && (m_File != null)) {
+      TempFiles.delete(m_File);
+      m_File = null;
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * OutputCursor.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+import java.io.Serializable;
+
+/**
+ * Retrieves the content of an {@link AbstractIndexedOutputStore}
+ * incrementally, each call to {@link #next()} only returning what got
+ * stored since the previous call. Useful for polling the output of long
+ * running processes without copying already seen output again.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class OutputCursor
+  implements Serializable {
+
+  /** for serialization. */
+  private static final long serialVersionUID = -2157349806621591406L;
+
+  /** the store to read from. */
+  protected AbstractIndexedOutputStore m_Store;
+
+  /** the current position in bytes. */
+  protected long m_Position;
+
+  /**
+   * Initializes the cursor, positioned at the start of the store.
+   *
+   * @param store	the store to read from
+   */
+  public OutputCursor(AbstractIndexedOutputStore store) {
+    this(store, 0);
+  }
+
+  /**
+   * Initializes the cursor.
+   *
+   * @param store	the store to read from
+   * @param position	the position in bytes, must be the start of a line
+   */
+  public OutputCursor(AbstractIndexedOutputStore store, long position) {
+    if (store == null)
+      throw new IllegalArgumentException("Store cannot be null!");
+    if (position < 0)
+      throw new IllegalArgumentException("Position cannot be negative: " + position);
+    m_Store    = store;
+    m_Position = position;
+  }
+
+  /**
+   * Returns the store this cursor reads from.
+   *
+   * @return		the store
+   */
+  public AbstractIndexedOutputStore getStore() {
+    return m_Store;
+  }
+
+  /**
+   * Returns the current position.
+   *
+   * @return		the position in bytes
+   */
+  public synchronized long getPosition() {
+    return m_Position;
+  }
+
+  /**
+   * Returns whether content got stored since the last call to {@link #next()}.
+   *
+   * @return		true if new content available
+   */
+  public synchronized boolean hasNext() {
+    return (m_Position < m_Store.size());
+  }
+
+  /**
+   * Returns the content stored since the last call and advances the cursor.
+   *
+   * @return		the new content, each line terminated by \n, empty if none
+   */
+  public synchronized String next() {
+    byte[]	data;
+
+    data        = m_Store.read(m_Position, (int) Math.min(Integer.MAX_VALUE - 8, m_Store.size() - m_Position));
+    m_Position += data.length;
+
+    return new String(data, m_Store.getCharset());
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SegmentedStore.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+/**
+ * Default store of {@link com.github.fracpete.processoutput4j.output.CollectingProcessOutput}.
+ * A {@link ByteChunkStore} whose segment (chunk) size is a power of 2,
+ * which can be read safely while the process is still being read from
+ * (see {@link #getContent(long)} and {@link #newCursor()}).
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class SegmentedStore
+  extends ByteChunkStore {
+
+  /** for serialization. */
+  private static final long serialVersionUID = -8624009358372318214L;
+
+  /** the default number of bits for the segment size (64KB). */
+  public static final int DEFAULT_SEGMENT_BITS = 16;
+
+  /** the number of bits for the segment size. */
+  protected int m_SegmentBits;
+
+  /**
+   * Initializes the store with the default segment size.
+   */
+  public SegmentedStore() {
+    this(DEFAULT_SEGMENT_BITS);
+  }
+
+  /**
+   * Initializes the store.
+   *
+   * @param segmentBits	the segment size as power of 2 (e.g., 16 for 64KB)
+   */
+  public SegmentedStore(int segmentBits) {
+    super(segmentSize(segmentBits));
+    m_SegmentBits = segmentBits;
+  }
+
+  /**
+   * Returns the segment size for the number of bits.
+   *
+   * @param segmentBits	the segment size as power of 2
+   * @return		the size in bytes
+   */
+  protected static int segmentSize(int segmentBits) {
+    if ((segmentBits < 4) || (segmentBits > 30))
+      throw new IllegalArgumentException("Segment bits must be in [4,30]: " + segmentBits);
+    return 1 << segmentBits;
+  }
+
+  /**
+   * Returns the segment size.
+   *
+   * @return		the size in bytes
+   */
+  public int getSegmentSize() {
+    return m_ChunkSize;
+  }
+}
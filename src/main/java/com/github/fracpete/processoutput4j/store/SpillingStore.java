@@ -0,0 +1,398 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SpillingStore.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+import com.github.fracpete.processoutput4j.core.TempFiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Keeps the lines in memory until a size threshold is crossed, then
+ * moves them to an append-only temporary file. Rather than materializing
+ * huge outputs via {@link #getContent()}, the content can be read as
+ * stream ({@link #getInputStream()}), in ranges ({@link #read(long, int)})
+ * or memory-mapped ({@link #map(long, long)}).
+ * <br>
+ * The temporary file gets deleted by {@link #close()}, or at the latest
+ * when the JVM exits (see {@link TempFiles}).
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class SpillingStore
+  extends AbstractIndexedOutputStore {
+
+  /** for serialization. */
+  private static final long serialVersionUID = 2718840326094637419L;
+
+  /** the default threshold in bytes (64MB). */
+  public static final long DEFAULT_THRESHOLD = 64L * 1024 * 1024;
+
+  /** the size of the write buffer once spilled. */
+  public static final int WRITE_BUFFER_SIZE = 65536;
+
+  /** the threshold in bytes. */
+  protected long m_Threshold;
+
+  /** the directory for the temporary file, null for the system default. */
+  protected File m_Directory;
+
+  /** the content while in memory, the write buffer once spilled. */
+  protected byte[] m_Buffer;
+
+  /** the number of bytes in the buffer. */
+  protected int m_BufferLength;
+
+  /** the total number of bytes. */
+  protected long m_Size;
+
+  /** the temporary file, null if not spilled. */
+  protected File m_File;
+
+  /** the channel of the temporary file. */
+  protected transient FileChannel m_Channel;
+
+  /**
+   * Initializes the store with the default threshold and the system's
+   * temp directory.
+   */
+  public SpillingStore() {
+    this(DEFAULT_THRESHOLD, null);
+  }
+
+  /**
+   * Initializes the store.
+   *
+   * @param threshold	the number of bytes to keep in memory
+   * @param directory	the directory for the temporary file, null for the
+   * 			system's temp directory
+   */
+  public SpillingStore(long threshold, File directory) {
+    super();
+    if (threshold < 0)
+      throw new IllegalArgumentException("Threshold cannot be negative: " + threshold);
+    m_Threshold    = threshold;
+    m_Directory    = directory;
+    m_Buffer       = new byte[(int) Math.min(threshold, 8192)];
+    m_BufferLength = 0;
+    m_Size         = 0;
+    m_File         = null;
+    m_Channel      = null;
+  }
+
+  /**
+   * Returns the threshold.
+   *
+   * @return		the number of bytes to keep in memory
+   */
+  public long getThreshold() {
+    return m_Threshold;
+  }
+
+  /**
+   * Returns whether the content has been moved to disk.
+   *
+   * @return		true if spilled
+   */
+  public synchronized boolean isSpilled() {
+    return (m_File != null);
+  }
+
+  /**
+   * Returns the temporary file.
+   *
+   * @return		the file, null if not spilled (yet)
+   */
+  public synchronized File getFile() {
+    return m_File;
+  }
+
+  /**
+   * Returns the number of bytes stored.
+   *
+   * @return		the number of bytes (incl line terminators)
+   */
+  @Override
+  public synchronized long size() {
+    return m_Size;
+  }
+
+  /**
+   * Moves the content from memory into the temporary file.
+   *
+   * @throws IOException	if creating or writing the file fails
+   */
+  protected void spill() throws IOException {
+    m_File = TempFiles.create(".out", m_Directory);
+    m_Channel = new RandomAccessFile(m_File, "rw").getChannel();
+    flush();
+    if (m_Buffer.length < WRITE_BUFFER_SIZE)
+      m_Buffer = new byte[WRITE_BUFFER_SIZE];
+  }
+
+  /**
+   * Writes the buffered bytes to the temporary file.
+   *
+   * @throws IOException	if writing fails
+   */
+  protected void flush() throws IOException {
+    write(m_Buffer, 0, m_BufferLength);
+    m_BufferLength = 0;
+  }
+
+  /**
+   * Writes the bytes to the end of the temporary file.
+   *
+   * @param data	the buffer with the data
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   * @throws IOException	if writing fails
+   */
+  protected void write(byte[] data, int offset, int length) throws IOException {
+    ByteBuffer	buffer;
+
+    buffer = ByteBuffer.wrap(data, offset, length);
+    while (buffer.hasRemaining())
+      m_Channel.write(buffer);
+  }
+
+  /**
+   * Adds the bytes to the buffer, growing it while in memory and flushing
+   * it once spilled.
+   *
+   * @param data	the buffer with the data
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   * @throws IOException	if writing fails
+   */
+  protected void add(byte[] data, int offset, int length) throws IOException {
+    if (m_File == null) {
+      if (m_BufferLength + length > m_Buffer.length)
+	m_Buffer = Arrays.copyOf(m_Buffer, (int) Math.min(m_Threshold, Math.max(m_Buffer.length * 2L, m_BufferLength + length)));
+    }
+    else if (m_BufferLength + length > m_Buffer.length) {
+      flush();
+      if (length > m_Buffer.length) {
+	write(data, offset, length);
+	return;
+      }
+    }
+    System.arraycopy(data, offset, m_Buffer, m_BufferLength, length);
+    m_BufferLength += length;
+  }
+
+  /**
+   * Appends the raw bytes of a line.
+   *
+   * @param data	the buffer with the line (without terminator)
+   * @param offset	the offset in the buffer
+   * @param length	the number of bytes
+   */
+  @Override
+  public synchronized void append(byte[] data, int offset, int length) {
+    try {
+      if ((m_File == null) && (m_Size + length + 1 > m_Threshold))
+	spill();
+      add(data, offset, length);
+      add(NEWLINE, 0, 1);
+      m_Size += length + 1;
+      m_Index.add(m_Size);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to write to " + m_File, e);
+    }
+  }
+
+  /**
+   * Appends the line.
+   *
+   * @param line	the line (without terminator)
+   */
+  @Override
+  public void append(String line) {
+    byte[]	data;
+
+    data = line.getBytes(getCharset());
+    append(data, 0, data.length);
+  }
+
+  /**
+   * Makes sure that all bytes are in the temporary file, if spilled.
+   */
+  protected void sync() {
+    if ((m_File == null) || (m_BufferLength == 0))
+      return;
+    try {
+      flush();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to write to " + m_File, e);
+    }
+  }
+
+  /**
+   * Reads a range of the stored bytes.
+   *
+   * @param offset	the position of the first byte
+   * @param length	the maximum number of bytes
+   * @return		the bytes, shorter than requested at the end
+   */
+  @Override
+  public synchronized byte[] read(long offset, int length) {
+    byte[]	result;
+    ByteBuffer	buffer;
+    int		read;
+
+    if ((offset < 0) || (length < 0))
+      throw new IllegalArgumentException("Offset and length cannot be negative: " + offset + "/" + length);
+    length = (int) Math.max(0, Math.min(length, m_Size - offset));
+    if (m_File == null)
+      return Arrays.copyOfRange(m_Buffer, (int) offset, (int) offset + length);
+
+    sync();
+    result = new byte[length];
+    buffer = ByteBuffer.wrap(result);
+    try {
+      while (buffer.hasRemaining()) {
+	read = m_Channel.read(buffer, offset + buffer.position());
+	if (read == -1)
+	  break;
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to read from " + m_File, e);
+    }
+
+    return result;
+  }
+
+  /**
+   * Maps a range of the stored bytes into memory, read-only. The range
+   * must be within the bytes stored at the time of the call.
+   *
+   * @param offset	the position of the first byte
+   * @param length	the number of bytes, at most {@link Integer#MAX_VALUE}
+   * @return		the buffer, a plain heap buffer if not spilled
+   */
+  public synchronized ByteBuffer map(long offset, long length) {
+    MappedByteBuffer	result;
+
+    if ((offset < 0) || (length < 0) || (offset + length > m_Size) || (length > Integer.MAX_VALUE))
+      throw new IllegalArgumentException("Invalid range (size=" + m_Size + "): offset=" + offset + ", length=" + length);
+    if (m_File == null)
+      return ByteBuffer.wrap(Arrays.copyOfRange(m_Buffer, (int) offset, (int) (offset + length))).asReadOnlyBuffer();
+
+    sync();
+    try {
+      result = m_Channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to map " + m_File, e);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns a stream over the stored bytes. Once spilled, the stream reads
+   * directly from the temporary file.
+   *
+   * @return		the stream
+   */
+  @Override
+  public synchronized InputStream getInputStream() {
+    if (m_File == null)
+      return new ByteArrayInputStream(Arrays.copyOf(m_Buffer, m_BufferLength));
+
+    sync();
+    try {
+      return new FileInputStream(m_File);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to open " + m_File, e);
+    }
+  }
+
+  /**
+   * Returns the stored bytes. Only suitable for content that fits into
+   * an array, use {@link #getInputStream()}, {@link #read(long, int)} or
+   * {@link #map(long, long)} for huge outputs.
+   *
+   * @return		the content, each line terminated by \n
+   * @throws IllegalStateException	if the content is too large
+   */
+  @Override
+  public synchronized byte[] getBytes() {
+    if (m_Size > Integer.MAX_VALUE - 8)
+      throw new IllegalStateException("Content too large for an array (" + m_Size + " bytes), use streaming, ranged or mapped access instead!");
+    return read(0, (int) m_Size);
+  }
+
+  /**
+   * Returns the stored content. Only suitable for content that fits into
+   * a string, use {@link #getInputStream()}, {@link #read(long, int)} or
+   * {@link #map(long, long)} for huge outputs.
+   *
+   * @return		the content, each line terminated by \n
+   * @throws IllegalStateException	if the content is too large
+   */
+  @Override
+  public synchronized String getContent() {
+    if (m_File == null)
+      return new String(m_Buffer, 0, m_BufferLength, getCharset());
+    else
+      return new String(getBytes(), getCharset());
+  }
+
+  /**
+   * Closes and deletes the temporary file, discarding all content.
+   */
+  @Override
+  public synchronized void close() {
+    if (m_Channel != null) {
+      try {
+	m_Channel.close();
+      }
+      catch (IOException e) {
+	// ignored
+      }
+      m_Channel = null;
+    }
+    if (m_File != null) {
+      if (!TempFiles.delete(m_File))
+	System.err.println("Failed to delete temporary file, deleting on exit: " + m_File);
+      m_File = null;
+    }
+    m_Buffer       = new byte[0];
+    m_BufferLength = 0;
+    m_Size         = 0;
+    m_Index.clear();
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TestProcesses.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j;
+
+import org.junit.Assume;
+
+import java.io.File;
+
+/**
+ * Helper methods for tests that launch processes.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public final class TestProcesses {
+
+  /** the shell to use. */
+  public static final String SHELL = "/bin/sh";
+
+  /**
+   * Not to be instantiated.
+   */
+  private TestProcesses() {
+  }
+
+  /**
+   * Skips the test if no POSIX shell is available.
+   */
+  public static void assumeShell() {
+    Assume.assumeTrue("Requires " + SHELL, new File(SHELL).canExecute());
+  }
+
+  /**
+   * Returns a builder for running the script with the shell.
+   *
+   * @param script	the script to run
+   * @return		the builder
+   */
+  public static ProcessBuilder sh(String script) {
+    return new ProcessBuilder(SHELL, "-c", script);
+  }
+
+  /**
+   * Returns the lines 1 to n, each terminated by \n.
+   *
+   * @param n		the number of lines
+   * @return		the lines
+   */
+  public static String numbers(int n) {
+    StringBuilder	result;
+    int			i;
+
+    result = new StringBuilder();
+    for (i = 1; i <= n; i++)
+      result.append(i).append('\n');
+
+    return result.toString();
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * LineSplitterBenchmark.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.benchmark;
+
+import com.github.fracpete.processoutput4j.reader.AbstractProcessReader;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares the throughput of splitting lines via {@link BufferedReader}
+ * (the approach used before the byte-level splitter) with the byte-level
+ * splitter of {@link AbstractProcessReader}, both decoding every line and
+ * skipping the decoding. The data is generated in memory, hence only the
+ * splitting and decoding gets measured, not the pipe.
+ * <br>
+ * Run with:
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes com.github.fracpete.processoutput4j.benchmark.LineSplitterBenchmark [lines] [runs] [variant]
+ * </pre>
+ * Variant is one of 0 (BufferedReader), 1 (bytes/decode) or 2 (bytes/raw),
+ * all if omitted. As the variants share the splitter's call sites, running
+ * each one in a fresh JVM gives more reliable numbers.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class LineSplitterBenchmark {
+
+  /** the default number of lines to generate. */
+  public static final int DEFAULT_LINES = 3000000;
+
+  /** the default number of measured runs (after as many warm-up runs). */
+  public static final int DEFAULT_RUNS = 5;
+
+  /**
+   * Byte-level splitter that decodes every line.
+   */
+  public static class DecodingReader
+    extends AbstractProcessReader {
+
+    /** the total number of characters, to keep the work alive. */
+    public long chars;
+
+    /**
+     * Initializes the reader.
+     */
+    public DecodingReader() {
+      super(null, true);
+      setCharset(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Counts the characters.
+     *
+     * @param line	the output line
+     */
+    @Override
+    protected void process(String line) {
+      chars += line.length();
+    }
+  }
+
+  /**
+   * Byte-level splitter that skips decoding.
+   */
+  public static class RawReader
+    extends DecodingReader {
+
+    /**
+     * Counts the bytes.
+     *
+     * @param data	the buffer with the line
+     * @param offset	the offset in the buffer
+     * @param length	the number of bytes
+     */
+    @Override
+    protected void process(byte[] data, int offset, int length) {
+      chars += length;
+    }
+  }
+
+  /**
+   * Generates log-like lines.
+   *
+   * @param lines	the number of lines
+   * @return		the data
+   */
+  public static byte[] generate(int lines) {
+    ByteArrayOutputStream	result;
+    StringBuilder		line;
+    int				i;
+
+    result = new ByteArrayOutputStream();
+    line   = new StringBuilder();
+    for (i = 0; i < lines; i++) {
+      line.setLength(0);
+      line.append("2017-06-01 12:34:56,").append(i % 1000).append(" INFO  [worker-").append(i % 16).append("] ");
+      line.append("processed record #").append(i).append(" in ").append(i % 97).append("ms, status=OK");
+      line.append('\n');
+      result.write(line.toString().getBytes(StandardCharsets.UTF_8), 0, line.length());
+    }
+
+    return result.toByteArray();
+  }
+
+  /**
+   * Splits the lines via {@link BufferedReader}.
+   *
+   * @param data	the data to split
+   * @return		the number of characters
+   * @throws IOException	never
+   */
+  public static long splitBufferedReader(byte[] data) throws IOException {
+    BufferedReader	reader;
+    String		line;
+    long		result;
+
+    result = 0;
+    reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8), 1024);
+    while ((line = reader.readLine()) != null)
+      result += line.length();
+
+    return result;
+  }
+
+  /**
+   * Splits the lines via the byte-level splitter, reading chunks of the
+   * default buffer size.
+   *
+   * @param data	the data to split
+   * @param reader	the reader to use
+   * @return		the number of characters (or bytes)
+   * @throws IOException	never
+   */
+  public static long splitBytes(byte[] data, DecodingReader reader) throws IOException {
+    InputStream	stream;
+    byte[]	buffer;
+    int		read;
+
+    stream = new ByteArrayInputStream(data);
+    buffer = new byte[reader.getBufferSize()];
+    while ((read = stream.read(buffer)) != -1)
+      reader.feed(buffer, 0, read);
+    reader.finish();
+
+    return reader.chars;
+  }
+
+  /**
+   * Runs the specified variant and returns the best throughput.
+   *
+   * @param variant	the variant (0 = BufferedReader, 1 = bytes/decode, 2 = bytes/raw)
+   * @param data	the data to split
+   * @param runs	the number of measured runs
+   * @return		the throughput in MB/s
+   * @throws IOException	never
+   */
+  public static double run(int variant, byte[] data, int runs) throws IOException {
+    double	best;
+    long	start;
+    long	check;
+    int		i;
+
+    best  = 0;
+    check = 0;
+    for (i = 0; i < runs * 2; i++) {
+      start = System.nanoTime();
+      switch (variant) {
+	case 0:
+	  check += splitBufferedReader(data);
+	  break;
+	case 1:
+	  check += splitBytes(data, new DecodingReader());
+	  break;
+	default:
+	  check += splitBytes(data, new RawReader());
+	  break;
+      }
+      // first half is warm-up
+      if (i >= runs)
+	best = Math.max(best, data.length / 1024.0 / 1024.0 / ((System.nanoTime() - start) / 1e9));
+    }
+    if (check == 0)
+      System.err.println("No data processed!");
+
+    return best;
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args	optional: number of lines, number of runs, variant
+   * @throws Exception	never
+   */
+  public static void main(String[] args) throws Exception {
+    String[]	labels;
+    byte[]	data;
+    int		lines;
+    int		runs;
+    int		variant;
+    int		i;
+
+    labels  = new String[]{"BufferedReader", "byte splitter, decode", "byte splitter, raw"};
+    lines   = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_LINES;
+    runs    = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+    variant = (args.length > 2) ? Integer.parseInt(args[2]) : -1;
+    data    = generate(lines);
+    System.out.println("Java " + System.getProperty("java.version") + ", " + lines + " lines, " + (data.length / 1024 / 1024) + "MB, best of " + runs + " runs:");
+    for (i = 0; i < labels.length; i++) {
+      if ((variant == -1) || (variant == i))
+	System.out.printf("%-22s %8.1f MB/s%n", labels[i] + ":", run(i, data, runs));
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CoarseClockTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import com.github.fracpete.processoutput4j.TestProcesses;
+import com.github.fracpete.processoutput4j.output.CollectingProcessOutput;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link CoarseClock} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class CoarseClockTest {
+
+  @Test
+  public void testSnap() {
+    assertEquals(1, CoarseClock.snap(1));
+    assertEquals(5, CoarseClock.snap(7));
+    assertEquals(10, CoarseClock.snap(10));
+    assertEquals(1000, CoarseClock.snap(5000));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidPrecision() {
+    CoarseClock.snap(0);
+  }
+
+  @Test(timeout = 30000)
+  public void testNow() throws Exception {
+    CoarseClock	clock;
+    long	start;
+
+    clock = new CoarseClock(5);
+    try {
+      start = clock.now();
+      assertTrue(Math.abs(System.currentTimeMillis() - start) < 1000);
+      while (clock.now() == start)
+	Thread.sleep(1);
+    }
+    finally {
+      clock.stop();
+    }
+    assertFalse(clock.isRunning());
+  }
+
+  @Test
+  public void testReferenceCounting() {
+    CoarseClock	first;
+    CoarseClock	second;
+
+    first  = CoarseClock.acquire(500);
+    second = CoarseClock.acquire(700);
+    assertSame(first, second);
+    assertEquals(500, first.getPrecision());
+    assertEquals(2, first.getNumUsers());
+    first.release();
+    assertTrue(first.isRunning());
+    second.release();
+    assertFalse(first.isRunning());
+    assertEquals(0, first.getNumUsers());
+
+    second = CoarseClock.acquire(500);
+    assertNotSame(first, second);
+    assertTrue(second.isRunning());
+    second.release();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testReleaseTwice() {
+    CoarseClock	clock;
+
+    clock = CoarseClock.acquire(200);
+    clock.release();
+    clock.release();
+  }
+
+  @Test(timeout = 30000)
+  public void testOutputReleasesClock() throws Exception {
+    CollectingProcessOutput	output;
+    CoarseClock			clock;
+
+    TestProcesses.assumeShell();
+    output = new CollectingProcessOutput();
+    output.setTimestampMode(TimestampMode.COARSE);
+    output.setTimestampPrecision(100);
+    output.monitor(TestProcesses.sh("echo a; echo b >&2"));
+    assertEquals("a\n", output.getStdOut());
+
+    clock = CoarseClock.acquire(100);
+    try {
+      assertEquals(1, clock.getNumUsers());
+    }
+    finally {
+      clock.release();
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ConsoleSinkTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link ConsoleSink} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class ConsoleSinkTest {
+
+  /**
+   * Enqueues the line.
+   *
+   * @param sink	the sink to use
+   * @param source	the source of the line
+   * @param line	the line
+   */
+  protected void enqueue(ConsoleSink sink, ConsoleSink.Source source, String line) {
+    byte[]	data;
+
+    data = line.getBytes();
+    sink.enqueue(source, data, 0, data.length);
+  }
+
+  /**
+   * Enqueues 1000 numbered lines for stdout and one for stderr.
+   *
+   * @param sink	the sink to use
+   * @param out		the source for stdout
+   * @param err		the source for stderr
+   * @param producer	the number of the producer
+   */
+  protected void produce(ConsoleSink sink, ConsoleSink.Source out, ConsoleSink.Source err, int producer) {
+    int		i;
+
+    for (i = 0; i < 1000; i++)
+      enqueue(sink, out, producer + ":" + i);
+    enqueue(sink, err, "" + producer);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCapacity() {
+    new ConsoleSink(0, 10);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidFlushInterval() {
+    new ConsoleSink(10, 0);
+  }
+
+  @Test
+  public void testRender() {
+    ConsoleSink	sink;
+    byte[]	line;
+
+    sink = new ConsoleSink(10, 10);
+    line = "xabcx".getBytes();
+    assertEquals("abc\n", new String(sink.render(new ConsoleSink.Source(true, -1, -1, null), 0, line, 1, 3)));
+    assertEquals("[OUT] abc\n", new String(sink.render(new ConsoleSink.Source(true, -1, -1, "[OUT] "), 0, line, 1, 3)));
+    assertEquals("[123] abc\n", new String(sink.render(new ConsoleSink.Source(true, 123, -1, null), 0, line, 1, 3)));
+    assertEquals("[+0.005s] abc\n", new String(sink.render(new ConsoleSink.Source(true, -1, 1000, null), 1005, line, 1, 3)));
+    assertEquals("[42 +61.024s] E: abc\n", new String(sink.render(new ConsoleSink.Source(false, 42, 1000, "E: "), 62024, line, 1, 3)));
+  }
+
+  @Test(timeout = 30000)
+  public void testWritesAllLines() throws Exception {
+    final ConsoleSink		sink;
+    final ConsoleSink.Source	out;
+    final ConsoleSink.Source	err;
+    ByteArrayOutputStream	stdout;
+    ByteArrayOutputStream	stderr;
+    PrintStream			origOut;
+    PrintStream			origErr;
+    List<Thread>		threads;
+    Thread			thread;
+    String[]			lines;
+    int[]			next;
+    int				t;
+    int				n;
+    int				i;
+
+    stdout  = new ByteArrayOutputStream();
+    stderr  = new ByteArrayOutputStream();
+    origOut = System.out;
+    origErr = System.err;
+    System.setOut(new PrintStream(stdout, true));
+    System.setErr(new PrintStream(stderr, true));
+    try {
+      // small capacity, so the producers have to wait for the writer
+      sink    = new ConsoleSink(8, 5);
+      out     = new ConsoleSink.Source(true, -1, -1, null);
+      err     = new ConsoleSink.Source(false, -1, -1, "E");
+      threads = new ArrayList<>();
+      for (t = 0; t < 4; t++) {
+	final int producer = t;
+	thread = new Thread(() -> produce(sink, out, err, producer));
+	threads.add(thread);
+	thread.start();
+      }
+      for (i = 0; i < threads.size(); i++)
+	threads.get(i).join();
+      sink.flush();
+    }
+    finally {
+      System.setOut(origOut);
+      System.setErr(origErr);
+    }
+
+    // all lines present, in order per producer
+    lines = stdout.toString().split("\n");
+    assertEquals(4000, lines.length);
+    next = new int[4];
+    for (i = 0; i < lines.length; i++) {
+      t = Integer.parseInt(lines[i].substring(0, 1));
+      n = Integer.parseInt(lines[i].substring(2));
+      assertEquals(lines[i], next[t], n);
+      next[t]++;
+    }
+    assertEquals(12, stderr.size());
+    for (t = 0; t < 4; t++)
+      assertTrue(stderr.toString().contains("E" + t + "\n"));
+  }
+}
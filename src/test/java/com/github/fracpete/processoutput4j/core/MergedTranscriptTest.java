@@ -0,0 +1,166 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MergedTranscriptTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import com.github.fracpete.processoutput4j.TestProcesses;
+import com.github.fracpete.processoutput4j.output.CollectingProcessOutput;
+import com.github.fracpete.processoutput4j.output.StreamingProcessOutput;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link MergedTranscript} class and the sequence numbers of the
+ * lines of stdout and stderr.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class MergedTranscriptTest {
+
+  /**
+   * Owner that records the sequenced lines.
+   */
+  public static class SequencedOwner
+    implements SequencedStreamingProcessOwner {
+
+    /** the sequence numbers. */
+    public List<Long> sequences = new ArrayList<>();
+
+    /** the lines, prefixed with the stream. */
+    public List<String> lines = new ArrayList<>();
+
+    @Override
+    public void processSequencedOutput(long sequence, String line, boolean stdout) {
+      sequences.add(sequence);
+      lines.add((stdout ? "out:" : "err:") + line);
+    }
+
+    @Override
+    public StreamingProcessOutputType getOutputType() {
+      return StreamingProcessOutputType.BOTH;
+    }
+
+    @Override
+    public void processOutput(String line, boolean stdout) {
+      throw new IllegalStateException("Expected sequenced lines only!");
+    }
+  }
+
+  @Test
+  public void testAppend() {
+    MergedTranscript	transcript;
+
+    transcript = new MergedTranscript();
+    assertEquals(0, transcript.append("o1", true, 10));
+    assertEquals(1, transcript.append("e1", false, 11));
+    assertEquals(2, transcript.append("", true));
+    assertEquals(3, transcript.append("o3", true, 13));
+    assertEquals(4, transcript.size());
+    assertEquals(3, transcript.size(true));
+    assertEquals(1, transcript.size(false));
+    assertEquals("o1\ne1\n\no3\n", transcript.getText());
+    assertEquals("o1\n\no3\n", transcript.getText(true));
+    assertEquals("e1\n", transcript.getText(false));
+    assertEquals("e1", transcript.getLine(1));
+    assertEquals("o3", transcript.getLine(3));
+    assertTrue(transcript.isStdOut(0));
+    assertFalse(transcript.isStdOut(1));
+    assertEquals(11, transcript.getTimestamp(1));
+    assertEquals(0, transcript.getTimestamp(2));
+    assertEquals(3, transcript.indexOf(2, true));
+    assertEquals(1, transcript.indexOf(0, false));
+    assertEquals(Arrays.asList("", "o3"), transcript.getLines(1, 3, true));
+  }
+
+  @Test
+  public void testGrowth() {
+    MergedTranscript	transcript;
+    int			i;
+
+    transcript = new MergedTranscript();
+    for (i = 0; i < 1000; i++)
+      transcript.append("" + i, i % 3 != 0, i);
+    assertEquals(1000, transcript.size());
+    assertEquals(334, transcript.size(false));
+    assertEquals(666, transcript.size(true));
+    assertEquals("999", transcript.getLine(999));
+    assertEquals(999, transcript.getTimestamp(999));
+    assertEquals(999, transcript.indexOf(333, false));
+    assertEquals(998, transcript.indexOf(665, true));
+    assertEquals(Arrays.asList("996", "999"), transcript.getLines(332, 334, false));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testInvalidIndex() {
+    MergedTranscript	transcript;
+
+    transcript = new MergedTranscript();
+    transcript.append("a", true);
+    transcript.indexOf(0, false);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testInvalidRange() {
+    MergedTranscript	transcript;
+
+    transcript = new MergedTranscript();
+    transcript.append("a", true);
+    transcript.getLines(0, 2, true);
+  }
+
+  @Test(timeout = 30000)
+  public void testMergeStreams() throws Exception {
+    CollectingProcessOutput	output;
+    MergedTranscript		transcript;
+
+    TestProcesses.assumeShell();
+    output = new CollectingProcessOutput();
+    output.setMergeStreams(true);
+    output.setTimestampMode(TimestampMode.CHUNK);
+    output.monitor(TestProcesses.sh("echo o1; sleep 0.2; echo e1 1>&2; sleep 0.2; echo o2"));
+    transcript = output.getTranscript();
+    assertEquals("o1\ne1\no2\n", transcript.getText());
+    assertEquals(Arrays.asList("o1", "o2"), transcript.getLines(0, 2, true));
+    assertTrue(transcript.getTimestamp(0) > 0);
+    assertTrue(transcript.getTimestamp(2) >= transcript.getTimestamp(0));
+  }
+
+  @Test(timeout = 30000)
+  public void testSequencedOwner() throws Exception {
+    SequencedOwner	owner;
+    int			i;
+
+    TestProcesses.assumeShell();
+    owner = new SequencedOwner();
+    new StreamingProcessOutput(owner).monitor(TestProcesses.sh("for i in $(seq 1 200); do echo o$i; echo e$i 1>&2; done"));
+    assertEquals(400, owner.sequences.size());
+    // numbered without gaps across both streams, in delivery order
+    for (i = 0; i < owner.sequences.size(); i++)
+      assertEquals(i, (long) owner.sequences.get(i));
+    assertEquals(200, owner.lines.stream().filter((l) -> l.startsWith("out:")).count());
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ProcessPipelineTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import com.github.fracpete.processoutput4j.TestProcesses;
+import com.github.fracpete.processoutput4j.output.CollectingProcessOutput;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.lang.ProcessBuilder.Redirect;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link ProcessPipeline} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class ProcessPipelineTest {
+
+  @Before
+  public void setUp() {
+    TestProcesses.assumeShell();
+  }
+
+  /**
+   * Returns the builders for a pipeline counting the numbers containing a 7.
+   *
+   * @return		the builders
+   */
+  protected List<ProcessBuilder> builders() {
+    return Arrays.asList(
+      TestProcesses.sh("seq 1 100000"),
+      TestProcesses.sh("grep 7"),
+      TestProcesses.sh("wc -l | tr -d ' '"));
+  }
+
+  /**
+   * Reads stdout of the last stage and waits for all stages to finish.
+   *
+   * @param pipeline	the pipeline
+   * @return		the output of the last stage
+   * @throws Exception	if reading or waiting fails
+   */
+  protected String finish(ProcessPipeline pipeline) throws Exception {
+    ByteArrayOutputStream	result;
+    InputStream			stream;
+    byte[]			buffer;
+    int				read;
+
+    result = new ByteArrayOutputStream();
+    stream = pipeline.getLast().getInputStream();
+    buffer = new byte[1024];
+    while ((read = stream.read(buffer)) != -1)
+      result.write(buffer, 0, read);
+    for (Process process: pipeline.getProcesses())
+      assertTrue(process.waitFor(10, TimeUnit.SECONDS));
+    pipeline.getPumps().get(10, TimeUnit.SECONDS);
+
+    return result.toString();
+  }
+
+  @Test(timeout = 30000)
+  public void testStart() throws Exception {
+    ProcessPipeline	pipeline;
+
+    pipeline = ProcessPipeline.start(builders(), ReaderExecutors.getDefault());
+    assertEquals(ProcessPipeline.isNativeAvailable(), pipeline.isNative());
+    assertEquals(3, pipeline.getProcesses().size());
+    assertEquals("40951\n", finish(pipeline));
+  }
+
+  @Test(timeout = 30000)
+  public void testPumped() throws Exception {
+    ProcessPipeline	pipeline;
+
+    pipeline = ProcessPipeline.startPumped(builders(), ReaderExecutors.getDefault());
+    assertFalse(pipeline.isNative());
+    assertEquals("40951\n", finish(pipeline));
+  }
+
+  @Test(timeout = 30000)
+  public void testPumpedEarlyExit() throws Exception {
+    ProcessPipeline	pipeline;
+
+    // the first stage only finishes once the pump notices the broken pipe
+    pipeline = ProcessPipeline.startPumped(
+      Arrays.asList(TestProcesses.sh("seq 1 10000000"), TestProcesses.sh("head -n 2")),
+      ReaderExecutors.getDefault());
+    assertEquals("1\n2\n", finish(pipeline));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoStages() throws Exception {
+    ProcessPipeline.start(new ArrayList<>(), ReaderExecutors.getDefault());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRedirectedStage() throws Exception {
+    List<ProcessBuilder>	builders;
+
+    builders = builders();
+    builders.get(0).redirectOutput(Redirect.to(new File("/dev/null")));
+    ProcessPipeline.startPumped(builders, ReaderExecutors.getDefault());
+  }
+
+  @Test(timeout = 30000)
+  public void testMonitorPipeline() throws Exception {
+    CollectingProcessOutput	output;
+
+    output = new CollectingProcessOutput();
+    output.monitorPipeline("b\na\nc\n", Arrays.asList(
+      TestProcesses.sh("sort; echo e1 >&2"),
+      TestProcesses.sh("tr a-z A-Z; exit 4")));
+    assertEquals("A\nB\nC\n", output.getStdOut());
+    assertEquals("e1\n", output.getStdErr());
+    assertArrayEquals(new int[]{0, 4}, output.getExitCodes());
+    assertEquals(4, output.getExitCode());
+  }
+}
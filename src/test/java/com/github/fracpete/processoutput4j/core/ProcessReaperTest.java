@@ -0,0 +1,91 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ProcessReaperTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import com.github.fracpete.processoutput4j.TestProcesses;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link ProcessReaper} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class ProcessReaperTest {
+
+  @Before
+  public void setUp() {
+    TestProcesses.assumeShell();
+  }
+
+  /**
+   * Starts processes with different exit codes and checks the notifications.
+   *
+   * @param reaper	the reaper to use
+   * @throws Exception	if starting the processes fails
+   */
+  protected void check(ProcessReaper reaper) throws Exception {
+    List<CompletableFuture<ProcessExit>>	futures;
+    ProcessExit					exit;
+    long					start;
+    int						i;
+
+    start   = System.currentTimeMillis();
+    futures = new ArrayList<>();
+    for (i = 0; i < 50; i++)
+      futures.add(reaper.register(TestProcesses.sh("sleep 0." + (i % 3) + "; exit " + (i % 5)).start()));
+    for (i = 0; i < 50; i++) {
+      exit = futures.get(i).get(10, TimeUnit.SECONDS);
+      assertEquals(i % 5, exit.getExitCode());
+      assertTrue(exit.getTimestamp() >= start);
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testDefault() throws Exception {
+    check(ProcessReaper.getDefault());
+  }
+
+  @Test(timeout = 30000)
+  public void testPolling() throws Exception {
+    ProcessReaper	reaper;
+
+    reaper = new ProcessReaper(5);
+    reaper.m_OnExit = null;
+    assertTrue(reaper.isPolling());
+    check(reaper);
+    // idle reaper picks up new processes again
+    check(reaper);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidInterval() {
+    new ProcessReaper(0);
+  }
+}
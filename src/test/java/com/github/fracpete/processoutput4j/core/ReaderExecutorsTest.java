@@ -0,0 +1,90 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ReaderExecutorsTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link ReaderExecutors} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class ReaderExecutorsTest {
+
+  /**
+   * Returns the major version of the JVM.
+   *
+   * @return		the version, e.g., 8 or 21
+   */
+  protected int javaVersion() {
+    String	version;
+
+    version = System.getProperty("java.specification.version");
+    if (version.startsWith("1."))
+      version = version.substring(2);
+    return Integer.parseInt(version);
+  }
+
+  @Test(timeout = 30000)
+  public void testVirtualAvailable() {
+    // Java 19/20 depend on whether preview features are enabled
+    if (javaVersion() < 19)
+      assertFalse(ReaderExecutors.isVirtualAvailable());
+    else if (javaVersion() >= 21)
+      assertTrue(ReaderExecutors.isVirtualAvailable());
+  }
+
+  @Test(timeout = 30000)
+  public void testVirtualFallsBack() throws Exception {
+    ExecutorService	executor;
+
+    executor = ReaderExecutors.getDefault(ReaderThreadMode.VIRTUAL);
+    if (!ReaderExecutors.isVirtualAvailable())
+      assertTrue(executor == ReaderExecutors.getDefault());
+    assertEquals("done", executor.submit(() -> "done").get(10, TimeUnit.SECONDS));
+  }
+
+  @Test(timeout = 30000)
+  public void testThreadNames() throws Exception {
+    ExecutorService	executor;
+
+    executor = ReaderExecutors.newPool(1, "test-prefix", 0);
+    try {
+      assertTrue(executor.submit(() -> Thread.currentThread().getName()).get().startsWith("test-prefix"));
+      assertTrue(executor.submit(() -> Thread.currentThread().isDaemon()).get());
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidPoolSize() {
+    ReaderExecutors.newPool(0, "test", 0);
+  }
+}
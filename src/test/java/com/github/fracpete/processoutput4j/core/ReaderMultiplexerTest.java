@@ -0,0 +1,242 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ReaderMultiplexerTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import com.github.fracpete.processoutput4j.TestProcesses;
+import com.github.fracpete.processoutput4j.output.CollectingProcessOutput;
+import com.github.fracpete.processoutput4j.reader.AbstractProcessReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link ReaderMultiplexer} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class ReaderMultiplexerTest {
+
+  /**
+   * Reader that records the lines and whether the end of the stream was
+   * signalled. Optionally fails on a specific line.
+   */
+  public static class RecordingReader
+    extends AbstractProcessReader {
+
+    /** the lines. */
+    public List<String> lines = new ArrayList<>();
+
+    /** the line to fail on, null if none. */
+    public String failOn;
+
+    /** completes once the end of the stream got signalled. */
+    public CompletableFuture<Void> ended = new CompletableFuture<>();
+
+    public RecordingReader(Process process) {
+      super(process, true);
+    }
+
+    @Override
+    protected void process(String line) {
+      if (line.equals(failOn))
+	throw new IllegalStateException("Failing on: " + line);
+      lines.add(line);
+    }
+
+    @Override
+    protected void endOfStream() {
+      ended.complete(null);
+    }
+  }
+
+  /** the multiplexer to test. */
+  protected ReaderMultiplexer m_Multiplexer;
+
+  @Before
+  public void setUp() {
+    TestProcesses.assumeShell();
+    m_Multiplexer = new ReaderMultiplexer(1);
+  }
+
+  @After
+  public void tearDown() {
+    if (m_Multiplexer != null)
+      m_Multiplexer.close();
+  }
+
+  /**
+   * Waits for the future and returns the error it completed with, if any.
+   *
+   * @param future	the future to wait for
+   * @return		the error, null if completed normally
+   * @throws Exception	if the future does not complete in time
+   */
+  protected Throwable await(CompletableFuture<?> future) throws Exception {
+    try {
+      future.get(10, TimeUnit.SECONDS);
+      return null;
+    }
+    catch (ExecutionException e) {
+      return e.getCause();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testManyProcesses() throws Exception {
+    List<CollectingProcessOutput>	outputs;
+    List<CompletableFuture<Integer>>	futures;
+    CollectingProcessOutput		output;
+    int					i;
+
+    outputs = new ArrayList<>();
+    futures = new ArrayList<>();
+    for (i = 0; i < 20; i++) {
+      output = new CollectingProcessOutput();
+      output.setMultiplexer(m_Multiplexer);
+      outputs.add(output);
+      futures.add(output.monitorAsync(TestProcesses.sh("seq 1 " + (i * 100) + "; echo err >&2")));
+    }
+    for (i = 0; i < outputs.size(); i++) {
+      assertEquals(0, (int) futures.get(i).get(10, TimeUnit.SECONDS));
+      assertEquals(TestProcesses.numbers(i * 100), outputs.get(i).getStdOut());
+      assertEquals("err\n", outputs.get(i).getStdErr());
+    }
+    assertEquals(0, m_Multiplexer.getNumStreams());
+  }
+
+  @Test(timeout = 30000)
+  public void testCloseReleasesDecoupledReaders() throws Exception {
+    CollectingProcessOutput	output;
+    CompletableFuture<Integer>	future;
+
+    output = new CollectingProcessOutput();
+    output.setMultiplexer(m_Multiplexer);
+    output.setHandoffCapacity(4);
+    future = output.monitorAsync(TestProcesses.sh("seq 1 1000; sleep 1"));
+    Thread.sleep(300);
+    m_Multiplexer.close();
+
+    // the decoupled consumer must not wait forever for further lines
+    assertTrue(await(future) instanceof IOException);
+  }
+
+  @Test(timeout = 30000)
+  public void testCloseNotifiesReader() throws Exception {
+    Process		process;
+    RecordingReader	reader;
+    Throwable		error;
+
+    process = TestProcesses.sh("printf partial; sleep 5").start();
+    try {
+      reader = new RecordingReader(process);
+      CompletableFuture<Void> future = m_Multiplexer.register(reader);
+      Thread.sleep(300);
+      m_Multiplexer.close();
+      error = await(future);
+      assertTrue(error instanceof IOException);
+      reader.ended.get(1, TimeUnit.SECONDS);
+      assertEquals("[partial]", reader.lines.toString());
+    }
+    finally {
+      process.destroy();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testFailureNotifiesReader() throws Exception {
+    Process		process;
+    RecordingReader	reader;
+
+    process = TestProcesses.sh("echo a; echo b; echo c").start();
+    reader  = new RecordingReader(process);
+    reader.failOn = "b";
+    assertNull(await(m_Multiplexer.register(reader)));
+    reader.ended.get(1, TimeUnit.SECONDS);
+    assertEquals("a", reader.lines.get(0));
+  }
+
+  @Test(timeout = 30000)
+  public void testOpenPipeDoesNotStallWorker() throws Exception {
+    Process			exited;
+    final PipedOutputStream	out;
+    final PipedInputStream	in;
+    RecordingReader		lingering;
+    CompletableFuture<Void>	lingeringFuture;
+    CollectingProcessOutput	quick;
+    long			start;
+
+    // stream of an exited process that is kept open, e.g., by a child process
+    exited = TestProcesses.sh("true").start();
+    exited.waitFor();
+    out = new PipedOutputStream();
+    in  = new PipedInputStream(out);
+    lingering = new RecordingReader(exited) {
+      @Override
+      public InputStream getInputStream() {
+	return in;
+      }
+    };
+    lingeringFuture = m_Multiplexer.register(lingering);
+    Thread.sleep(200);
+
+    quick = new CollectingProcessOutput();
+    quick.setMultiplexer(m_Multiplexer);
+    start = System.currentTimeMillis();
+    quick.monitorAsync(TestProcesses.sh("echo quick")).get(10, TimeUnit.SECONDS);
+    assertTrue("Quick process took too long", System.currentTimeMillis() - start < 2000);
+    assertEquals("quick\n", quick.getStdOut());
+    assertFalse(lingeringFuture.isDone());
+
+    out.write("late\n".getBytes());
+    out.close();
+    assertNull(await(lingeringFuture));
+    assertEquals("[late]", lingering.lines.toString());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testRegisterAfterClose() throws Exception {
+    Process	process;
+
+    m_Multiplexer.close();
+    process = TestProcesses.sh("true").start();
+    try {
+      m_Multiplexer.register(new RecordingReader(process));
+    }
+    finally {
+      process.destroy();
+    }
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * RingBufferTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link RingBuffer} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class RingBufferTest {
+
+  /**
+   * Handler that records the lines and timestamps.
+   */
+  public static class Recorder
+    implements RingBuffer.Handler {
+
+    /** the lines. */
+    public List<String> lines = new ArrayList<>();
+
+    /** the timestamps. */
+    public List<Long> timestamps = new ArrayList<>();
+
+    @Override
+    public void handle(byte[] data, int offset, int length, long timestamp) {
+      lines.add(new String(data, offset, length));
+      timestamps.add(timestamp);
+    }
+  }
+
+  /**
+   * Adds the string to the buffer.
+   *
+   * @param buffer	the buffer to add to
+   * @param line	the line to add
+   * @param timestamp	the timestamp
+   * @return		whether added
+   */
+  protected boolean offer(RingBuffer buffer, String line, long timestamp) {
+    byte[]	data;
+
+    data = ("##" + line + "##").getBytes();
+    return buffer.offer(data, 2, data.length - 4, timestamp);
+  }
+
+  @Test
+  public void testCapacity() {
+    assertEquals(1, new RingBuffer(1).capacity());
+    assertEquals(4, new RingBuffer(3).capacity());
+    assertEquals(1024, new RingBuffer(1024).capacity());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCapacity() {
+    new RingBuffer(0);
+  }
+
+  @Test
+  public void testOrderAndTimestamps() {
+    RingBuffer	buffer;
+    Recorder	recorder;
+    int		i;
+
+    buffer   = new RingBuffer(4);
+    recorder = new Recorder();
+    assertTrue(buffer.isEmpty());
+    for (i = 0; i < 4; i++)
+      assertTrue(offer(buffer, "line" + i, 100 + i));
+    assertTrue(buffer.isFull());
+    assertFalse(offer(buffer, "overflow", 0));
+    assertEquals(4, buffer.size());
+
+    while (buffer.take(recorder));
+    assertTrue(buffer.isEmpty());
+    assertEquals("[line0, line1, line2, line3]", recorder.lines.toString());
+    assertEquals("[100, 101, 102, 103]", recorder.timestamps.toString());
+  }
+
+  @Test
+  public void testSlotReuseWithDifferentLengths() {
+    RingBuffer		buffer;
+    Recorder		recorder;
+    StringBuilder	line;
+    List<String>	expected;
+    int			i;
+
+    buffer   = new RingBuffer(2);
+    recorder = new Recorder();
+    expected = new ArrayList<>();
+    line     = new StringBuilder();
+    for (i = 0; i < 50; i++) {
+      // grow beyond the slot size, then shrink again
+      line.setLength(0);
+      while (line.length() < ((i < 25) ? i * 500 : (50 - i) * 7))
+	line.append((char) ('a' + (i % 26)));
+      expected.add(line.toString());
+      assertTrue(offer(buffer, line.toString(), i));
+      assertTrue(buffer.take(recorder));
+    }
+    assertEquals(expected, recorder.lines);
+  }
+
+  @Test
+  public void testSlotNotReusedWhileProcessed() {
+    final RingBuffer	buffer;
+    final List<Boolean>	offered;
+
+    buffer  = new RingBuffer(1);
+    offered = new ArrayList<>();
+    assertTrue(offer(buffer, "first", 1));
+    buffer.take((data, offset, length, timestamp) -> {
+      // the only slot is still in use
+      offered.add(offer(buffer, "second", 2));
+      assertEquals("first", new String(data, offset, length));
+    });
+    assertEquals("[false]", offered.toString());
+    assertTrue(offer(buffer, "second", 2));
+  }
+
+  @Test
+  public void testDiscard() {
+    RingBuffer	buffer;
+    Recorder	recorder;
+
+    buffer   = new RingBuffer(2);
+    recorder = new Recorder();
+    assertFalse(buffer.discard());
+    offer(buffer, "a", 0);
+    offer(buffer, "b", 0);
+    assertTrue(buffer.discard());
+    assertTrue(offer(buffer, "c", 0));
+    while (buffer.take(recorder));
+    assertEquals("[b, c]", recorder.lines.toString());
+  }
+
+  @Test
+  public void testAwaitReturnsWhenDone() {
+    RingBuffer	buffer;
+
+    buffer = new RingBuffer(1);
+    buffer.awaitLines(WaitStrategy.PARK, 0, () -> true);
+    offer(buffer, "a", 0);
+    buffer.awaitLines(WaitStrategy.PARK, 0, () -> false);
+    buffer.discard();
+    buffer.awaitSpace(WaitStrategy.PARK, 0);
+  }
+
+  /**
+   * Hands over lines from a producer thread to the current thread.
+   *
+   * @param strategy	how to wait
+   * @param capacity	the capacity of the buffer
+   * @throws Exception	if the handover fails
+   */
+  protected void handOver(final WaitStrategy strategy, int capacity) throws Exception {
+    final RingBuffer		buffer;
+    final int			count;
+    final Recorder		recorder;
+    CompletableFuture<Void>	producer;
+    int				i;
+    int				waited;
+
+    buffer   = new RingBuffer(capacity);
+    count    = 20000;
+    recorder = new Recorder();
+    producer = CompletableFuture.runAsync(() -> {
+      int j;
+      int n;
+      for (j = 0; j < count; j++) {
+	n = 0;
+	while (!offer(buffer, "" + j, j))
+	  buffer.awaitSpace(strategy, n++);
+      }
+    });
+
+    waited = 0;
+    while (recorder.lines.size() < count) {
+      if (!buffer.take(recorder))
+	buffer.awaitLines(strategy, waited++, producer::isDone);
+      else
+	waited = 0;
+    }
+    producer.get(10, TimeUnit.SECONDS);
+
+    for (i = 0; i < count; i++) {
+      assertEquals("" + i, recorder.lines.get(i));
+      assertEquals(i, (long) recorder.timestamps.get(i));
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testHandOverPark() throws Exception {
+    handOver(WaitStrategy.PARK, 1);
+    handOver(WaitStrategy.PARK, 64);
+  }
+
+  @Test(timeout = 30000)
+  public void testHandOverYield() throws Exception {
+    handOver(WaitStrategy.YIELD, 1);
+    handOver(WaitStrategy.YIELD, 64);
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * StreamingLineIteratorTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.core;
+
+import com.github.fracpete.processoutput4j.TestProcesses;
+import com.github.fracpete.processoutput4j.output.StreamingProcessOutput;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests the {@link StreamingLineIterator} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class StreamingLineIteratorTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCapacity() {
+    new StreamingLineIterator(StreamingProcessOutputType.STDOUT, 0);
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testFinished() {
+    StreamingLineIterator	iter;
+
+    iter = new StreamingLineIterator(StreamingProcessOutputType.STDOUT);
+    iter.processOutput("a", true);
+    iter.processFinished();
+    assertEquals("a", iter.next());
+    assertFalse(iter.hasNext());
+    iter.next();
+  }
+
+  @Test(timeout = 30000)
+  public void testBoundedQueue() throws Exception {
+    StreamingLineIterator	iter;
+    CompletableFuture<Integer>	future;
+    int				i;
+
+    TestProcesses.assumeShell();
+    // far more lines than the queue holds, the reader waits for the consumer
+    iter   = new StreamingLineIterator(StreamingProcessOutputType.STDOUT, 16);
+    future = new StreamingProcessOutput(iter).monitorAsync(TestProcesses.sh("seq 1 20000"));
+    for (i = 1; i <= 20000; i++)
+      assertEquals("" + i, iter.next());
+    assertFalse(iter.hasNext());
+    assertEquals(0, (int) future.get(10, TimeUnit.SECONDS));
+  }
+
+  @Test(timeout = 30000)
+  public void testCloseLetsProcessFinish() throws Exception {
+    StreamingLineIterator	iter;
+    CompletableFuture<Integer>	future;
+
+    TestProcesses.assumeShell();
+    iter   = new StreamingLineIterator(StreamingProcessOutputType.STDOUT, 4);
+    future = new StreamingProcessOutput(iter).monitorAsync(TestProcesses.sh("seq 1 20000"));
+    try (Stream<String> lines = iter.stream()) {
+      assertEquals(Arrays.asList("1", "2", "3"), lines.limit(3).collect(Collectors.toList()));
+    }
+    assertEquals(0, (int) future.get(10, TimeUnit.SECONDS));
+  }
+}
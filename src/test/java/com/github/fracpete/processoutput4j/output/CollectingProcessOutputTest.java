@@ -0,0 +1,264 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CollectingProcessOutputTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.output;
+
+import com.github.fracpete.processoutput4j.TestProcesses;
+import com.github.fracpete.processoutput4j.core.ReaderExecutors;
+import com.github.fracpete.processoutput4j.core.ReaderThreadMode;
+import com.github.fracpete.processoutput4j.store.SegmentedStore;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link CollectingProcessOutput} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class CollectingProcessOutputTest {
+
+  @Before
+  public void setUp() {
+    TestProcesses.assumeShell();
+  }
+
+  @Test(timeout = 30000)
+  public void testMonitor() throws Exception {
+    CollectingProcessOutput	output;
+
+    output = new CollectingProcessOutput();
+    output.monitor(TestProcesses.sh("seq 1 100; echo error >&2; exit 2"));
+    assertEquals(TestProcesses.numbers(100), output.getStdOut());
+    assertEquals("error\n", output.getStdErr());
+    assertEquals(2, output.getExitCode());
+    assertTrue(output.getEndTime() >= output.getStartTime());
+  }
+
+  @Test(timeout = 30000)
+  public void testInput() throws Exception {
+    CollectingProcessOutput	output;
+
+    output = new CollectingProcessOutput();
+    output.monitor("a\nb\n", TestProcesses.sh("cat"));
+    assertEquals("a\nb\n", output.getStdOut());
+  }
+
+  @Test(timeout = 30000)
+  public void testMonitorAsync() throws Exception {
+    CollectingProcessOutput	output;
+    CompletableFuture<Integer>	future;
+
+    output = new CollectingProcessOutput();
+    future = output.monitorAsync("x\ny\n", TestProcesses.sh("cat; exit 3"));
+    assertEquals(3, (int) future.get(10, TimeUnit.SECONDS));
+    assertEquals("x\ny\n", output.getStdOut());
+    assertEquals(3, output.getExitCode());
+    assertNull(output.getProcess());
+  }
+
+  @Test(timeout = 30000)
+  public void testMonitorAsyncConcurrently() throws Exception {
+    List<CollectingProcessOutput>	outputs;
+    List<CompletableFuture<Integer>>	futures;
+    CollectingProcessOutput		output;
+    int					i;
+
+    outputs = new ArrayList<>();
+    futures = new ArrayList<>();
+    for (i = 0; i < 50; i++) {
+      output = new CollectingProcessOutput();
+      outputs.add(output);
+      futures.add(output.monitorAsync(TestProcesses.sh("seq 1 " + i + "; exit " + (i % 7))));
+    }
+    for (i = 0; i < 50; i++) {
+      assertEquals(i % 7, (int) futures.get(i).get(10, TimeUnit.SECONDS));
+      assertEquals(TestProcesses.numbers(i), outputs.get(i).getStdOut());
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testCancelDestroys() throws Exception {
+    CollectingProcessOutput	output;
+    CompletableFuture<Integer>	future;
+    Process			process;
+
+    output  = new CollectingProcessOutput();
+    future  = output.monitorAsync(TestProcesses.sh("sleep 60"));
+    process = output.getProcess();
+    assertTrue(process.isAlive());
+    assertTrue(future.cancel(true));
+    assertTrue(process.waitFor(10, TimeUnit.SECONDS));
+  }
+
+  @Test(timeout = 30000)
+  public void testExecutor() throws Exception {
+    CollectingProcessOutput	output;
+    ExecutorService		executor;
+    final AtomicInteger		count;
+
+    count    = new AtomicInteger();
+    executor = ReaderExecutors.newPool(2, "test-readers", 0);
+    try {
+      output = new CollectingProcessOutput();
+      output.setExecutor((task) -> {
+	count.incrementAndGet();
+	executor.execute(task);
+      });
+      output.monitor(TestProcesses.sh("echo out; echo err >&2"));
+      assertEquals("out\n", output.getStdOut());
+      assertEquals("err\n", output.getStdErr());
+      assertEquals(2, count.get());
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testDefaultExecutor() throws Exception {
+    CollectingProcessOutput	output;
+    int				i;
+
+    output = new CollectingProcessOutput();
+    assertSame(ReaderExecutors.getDefault(), output.getExecutor());
+    output.setThreadMode(ReaderThreadMode.VIRTUAL);
+    assertSame(ReaderExecutors.getVirtual(), output.getExecutor());
+
+    // threads get reused across outputs
+    for (i = 0; i < 20; i++) {
+      output = new CollectingProcessOutput();
+      output.monitor(TestProcesses.sh("echo " + i));
+      assertEquals(i + "\n", output.getStdOut());
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testBytes() throws Exception {
+    CollectingProcessOutput	output;
+    ByteArrayOutputStream	bytes;
+    InputStream			stream;
+    byte[]			expected;
+    byte[]			buffer;
+    int				read;
+
+    output = new CollectingProcessOutput();
+    output.monitor(TestProcesses.sh("printf 'a\\377b\\r\\nc\\n'; printf 'e\\r' >&2"));
+    // stored as read, apart from the line terminators
+    expected = new byte[]{'a', (byte) 0xff, 'b', '\n', 'c', '\n'};
+    assertArrayEquals(expected, output.getStdOutBytes());
+    assertArrayEquals(new byte[]{'e', '\n'}, output.getStdErrBytes());
+    bytes  = new ByteArrayOutputStream();
+    stream = output.getStdOutStream();
+    buffer = new byte[4];
+    while ((read = stream.read(buffer)) != -1)
+      bytes.write(buffer, 0, read);
+    stream.close();
+    assertArrayEquals(expected, bytes.toByteArray());
+    assertEquals(2, output.lineCount());
+    assertEquals("c", output.getLine(1));
+    assertEquals(Arrays.asList("c"), output.tail(1));
+    assertEquals("e", output.getLine(0, false));
+  }
+
+  @Test(timeout = 30000)
+  public void testDecodesWithStoreCharset() throws Exception {
+    CollectingProcessOutput	output;
+    SegmentedStore		store;
+
+    store = new SegmentedStore();
+    store.setCharset(StandardCharsets.UTF_8);
+    output = new CollectingProcessOutput();
+    output.setStdOutStore(store);
+    output.monitor(TestProcesses.sh("printf 'gr\\303\\274n\\n'"));
+    assertEquals("gr\u00fcn\n", output.getStdOut());
+    assertEquals("gr\u00fcn", output.getLine(0));
+    assertEquals(6, output.getStdOutBytes().length);
+  }
+
+  @Test(timeout = 30000)
+  public void testIterator() throws Exception {
+    CollectingProcessOutput	output;
+    Iterator<String>		iter;
+    int				i;
+
+    output = new CollectingProcessOutput();
+    output.monitor(TestProcesses.sh("seq 1 3000; echo e >&2"));
+    iter = output.iterator();
+    for (i = 1; i <= 3000; i++)
+      assertEquals("" + i, iter.next());
+    assertFalse(iter.hasNext());
+    assertEquals(Arrays.asList("e"), output.lines(false).collect(Collectors.toList()));
+  }
+
+  @Test(timeout = 30000)
+  public void testLiveIterator() throws Exception {
+    CollectingProcessOutput	output;
+    CompletableFuture<Integer>	future;
+    Iterator<String>		iter;
+    List<String>		lines;
+
+    output = new CollectingProcessOutput();
+    future = output.monitorAsync(TestProcesses.sh("for i in 1 2 3 4 5; do echo $i; sleep 0.2; done"));
+    iter   = output.iterator();
+    assertEquals("1", iter.next());
+    // lines arrive while the process is still running
+    assertFalse(future.isDone());
+    lines = new ArrayList<>();
+    while (iter.hasNext())
+      lines.add(iter.next());
+    assertEquals(Arrays.asList("2", "3", "4", "5"), lines);
+    assertEquals(0, (int) future.get(10, TimeUnit.SECONDS));
+  }
+
+  @Test(timeout = 30000)
+  public void testClosingLinesDestroys() throws Exception {
+    CollectingProcessOutput	output;
+    Process			process;
+
+    output  = new CollectingProcessOutput();
+    output.monitorAsync(TestProcesses.sh("seq 1 5; sleep 60"));
+    process = output.getProcess();
+    try (Stream<String> lines = output.lines()) {
+      assertEquals(Arrays.asList("1", "2"), lines.limit(2).collect(Collectors.toList()));
+    }
+    assertTrue(process.waitFor(10, TimeUnit.SECONDS));
+  }
+}
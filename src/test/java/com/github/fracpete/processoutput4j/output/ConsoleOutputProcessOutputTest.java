@@ -0,0 +1,78 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ConsoleOutputProcessOutputTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.output;
+
+import com.github.fracpete.processoutput4j.TestProcesses;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.ProcessBuilder.Redirect;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the {@link ConsoleOutputProcessOutput} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class ConsoleOutputProcessOutputTest {
+
+  @Before
+  public void setUp() {
+    TestProcesses.assumeShell();
+  }
+
+  @Test(timeout = 30000)
+  public void testInheritKeepsBuilder() throws Exception {
+    ConsoleOutputProcessOutput	output;
+    ProcessBuilder		builder;
+
+    builder = TestProcesses.sh("test \"$FOO\" = bar && test \"$(pwd)\" = \"$(cd /tmp && pwd)\"");
+    builder.environment().put("FOO", "bar");
+    builder.directory(new File("/tmp"));
+    output = new ConsoleOutputProcessOutput();
+    output.setInheritIO(true);
+    output.monitor(builder);
+    assertEquals(0, output.getExitCode());
+    assertEquals(Redirect.PIPE, builder.redirectOutput());
+    assertEquals(Redirect.PIPE, builder.redirectError());
+  }
+
+  @Test(timeout = 30000)
+  public void testInheritKeepsPipelineBuilders() throws Exception {
+    ConsoleOutputProcessOutput	output;
+    List<ProcessBuilder>	builders;
+
+    builders = Arrays.asList(TestProcesses.sh("echo a"), TestProcesses.sh("cat; exit 3"));
+    output   = new ConsoleOutputProcessOutput();
+    output.setInheritIO(true);
+    output.monitorPipeline(builders);
+    assertArrayEquals(new int[]{0, 3}, output.getExitCodes());
+    for (ProcessBuilder builder: builders) {
+      assertEquals(Redirect.PIPE, builder.redirectOutput());
+      assertEquals(Redirect.PIPE, builder.redirectError());
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * FileRedirectProcessOutputTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.output;
+
+import com.github.fracpete.processoutput4j.TestProcesses;
+import com.github.fracpete.processoutput4j.core.TempFiles;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link FileRedirectProcessOutput} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class FileRedirectProcessOutputTest {
+
+  @Before
+  public void setUp() {
+    TestProcesses.assumeShell();
+  }
+
+  @Test(timeout = 30000)
+  public void testTemporaryFiles() throws Exception {
+    FileRedirectProcessOutput	output;
+    ProcessBuilder		builder;
+    ByteBuffer			mapped;
+    File			stdout;
+    File			stderr;
+    int				files;
+
+    files   = TempFiles.size();
+    builder = TestProcesses.sh("seq 1 1000; echo e >&2; exit 2");
+    output  = new FileRedirectProcessOutput();
+    output.monitor(builder);
+    assertEquals(Redirect.PIPE, builder.redirectOutput());
+    assertEquals(Redirect.PIPE, builder.redirectError());
+    assertEquals(2, output.getExitCode());
+    assertEquals(TestProcesses.numbers(1000), output.getStdOut());
+    assertEquals("e\n", output.getStdErr());
+    assertEquals(1000, output.lineCount());
+    assertEquals("500", output.getLine(499));
+    assertEquals(Arrays.asList("999", "1000"), output.tail(2));
+    mapped = output.map(true);
+    assertEquals(TestProcesses.numbers(1000).length(), mapped.remaining());
+    assertEquals('1', mapped.get(0));
+
+    stdout = output.getStore(true).getFile();
+    stderr = output.getStore(false).getFile();
+    assertEquals(files + 2, TempFiles.size());
+    // the next process replaces the files
+    output.monitor(TestProcesses.sh("echo a"));
+    assertFalse(stdout.exists());
+    assertFalse(stderr.exists());
+    assertEquals("a\n", output.getStdOut());
+    output.close();
+    assertEquals(files, TempFiles.size());
+  }
+
+  @Test(timeout = 30000)
+  public void testExplicitFile() throws Exception {
+    FileRedirectProcessOutput	output;
+    File			file;
+
+    file   = TempFiles.create(".out", null);
+    output = new FileRedirectProcessOutput();
+    output.setStdOutFile(file);
+    output.monitor(TestProcesses.sh("echo a"));
+    assertArrayEquals("a\n".getBytes(), output.getStdOutBytes());
+    output.close();
+    assertTrue(file.exists());
+    TempFiles.delete(file);
+  }
+
+  @Test(timeout = 30000)
+  public void testMergeStreams() throws Exception {
+    FileRedirectProcessOutput	output;
+
+    output = new FileRedirectProcessOutput();
+    output.setMergeStreams(true);
+    output.monitor(TestProcesses.sh("echo o1; echo e1 >&2; echo o2"));
+    assertEquals("o1\ne1\no2\n", output.getStdOut());
+    assertEquals("", output.getStdErr());
+    output.close();
+  }
+
+  @Test(timeout = 30000)
+  public void testPipeline() throws Exception {
+    FileRedirectProcessOutput	output;
+
+    output = new FileRedirectProcessOutput();
+    output.monitorPipeline(Arrays.asList(TestProcesses.sh("seq 1 100; echo e1 >&2"), TestProcesses.sh("grep 7; echo e2 >&2")));
+    assertEquals("7\n17\n27\n37\n47\n57\n67\n70\n71\n72\n73\n74\n75\n76\n77\n78\n79\n87\n97\n", output.getStdOut());
+    assertEquals(2, output.lineCount(false));
+    output.close();
+  }
+}
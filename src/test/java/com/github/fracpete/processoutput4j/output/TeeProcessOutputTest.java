@@ -0,0 +1,117 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TeeProcessOutputTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.output;
+
+import com.github.fracpete.processoutput4j.TestProcesses;
+import com.github.fracpete.processoutput4j.core.StreamingProcessOutputType;
+import com.github.fracpete.processoutput4j.core.StreamingProcessOwner;
+import com.github.fracpete.processoutput4j.store.CompressingStore;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the {@link TeeProcessOutput} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class TeeProcessOutputTest {
+
+  /**
+   * Owner that records the lines of stderr.
+   */
+  public static class StdErrOwner
+    implements StreamingProcessOwner {
+
+    /** the lines. */
+    public List<String> lines = new ArrayList<>();
+
+    @Override
+    public StreamingProcessOutputType getOutputType() {
+      return StreamingProcessOutputType.STDERR;
+    }
+
+    @Override
+    public void processOutput(String line, boolean stdout) {
+      lines.add(line);
+    }
+  }
+
+  @Before
+  public void setUp() {
+    TestProcesses.assumeShell();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoOutputs() {
+    new TeeProcessOutput();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFileRedirect() {
+    new TeeProcessOutput(new CollectingProcessOutput(), new FileRedirectProcessOutput());
+  }
+
+  @Test(timeout = 30000, expected = IllegalArgumentException.class)
+  public void testInheritIOAfterConstruction() throws Exception {
+    ConsoleOutputProcessOutput	console;
+    TeeProcessOutput		tee;
+
+    console = new ConsoleOutputProcessOutput();
+    tee     = new TeeProcessOutput(console);
+    console.setInheritIO(true);
+    tee.monitor(TestProcesses.sh("echo a"));
+  }
+
+  @Test(timeout = 30000)
+  public void testFanOut() throws Exception {
+    CollectingProcessOutput	strings;
+    CollectingProcessOutput	bytes;
+    StreamingProcessOutput	streaming;
+    StdErrOwner			owner;
+    TeeProcessOutput		tee;
+
+    // one output decoding the lines, one storing the raw bytes
+    strings = new CollectingProcessOutput();
+    strings.setMergeStreams(true);
+    bytes   = new CollectingProcessOutput();
+    bytes.setStdOutStore(new CompressingStore(64, 1));
+    owner     = new StdErrOwner();
+    streaming = new StreamingProcessOutput(owner);
+    tee       = new TeeProcessOutput(strings, bytes, streaming);
+    tee.monitor(TestProcesses.sh("seq 1 1000; echo e1 >&2; echo e2 >&2; exit 3"));
+
+    assertEquals(TestProcesses.numbers(1000), strings.getStdOut());
+    assertEquals(TestProcesses.numbers(1000), bytes.getStdOut());
+    assertEquals("e1\ne2\n", strings.getStdErr());
+    assertEquals("e1\ne2\n", bytes.getStdErr());
+    assertEquals(Arrays.asList("e1", "e2"), owner.lines);
+    assertEquals(3, tee.getExitCode());
+    assertEquals(3, strings.getExitCode());
+    assertEquals(3, bytes.getExitCode());
+    assertEquals(3, streaming.getExitCode());
+  }
+}
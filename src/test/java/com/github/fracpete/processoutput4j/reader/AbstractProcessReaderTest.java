@@ -0,0 +1,186 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * AbstractProcessReaderTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.reader;
+
+import com.github.fracpete.processoutput4j.core.CoarseClock;
+import com.github.fracpete.processoutput4j.core.TimestampMode;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the line splitting of the {@link AbstractProcessReader} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class AbstractProcessReaderTest {
+
+  /**
+   * Reader that records the lines.
+   */
+  public static class RecordingReader
+    extends AbstractProcessReader {
+
+    /** the lines. */
+    public List<String> lines = new ArrayList<>();
+
+    /**
+     * Initializes the reader.
+     */
+    public RecordingReader() {
+      super(null, true);
+    }
+
+    @Override
+    protected void process(String line) {
+      lines.add(line);
+    }
+  }
+
+  /**
+   * Feeds the data in chunks of the given size and finishes the reader.
+   *
+   * @param reader	the reader to feed
+   * @param data	the data
+   * @param chunk	the chunk size
+   * @return		the recorded lines
+   */
+  protected List<String> feed(RecordingReader reader, String data, int chunk) {
+    byte[]	bytes;
+    int		i;
+
+    bytes = data.getBytes(reader.getCharset());
+    for (i = 0; i < bytes.length; i += chunk)
+      reader.feed(bytes, i, Math.min(chunk, bytes.length - i));
+    reader.finish();
+
+    return reader.lines;
+  }
+
+  @Test
+  public void testTerminators() {
+    List<String>	expected;
+    int			chunk;
+
+    expected = Arrays.asList("a", "", "b", "c", "", "d", "e");
+    for (chunk = 1; chunk <= 20; chunk++)
+      assertEquals("chunk=" + chunk, expected, feed(new RecordingReader(), "a\n\nb\r\nc\r\rd\r\ne", chunk));
+  }
+
+  @Test
+  public void testCRLFSplitAcrossChunks() {
+    RecordingReader	reader;
+
+    reader = new RecordingReader();
+    reader.feed("a\r".getBytes(), 0, 2);
+    reader.feed("\nb\r".getBytes(), 0, 3);
+    reader.feed("\r\n".getBytes(), 0, 2);
+    reader.finish();
+    assertEquals(Arrays.asList("a", "b", ""), reader.lines);
+  }
+
+  @Test
+  public void testMaxLineLength() {
+    RecordingReader	reader;
+    int			chunk;
+
+    for (chunk = 1; chunk <= 12; chunk++) {
+      reader = new RecordingReader();
+      reader.setMaxLineLength(4);
+      assertEquals("chunk=" + chunk, Arrays.asList("abcd", "efgh", "ij", "1234", "x"), feed(reader, "abcdefghij\n1234\nx", chunk));
+      assertEquals(2, reader.getSplitLines());
+    }
+  }
+
+  @Test
+  public void testMaxLineLengthBoundsBuffer() {
+    RecordingReader	reader;
+    byte[]		chunk;
+    int			i;
+
+    reader = new RecordingReader();
+    reader.setMaxLineLength(1000);
+    chunk  = new byte[300];
+    Arrays.fill(chunk, (byte) 'x');
+    for (i = 0; i < 10; i++)
+      reader.feed(chunk, 0, chunk.length);
+    reader.finish();
+    assertEquals(3, reader.lines.size());
+    assertEquals(1000, reader.lines.get(0).length());
+    assertEquals(1000, reader.lines.get(1).length());
+    assertEquals(1000, reader.lines.get(2).length());
+    assertEquals(2, reader.getSplitLines());
+    assertEquals(1000, reader.m_Line.length);
+  }
+
+  @Test
+  public void testMultiByteAcrossChunks() {
+    List<String>	expected;
+    RecordingReader	reader;
+    int			chunk;
+
+    expected = Arrays.asList("gr\u00fc\u00dfe", "\u20ac\u20ac", "\ud83d\ude00 x");
+    for (chunk = 1; chunk <= 8; chunk++) {
+      reader = new RecordingReader();
+      reader.setCharset(StandardCharsets.UTF_8);
+      assertEquals("chunk=" + chunk, expected, feed(reader, "gr\u00fc\u00dfe\n\u20ac\u20ac\r\n\ud83d\ude00 x", chunk));
+    }
+  }
+
+  @Test
+  public void testCharset() {
+    RecordingReader	reader;
+
+    reader = new RecordingReader();
+    reader.setCharset(StandardCharsets.ISO_8859_1);
+    assertEquals(Arrays.asList("\u00e9t\u00e9"), feed(reader, "\u00e9t\u00e9\n", 2));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCharset() {
+    new RecordingReader().setCharset(null);
+  }
+
+  @Test
+  public void testReleasesOwnClock() {
+    RecordingReader	reader;
+    CoarseClock		clock;
+
+    reader = new RecordingReader();
+    reader.setTimestampMode(TimestampMode.COARSE, null);
+    clock  = reader.m_Clock;
+    assertTrue(clock.isRunning());
+    feed(reader, "a\n", 1);
+    assertFalse(clock.isRunning());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidMaxLineLength() {
+    new RecordingReader().setMaxLineLength(0);
+  }
+}
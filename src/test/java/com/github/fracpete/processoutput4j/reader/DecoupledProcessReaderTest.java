@@ -0,0 +1,237 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * DecoupledProcessReaderTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.reader;
+
+import com.github.fracpete.processoutput4j.TestProcesses;
+import com.github.fracpete.processoutput4j.core.BackpressurePolicy;
+import com.github.fracpete.processoutput4j.core.BackpressureStats;
+import com.github.fracpete.processoutput4j.core.ReaderMultiplexer;
+import com.github.fracpete.processoutput4j.core.StreamingProcessOutputType;
+import com.github.fracpete.processoutput4j.core.StreamingProcessOwner;
+import com.github.fracpete.processoutput4j.core.TempFiles;
+import com.github.fracpete.processoutput4j.core.WaitStrategy;
+import com.github.fracpete.processoutput4j.output.CollectingProcessOutput;
+import com.github.fracpete.processoutput4j.output.StreamingProcessOutput;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link DecoupledProcessReader} class, via the outputs.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class DecoupledProcessReaderTest {
+
+  /**
+   * Owner that records the lines, taking its time for each.
+   */
+  public static class SlowOwner
+    implements StreamingProcessOwner {
+
+    /** the lines. */
+    public List<String> lines = Collections.synchronizedList(new ArrayList<>());
+
+    /** the delay per line in msec. */
+    public int delay;
+
+    public SlowOwner(int delay) {
+      this.delay = delay;
+    }
+
+    @Override
+    public StreamingProcessOutputType getOutputType() {
+      return StreamingProcessOutputType.STDOUT;
+    }
+
+    @Override
+    public void processOutput(String line, boolean stdout) {
+      try {
+	Thread.sleep(delay);
+      }
+      catch (InterruptedException e) {
+	// ignored
+      }
+      lines.add(line);
+    }
+  }
+
+  @Before
+  public void setUp() {
+    TestProcesses.assumeShell();
+  }
+
+  /**
+   * Feeds the lines 1 to n to the reader, without a consumer running, and
+   * signals the end of the stream.
+   *
+   * @param reader	the reader to feed
+   * @param n		the number of lines
+   */
+  protected void feed(DecoupledProcessReader reader, int n) {
+    byte[]	data;
+
+    data = TestProcesses.numbers(n).getBytes();
+    reader.feed(data, 0, data.length);
+    reader.finish();
+  }
+
+  /**
+   * Returns the lines from..to.
+   *
+   * @param from	the first number
+   * @param to		the last number (incl)
+   * @return		the lines
+   */
+  protected List<String> lines(int from, int to) {
+    List<String>	result;
+    int			i;
+
+    result = new ArrayList<>();
+    for (i = from; i <= to; i++)
+      result.add("" + i);
+
+    return result;
+  }
+
+  @Test(timeout = 30000)
+  public void testDropNewest() {
+    AbstractProcessReaderTest.RecordingReader	sink;
+    DecoupledProcessReader			reader;
+    BackpressureStats				stats;
+
+    sink   = new AbstractProcessReaderTest.RecordingReader();
+    stats  = new BackpressureStats();
+    reader = new DecoupledProcessReader(sink, 4, WaitStrategy.PARK, BackpressurePolicy.DROP_NEWEST, stats);
+    feed(reader, 10);
+    reader.consume();
+    assertEquals(lines(1, 4), sink.lines);
+    assertEquals(6, stats.getDropped());
+    assertEquals(0, stats.getSpilled());
+  }
+
+  @Test(timeout = 30000)
+  public void testDropOldest() {
+    AbstractProcessReaderTest.RecordingReader	sink;
+    DecoupledProcessReader			reader;
+    BackpressureStats				stats;
+
+    sink   = new AbstractProcessReaderTest.RecordingReader();
+    stats  = new BackpressureStats();
+    reader = new DecoupledProcessReader(sink, 4, WaitStrategy.PARK, BackpressurePolicy.DROP_OLDEST, stats);
+    feed(reader, 10);
+    reader.consume();
+    assertEquals(lines(7, 10), sink.lines);
+    assertEquals(6, stats.getDropped());
+  }
+
+  @Test(timeout = 30000)
+  public void testSpill() {
+    AbstractProcessReaderTest.RecordingReader	sink;
+    DecoupledProcessReader			reader;
+    BackpressureStats				stats;
+    int						files;
+
+    files  = TempFiles.size();
+    sink   = new AbstractProcessReaderTest.RecordingReader();
+    stats  = new BackpressureStats();
+    reader = new DecoupledProcessReader(sink, 4, WaitStrategy.PARK, BackpressurePolicy.SPILL, stats);
+    feed(reader, 1000);
+    assertEquals(files + 1, TempFiles.size());
+    reader.consume();
+    assertEquals(lines(1, 1000), sink.lines);
+    assertEquals(996, stats.getSpilled());
+    assertEquals(0, stats.getDropped());
+    assertEquals(files, TempFiles.size());
+  }
+
+  @Test(timeout = 30000)
+  public void testSpillWhileConsuming() throws Exception {
+    SlowOwner			owner;
+    StreamingProcessOutput	output;
+
+    owner  = new SlowOwner(1);
+    output = new StreamingProcessOutput(owner);
+    output.setHandoffCapacity(2);
+    output.setBackpressurePolicy(BackpressurePolicy.SPILL);
+    output.monitor(TestProcesses.sh("seq 1 500"));
+    assertEquals(TestProcesses.numbers(500), String.join("\n", owner.lines) + "\n");
+    assertTrue(output.getBackpressureStats().getSpilled() > 0);
+  }
+
+  @Test(timeout = 30000)
+  public void testBlock() throws Exception {
+    SlowOwner			owner;
+    StreamingProcessOutput	output;
+
+    owner  = new SlowOwner(1);
+    output = new StreamingProcessOutput(owner);
+    output.setHandoffCapacity(2);
+    output.monitor(TestProcesses.sh("seq 1 200"));
+    assertEquals(TestProcesses.numbers(200), String.join("\n", owner.lines) + "\n");
+    assertTrue(output.getBackpressureStats().getBlocked() > 0);
+    assertEquals(0, output.getBackpressureStats().getDropped());
+  }
+
+  @Test(timeout = 60000)
+  public void testBlockWithMultiplexerDoesNotStallOthers() throws Exception {
+    ReaderMultiplexer		multiplexer;
+    SlowOwner			owner;
+    StreamingProcessOutput	slow;
+    CompletableFuture<Integer>	slowFuture;
+    CollectingProcessOutput	quick;
+    long			start;
+
+    multiplexer = new ReaderMultiplexer(1);
+    try {
+      owner = new SlowOwner(10);
+      slow  = new StreamingProcessOutput(owner);
+      slow.setMultiplexer(multiplexer);
+      slow.setHandoffCapacity(1);
+      assertEquals(BackpressurePolicy.BLOCK, slow.getBackpressurePolicy());
+      assertEquals(BackpressurePolicy.SPILL, slow.getEffectiveBackpressurePolicy());
+      slowFuture = slow.monitorAsync(TestProcesses.sh("seq 1 200"));
+      Thread.sleep(300);
+
+      quick = new CollectingProcessOutput();
+      quick.setMultiplexer(multiplexer);
+      start = System.currentTimeMillis();
+      quick.monitorAsync(TestProcesses.sh("echo quick")).get(10, TimeUnit.SECONDS);
+      assertTrue("Quick process took too long", System.currentTimeMillis() - start < 1000);
+      assertEquals("quick\n", quick.getStdOut());
+
+      slowFuture.get(30, TimeUnit.SECONDS);
+      assertEquals(TestProcesses.numbers(200), String.join("\n", owner.lines) + "\n");
+      assertTrue(slow.getBackpressureStats().getSpilled() > 0);
+    }
+    finally {
+      multiplexer.close();
+    }
+  }
+}
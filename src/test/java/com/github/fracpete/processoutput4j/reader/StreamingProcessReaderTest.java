@@ -0,0 +1,274 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * StreamingProcessReaderTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.reader;
+
+import com.github.fracpete.processoutput4j.TestProcesses;
+import com.github.fracpete.processoutput4j.core.BatchingStreamingProcessOwner;
+import com.github.fracpete.processoutput4j.core.RawStreamingProcessOwner;
+import com.github.fracpete.processoutput4j.core.StreamingProcessOutputType;
+import com.github.fracpete.processoutput4j.output.StreamingProcessOutput;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link StreamingProcessReader} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class StreamingProcessReaderTest {
+
+  /**
+   * Owner that records the batches.
+   */
+  public static class BatchOwner
+    implements BatchingStreamingProcessOwner {
+
+    /** the batch size. */
+    public int batchSize;
+
+    /** the maximum delay. */
+    public long maxDelay;
+
+    /** the batches. */
+    public List<List<String>> batches = new ArrayList<>();
+
+    /** the threads the batches were delivered in. */
+    public List<String> threads = new ArrayList<>();
+
+    /** completes with the first batch. */
+    public CompletableFuture<Void> first = new CompletableFuture<>();
+
+    /**
+     * Initializes the owner.
+     *
+     * @param batchSize	the batch size
+     * @param maxDelay	the maximum delay in msec
+     */
+    public BatchOwner(int batchSize, long maxDelay) {
+      this.batchSize = batchSize;
+      this.maxDelay  = maxDelay;
+    }
+
+    @Override
+    public int getBatchSize() {
+      return batchSize;
+    }
+
+    @Override
+    public long getMaxBatchDelay() {
+      return maxDelay;
+    }
+
+    @Override
+    public synchronized void processOutput(List<String> lines, boolean stdout) {
+      batches.add(lines);
+      threads.add(Thread.currentThread().getName());
+      first.complete(null);
+    }
+
+    @Override
+    public StreamingProcessOutputType getOutputType() {
+      return StreamingProcessOutputType.BOTH;
+    }
+
+    @Override
+    public void processOutput(String line, boolean stdout) {
+      throw new IllegalStateException("Expected batches only!");
+    }
+  }
+
+  /**
+   * Owner that records the raw lines.
+   */
+  public static class RawOwner
+    implements RawStreamingProcessOwner {
+
+    /** the output type. */
+    public StreamingProcessOutputType type;
+
+    /** the decoded lines. */
+    public List<String> lines = new ArrayList<>();
+
+    /** the buffers the lines were delivered in. */
+    public List<byte[]> buffers = new ArrayList<>();
+
+    /** the charset of the last line. */
+    public Charset charset;
+
+    /**
+     * Initializes the owner.
+     *
+     * @param type	the output type
+     */
+    public RawOwner(StreamingProcessOutputType type) {
+      this.type = type;
+    }
+
+    @Override
+    public void processOutput(byte[] data, int offset, int length, Charset charset, boolean stdout) {
+      this.charset = charset;
+      lines.add((stdout ? "out:" : "err:") + new String(data, offset, length, charset));
+      buffers.add(data);
+    }
+
+    @Override
+    public StreamingProcessOutputType getOutputType() {
+      return type;
+    }
+
+    @Override
+    public void processOutput(String line, boolean stdout) {
+      throw new IllegalStateException("Expected raw bytes only!");
+    }
+  }
+
+  /**
+   * Feeds the line to the reader.
+   *
+   * @param reader	the reader
+   * @param line	the line, incl terminator
+   */
+  protected void feed(AbstractProcessReader reader, String line) {
+    reader.feed(line.getBytes(), 0, line.length());
+  }
+
+  @Test
+  public void testFullBatches() {
+    BatchOwner			owner;
+    StreamingProcessReader	reader;
+
+    owner  = new BatchOwner(2, 0);
+    reader = new StreamingProcessReader(owner, null, true);
+    feed(reader, "a\nb\nc\n");
+    assertEquals(Arrays.asList(Arrays.asList("a", "b")), owner.batches);
+    reader.flush();
+    assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c")), owner.batches);
+  }
+
+  @Test(timeout = 30000)
+  public void testTimedFlushUsesExecutor() throws Exception {
+    BatchOwner			owner;
+    StreamingProcessReader	reader;
+    ExecutorService		executor;
+    AtomicInteger		count;
+
+    count    = new AtomicInteger();
+    executor = Executors.newSingleThreadExecutor((r) -> new Thread(() -> {
+      count.incrementAndGet();
+      r.run();
+    }, "test-flush"));
+    try {
+      owner  = new BatchOwner(100, 50);
+      reader = new StreamingProcessReader(owner, null, true);
+      reader.setExecutor(executor);
+      feed(reader, "a\n");
+      owner.first.get(10, TimeUnit.SECONDS);
+      assertEquals(Arrays.asList(Arrays.asList("a")), owner.batches);
+      assertEquals("test-flush", owner.threads.get(0));
+      assertEquals(1, count.get());
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testOutputPassesExecutor() throws Exception {
+    BatchOwner			owner;
+    StreamingProcessOutput	output;
+    ExecutorService		executor;
+
+    TestProcesses.assumeShell();
+    executor = Executors.newCachedThreadPool((r) -> new Thread(r, "test-output"));
+    try {
+      owner  = new BatchOwner(100, 50);
+      output = new StreamingProcessOutput(owner);
+      output.setExecutor(executor);
+      output.monitor(TestProcesses.sh("echo a; sleep 1; echo b"));
+      assertEquals(Arrays.asList(Arrays.asList("a"), Arrays.asList("b")), owner.batches);
+      assertTrue(owner.threads.get(0), owner.threads.get(0).startsWith("test-output"));
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testRawLines() {
+    RawOwner			owner;
+    StreamingProcessReader	reader;
+    byte[]			first;
+    byte[]			third;
+
+    owner  = new RawOwner(StreamingProcessOutputType.BOTH);
+    reader = new StreamingProcessReader(owner, null, false);
+    reader.setCharset(StandardCharsets.UTF_8);
+    // lines completed within one chunk and across chunks
+    first = "a\nb\u00e4".getBytes(StandardCharsets.UTF_8);
+    third = "\r\ncc\n".getBytes(StandardCharsets.UTF_8);
+    reader.feed(first, 0, 4);
+    reader.feed("b\u00e4".getBytes(StandardCharsets.UTF_8), 2, 1);
+    reader.feed(third, 0, 5);
+    reader.feed("d".getBytes(StandardCharsets.UTF_8), 0, 1);
+    reader.finish();
+    assertEquals(Arrays.asList("err:a", "err:b\u00e4", "err:cc", "err:d"), owner.lines);
+    assertSame(StandardCharsets.UTF_8, owner.charset);
+    // complete lines get passed on as slices of the read buffer
+    assertSame(first, owner.buffers.get(0));
+    assertSame(third, owner.buffers.get(2));
+  }
+
+  @Test
+  public void testRawOutputType() {
+    RawOwner	owner;
+
+    owner = new RawOwner(StreamingProcessOutputType.STDOUT);
+    feed(new StreamingProcessReader(owner, null, false), "a\n");
+    feed(new StreamingProcessReader(owner, null, true), "b\n");
+    assertEquals(Arrays.asList("out:b"), owner.lines);
+  }
+
+  @Test(timeout = 30000)
+  public void testRawOutput() throws Exception {
+    RawOwner			owner;
+    StreamingProcessOutput	output;
+
+    TestProcesses.assumeShell();
+    owner  = new RawOwner(StreamingProcessOutputType.STDERR);
+    output = new StreamingProcessOutput(owner);
+    output.monitor(TestProcesses.sh("echo a; echo b 1>&2; echo c 1>&2"));
+    assertEquals(Arrays.asList("err:b", "err:c"), owner.lines);
+  }
+}
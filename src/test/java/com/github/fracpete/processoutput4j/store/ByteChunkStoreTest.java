@@ -0,0 +1,205 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ByteChunkStoreTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link ByteChunkStore} class, including snapshot and cursor
+ * access.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class ByteChunkStoreTest {
+
+  /**
+   * Returns the content of the stream.
+   *
+   * @param stream	the stream to read
+   * @return		the content
+   * @throws Exception	if reading fails
+   */
+  protected String read(InputStream stream) throws Exception {
+    ByteArrayOutputStream	result;
+    byte[]			buffer;
+    int				read;
+
+    result = new ByteArrayOutputStream();
+    buffer = new byte[3];
+    while ((read = stream.read(buffer)) != -1)
+      result.write(buffer, 0, read);
+
+    return result.toString();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidChunkSize() {
+    new ByteChunkStore(0);
+  }
+
+  @Test
+  public void testAcrossChunks() throws Exception {
+    ByteChunkStore		store;
+    ByteArrayOutputStream	out;
+
+    store = new ByteChunkStore(5);
+    store.append("abc");
+    store.append("");
+    store.append("defghijklmn");
+    assertEquals(17, store.size());
+    assertEquals("abc\n\ndefghijklmn\n", store.getContent());
+    assertEquals("c\n\ndefg", new String(store.read(2, 7)));
+    assertEquals("mn\n", new String(store.read(14, 100)));
+    assertEquals(0, store.read(17, 10).length);
+    assertEquals("abc\n\ndefghijklmn\n", read(store.getInputStream()));
+    out = new ByteArrayOutputStream();
+    store.writeTo(out);
+    assertEquals("abc\n\ndefghijklmn\n", out.toString());
+  }
+
+  @Test
+  public void testChunkBoundary() throws Exception {
+    ByteChunkStore		store;
+    ByteArrayOutputStream	out;
+
+    store = new ByteChunkStore(4);
+    store.append("abc");
+    store.append("def");
+    assertEquals("abc\ndef\n", store.getContent());
+    out = new ByteArrayOutputStream();
+    store.writeTo(out);
+    assertEquals("abc\ndef\n", out.toString());
+  }
+
+  @Test
+  public void testLines() {
+    ByteChunkStore	store;
+    int			i;
+
+    store = new ByteChunkStore(7);
+    for (i = 0; i < 100; i++)
+      store.append("line " + i);
+    assertEquals(100, store.getLineCount());
+    assertEquals("line 0", store.getLine(0));
+    assertEquals("line 57", store.getLine(57));
+    assertEquals(Arrays.asList("line 10", "line 11"), store.getLines(10, 12));
+    assertEquals(Arrays.asList("line 98", "line 99"), store.tail(2));
+  }
+
+  @Test
+  public void testSnapshot() throws Exception {
+    ByteChunkStore	store;
+    InputStream		stream;
+    long		size;
+
+    store = new ByteChunkStore(4);
+    store.append("one");
+    stream = store.getInputStream();
+    size   = store.size();
+    store.append("two");
+    assertEquals("one\n", read(stream));
+    assertEquals("two\n", store.getContent(size));
+    assertEquals("one\ntwo\n", store.getContent());
+  }
+
+  @Test
+  public void testCursor() {
+    ByteChunkStore	store;
+    OutputCursor	cursor;
+
+    store  = new ByteChunkStore(4);
+    cursor = store.newCursor();
+    assertFalse(cursor.hasNext());
+    assertEquals("", cursor.next());
+    store.append("a");
+    store.append("bcdef");
+    assertTrue(cursor.hasNext());
+    assertEquals("a\nbcdef\n", cursor.next());
+    assertFalse(cursor.hasNext());
+    store.append("g");
+    assertEquals("g\n", cursor.next());
+    assertEquals(10, cursor.getPosition());
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    ByteChunkStore	store;
+    InputStream		stream;
+
+    store = new ByteChunkStore(4);
+    store.append("abcdef");
+    stream = store.getInputStream();
+    store.close();
+    assertEquals(0, store.size());
+    assertEquals(0, store.getLineCount());
+    assertEquals("abcdef\n", read(stream));
+    store.append("x");
+    assertEquals("x\n", store.getContent());
+  }
+
+  @Test(timeout = 30000)
+  public void testConcurrentReads() throws Exception {
+    final ByteChunkStore	store;
+    final AtomicBoolean		done;
+    CompletableFuture<Void>	reader;
+    int				i;
+
+    store  = new ByteChunkStore(16);
+    done   = new AtomicBoolean();
+    reader = CompletableFuture.runAsync(() -> {
+      OutputCursor	cursor;
+      String		content;
+      String		all;
+      int		lines;
+
+      cursor = store.newCursor();
+      all    = "";
+      lines  = 0;
+      while (!done.get() || cursor.hasNext()) {
+	// snapshots only ever contain complete lines
+	content = store.getContent();
+	assertTrue(content.isEmpty() || content.endsWith("\n"));
+	content = cursor.next();
+	assertTrue(content.isEmpty() || content.endsWith("\n"));
+	all += content;
+	lines = store.getLineCount();
+	if (lines > 0)
+	  assertEquals("" + (lines - 1), store.getLine(lines - 1));
+      }
+      assertEquals(store.getContent(), all);
+    });
+    for (i = 0; i < 5000; i++)
+      store.append("" + i);
+    done.set(true);
+    reader.get();
+    assertEquals(5000, store.getLineCount());
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CompressingStoreTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+import com.github.fracpete.processoutput4j.TestProcesses;
+import com.github.fracpete.processoutput4j.output.CollectingProcessOutput;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link CompressingStore} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class CompressingStoreTest {
+
+  /**
+   * Returns the content of the stream and closes it.
+   *
+   * @param stream	the stream to read
+   * @return		the content
+   * @throws Exception	if reading fails
+   */
+  protected String read(InputStream stream) throws Exception {
+    ByteArrayOutputStream	result;
+    byte[]			buffer;
+    int				read;
+
+    result = new ByteArrayOutputStream();
+    buffer = new byte[7];
+    while ((read = stream.read(buffer)) != -1)
+      result.write(buffer, 0, read);
+    stream.close();
+
+    return result.toString();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidChunkSize() {
+    new CompressingStore(0, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidLevel() {
+    new CompressingStore(64, 10);
+  }
+
+  @Test
+  public void testAcrossChunks() throws Exception {
+    CompressingStore	store;
+    StringBuilder	expected;
+    Random		rand;
+    String		content;
+    int			offset;
+    int			length;
+    int			i;
+
+    store    = new CompressingStore(64, 6);
+    expected = new StringBuilder();
+    for (i = 0; i < 500; i++) {
+      store.append("line " + i);
+      expected.append("line ").append(i).append('\n');
+    }
+    content = expected.toString();
+    assertEquals(content.length(), store.size());
+    assertEquals(content, store.getContent());
+    assertEquals(content, read(store.getInputStream()));
+    assertEquals(500, store.getLineCount());
+    assertEquals("line 0", store.getLine(0));
+    assertEquals("line 321", store.getLine(321));
+    assertEquals(Arrays.asList("line 498", "line 499"), store.tail(2));
+
+    // random access only decompresses the chunks involved
+    rand = new Random(1);
+    for (i = 0; i < 200; i++) {
+      offset = rand.nextInt(content.length());
+      length = rand.nextInt(200);
+      assertEquals(content.substring(offset, Math.min(content.length(), offset + length)), new String(store.read(offset, length)));
+    }
+  }
+
+  @Test
+  public void testCompresses() {
+    CompressingStore	store;
+    int			i;
+
+    store = new CompressingStore(1024, 1);
+    assertEquals(1.0, store.getCompressionRatio(), 0.0);
+    for (i = 0; i < 1000; i++)
+      store.append("the same line over and over again");
+    assertTrue(store.getCompressionRatio() > 5);
+    assertTrue(store.getStoredSize() * 5 < store.size());
+    assertTrue(store.getCompressionTime() > 0);
+  }
+
+  @Test
+  public void testSnapshot() throws Exception {
+    CompressingStore	store;
+    InputStream		stream;
+
+    store = new CompressingStore(4, 1);
+    store.append("abcdef");
+    stream = store.getInputStream();
+    store.append("ghi");
+    assertEquals("abcdef\n", read(stream));
+    assertEquals("abcdef\nghi\n", store.getContent());
+  }
+
+  @Test
+  public void testClose() {
+    CompressingStore	store;
+
+    store = new CompressingStore(4, 1);
+    store.append("abcdef");
+    store.close();
+    assertEquals(0, store.size());
+    assertEquals(0, store.getStoredSize());
+    assertEquals(0, store.getLineCount());
+    store.append("x");
+    assertEquals("x\n", store.getContent());
+  }
+
+  @Test(timeout = 30000)
+  public void testOutput() throws Exception {
+    CollectingProcessOutput	output;
+    CompressingStore		store;
+
+    TestProcesses.assumeShell();
+    store  = new CompressingStore(1024, 1);
+    output = new CollectingProcessOutput();
+    output.setStdOutStore(store);
+    output.monitor(TestProcesses.sh("seq 1 10000"));
+    assertEquals(TestProcesses.numbers(10000), output.getStdOut());
+    assertEquals("5000", output.getLine(4999));
+    assertTrue(store.getStoredSize() < store.size());
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * DirectChunkStoreTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the {@link DirectChunkStore} and {@link DirectBufferPool} classes.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class DirectChunkStoreTest {
+
+  @Test
+  public void testPool() {
+    DirectBufferPool	pool;
+    ByteBuffer		first;
+    ByteBuffer		second;
+
+    pool   = new DirectBufferPool(16, 1);
+    first  = pool.acquire();
+    second = pool.acquire();
+    assertEquals(2, pool.getNumActive());
+    assertEquals(16, first.capacity());
+    pool.release(first);
+    pool.release(second);
+    assertEquals(0, pool.getNumActive());
+    assertEquals(1, pool.getNumIdle());
+    first = pool.acquire();
+    assertEquals(0, pool.getNumIdle());
+    pool.discard(first);
+    assertEquals(0, pool.getNumActive());
+    assertEquals(0, pool.getNumIdle());
+  }
+
+  @Test
+  public void testContent() {
+    DirectChunkStore	store;
+
+    store = new DirectChunkStore(new DirectBufferPool(4, 10));
+    store.append("abc");
+    store.append("defghi");
+    assertEquals(11, store.size());
+    assertEquals("abc\ndefghi\n", store.getContent());
+    assertEquals("c\ndef", new String(store.read(2, 5)));
+    assertEquals("defghi", store.getLine(1));
+  }
+
+  @Test
+  public void testCloseReleases() {
+    DirectBufferPool	pool;
+    DirectChunkStore	store;
+
+    pool  = new DirectBufferPool(4, 10);
+    store = new DirectChunkStore(pool);
+    store.append("abcdefghij");
+    assertEquals(3, pool.getNumActive());
+    store.close();
+    assertEquals(0, pool.getNumActive());
+    assertEquals(3, pool.getNumIdle());
+  }
+
+  @Test
+  public void testCloseWithViewsDiscards() {
+    DirectBufferPool	pool;
+    DirectChunkStore	store;
+    List<ByteBuffer>	views;
+    byte[]		data;
+
+    pool  = new DirectBufferPool(4, 10);
+    store = new DirectChunkStore(pool);
+    store.append("abcdefghij");
+    views = store.getByteBuffers();
+    store.close();
+    assertEquals(0, pool.getNumActive());
+    assertEquals(0, pool.getNumIdle());
+
+    // views remain intact, as the chunks don't get reused
+    store = new DirectChunkStore(pool);
+    store.append("0123456789");
+    data = new byte[4];
+    views.get(0).get(data);
+    assertEquals("abcd", new String(data));
+  }
+
+  @Test
+  public void testStreamAfterClose() throws Exception {
+    DirectChunkStore	store;
+    InputStream		stream;
+
+    store  = new DirectChunkStore(new DirectBufferPool(4, 10));
+    store.append("abcdefghij");
+    stream = store.getInputStream();
+    assertEquals('a', stream.read());
+    store.close();
+    try {
+      stream.read();
+      fail("Expected exception");
+    }
+    catch (IOException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * HeadTailStoreTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+import com.github.fracpete.processoutput4j.store.HeadTailStore.Unit;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the {@link HeadTailStore} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class HeadTailStoreTest {
+
+  /**
+   * Joins the lines, terminating each with \n.
+   *
+   * @param lines	the lines
+   * @return		the joined lines
+   */
+  protected String join(List<String> lines) {
+    StringBuilder	result;
+
+    result = new StringBuilder();
+    for (String line: lines)
+      result.append(line).append('\n');
+
+    return result.toString();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeHead() {
+    new HeadTailStore(Unit.LINES, -1, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidMaxBytes() {
+    new HeadTailStore(Unit.LINES, 1, 1, 0);
+  }
+
+  @Test
+  public void testNothingSkipped() {
+    HeadTailStore	store;
+
+    store = new HeadTailStore(Unit.LINES, 2, 3);
+    store.append("1");
+    store.append("2");
+    store.append("3");
+    assertEquals("1\n2\n", store.getHead());
+    assertEquals("3\n", store.getTail());
+    assertEquals(0, store.getSkippedLines());
+    assertEquals(0, store.getSkippedBytes());
+    assertEquals("1\n2\n3\n", store.getContent());
+  }
+
+  @Test
+  public void testLines() {
+    HeadTailStore	store;
+    int			i;
+
+    store = new HeadTailStore(Unit.LINES, 2, 3);
+    for (i = 1; i <= 10; i++)
+      store.append("" + i);
+    assertEquals("1\n2\n", store.getHead());
+    assertEquals("8\n9\n10\n", store.getTail());
+    assertEquals(10, store.getTotalLines());
+    assertEquals(21, store.getTotalBytes());
+    assertEquals(5, store.getSkippedLines());
+    assertEquals(10, store.getSkippedBytes());
+    assertEquals("1\n2\n[... skipped 5 lines, 10 bytes ...]\n8\n9\n10\n", store.getContent());
+  }
+
+  @Test
+  public void testLinesLimitedByBytes() {
+    HeadTailStore	store;
+
+    store = new HeadTailStore(Unit.LINES, 2, 3, 10);
+    store.append("aaaa");
+    store.append("bbbb");
+    store.append("cccc");
+    store.append("dddd");
+    store.append("eeee");
+    store.append("ffff");
+    assertEquals("aaaa\nbbbb\n", store.getHead());
+    assertEquals("eeee\nffff\n", store.getTail());
+    assertEquals(2, store.getSkippedLines());
+    assertEquals(10, store.getSkippedBytes());
+  }
+
+  @Test
+  public void testLineLongerThanMaxBytes() {
+    HeadTailStore	store;
+
+    store = new HeadTailStore(Unit.LINES, 0, 3, 10);
+    store.append("a");
+    store.append("b");
+    store.append("0123456789");
+    assertEquals("", store.getTail());
+    assertEquals(3, store.getSkippedLines());
+    store.append("c");
+    assertEquals("c\n", store.getTail());
+    assertEquals(3, store.getSkippedLines());
+  }
+
+  @Test
+  public void testLinesMatchModel() {
+    Random		random;
+    HeadTailStore	store;
+    List<String>	head;
+    List<String>	rest;
+    List<String>	tail;
+    String		line;
+    int			headBytes;
+    int			tailBytes;
+    boolean		headFull;
+    int			run;
+    int			i;
+
+    random = new Random(42);
+    for (run = 0; run < 50; run++) {
+      store     = new HeadTailStore(Unit.LINES, 3, 5, 64);
+      head      = new ArrayList<>();
+      rest      = new ArrayList<>();
+      headBytes = 0;
+      headFull  = false;
+      for (i = 0; i < 200; i++) {
+	line = "";
+	while (line.length() < random.nextInt(70))
+	  line += (char) ('a' + random.nextInt(26));
+	store.append(line);
+	if (!headFull && (headBytes + line.length() + 1 <= 64)) {
+	  head.add(line);
+	  headBytes += line.length() + 1;
+	  headFull   = (head.size() == 3);
+	}
+	else {
+	  headFull = true;
+	  rest.add(line);
+	}
+      }
+
+      // longest suffix within the limits
+      tail      = new ArrayList<>();
+      tailBytes = 0;
+      for (i = rest.size() - 1; i >= 0; i--) {
+	if ((tail.size() == 5) || (tailBytes + rest.get(i).length() + 1 > 64))
+	  break;
+	tail.add(0, rest.get(i));
+	tailBytes += rest.get(i).length() + 1;
+      }
+
+      assertEquals(join(head), store.getHead());
+      assertEquals(join(tail), store.getTail());
+      assertEquals(200 - head.size() - tail.size(), store.getSkippedLines());
+    }
+  }
+
+  @Test
+  public void testLinesGrowTail() {
+    HeadTailStore	store;
+    List<String>	tail;
+    String		line;
+    int			i;
+
+    store = new HeadTailStore(Unit.LINES, 0, 100);
+    tail  = new ArrayList<>();
+    for (i = 0; i < 1000; i++) {
+      line = i + ":" + new String(new char[i % 200]).replace('\0', 'x');
+      store.append(line);
+      tail.add(line);
+      if (tail.size() > 100)
+	tail.remove(0);
+    }
+    assertEquals(join(tail), store.getTail());
+    assertEquals(900, store.getSkippedLines());
+  }
+
+  @Test
+  public void testBytes() {
+    HeadTailStore	store;
+
+    store = new HeadTailStore(Unit.BYTES, 4, 6);
+    store.append("a");
+    store.append("bb");
+    store.append("ccc");
+    store.append("dd");
+    store.append("e");
+    assertEquals("a\n", store.getHead());
+    assertEquals("dd\ne\n", store.getTail());
+    assertEquals(2, store.getSkippedLines());
+    assertEquals(7, store.getSkippedBytes());
+  }
+
+  @Test
+  public void testBytesLongLine() {
+    HeadTailStore	store;
+
+    store = new HeadTailStore(Unit.BYTES, 0, 4);
+    store.append("a");
+    store.append("0123456789");
+    assertEquals("", store.getTail());
+    store.append("b");
+    assertEquals("b\n", store.getTail());
+    assertEquals(2, store.getSkippedLines());
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * LineIndexTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the {@link LineIndex} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class LineIndexTest {
+
+  @Test
+  public void testOffsets() {
+    LineIndex	index;
+    int		i;
+
+    index = new LineIndex();
+    for (i = 1; i <= 1000; i++)
+      index.add(i * 10L);
+    assertEquals(1000, index.size());
+    assertEquals(0, index.getStart(0));
+    assertEquals(9, index.getEnd(0));
+    assertEquals(5000, index.getStart(500));
+    assertEquals(5009, index.getEnd(500));
+    assertNull(index.m_LongEnds);
+  }
+
+  @Test
+  public void testSwitchToLong() {
+    LineIndex	index;
+    long	large;
+
+    large = Integer.MAX_VALUE + 100L;
+    index = new LineIndex();
+    index.add(10);
+    index.add(Integer.MAX_VALUE);
+    assertNull(index.m_LongEnds);
+    index.add(large);
+    index.add(large * 2);
+    assertNotNull(index.m_LongEnds);
+    assertNull(index.m_Ends);
+    assertEquals(4, index.size());
+    assertEquals(0, index.getStart(0));
+    assertEquals(9, index.getEnd(0));
+    assertEquals(10, index.getStart(1));
+    assertEquals(Integer.MAX_VALUE - 1, index.getEnd(1));
+    assertEquals(Integer.MAX_VALUE, index.getStart(2));
+    assertEquals(large - 1, index.getEnd(2));
+    assertEquals(large, index.getStart(3));
+    assertEquals(large * 2 - 1, index.getEnd(3));
+  }
+
+  @Test
+  public void testGrowAfterSwitch() {
+    LineIndex	index;
+    long	base;
+    int		i;
+
+    base  = 3L * Integer.MAX_VALUE;
+    index = new LineIndex();
+    for (i = 1; i <= 100; i++)
+      index.add(i);
+    for (i = 1; i <= 100; i++)
+      index.add(base + i);
+    assertEquals(200, index.size());
+    assertEquals(99, index.getStart(99));
+    assertEquals(100, index.getStart(100));
+    assertEquals(base + 99, index.getStart(199));
+    assertEquals(base + 99, index.getEnd(199));
+  }
+
+  @Test
+  public void testClear() {
+    LineIndex	index;
+
+    index = new LineIndex();
+    index.add(Integer.MAX_VALUE + 1L);
+    index.clear();
+    assertEquals(0, index.size());
+    assertNull(index.m_LongEnds);
+    index.add(5);
+    assertEquals(4, index.getEnd(0));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testOutOfBounds() {
+    LineIndex	index;
+
+    index = new LineIndex();
+    index.add(5);
+    index.getStart(1);
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MappedFileStoreTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+import com.github.fracpete.processoutput4j.core.TempFiles;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link MappedFileStore} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class MappedFileStoreTest {
+
+  /**
+   * Creates a temporary file with the content.
+   *
+   * @param content	the content
+   * @return		the file
+   * @throws Exception	if creating the file fails
+   */
+  protected File create(String content) throws Exception {
+    File	result;
+
+    result = TempFiles.create(".txt", null);
+    Files.write(result.toPath(), content.getBytes());
+
+    return result;
+  }
+
+  /**
+   * Returns the content of the stream and closes it.
+   *
+   * @param stream	the stream to read
+   * @return		the content
+   * @throws Exception	if reading fails
+   */
+  protected String read(InputStream stream) throws Exception {
+    ByteArrayOutputStream	result;
+    byte[]			buffer;
+    int				read;
+
+    result = new ByteArrayOutputStream();
+    buffer = new byte[1024];
+    while ((read = stream.read(buffer)) != -1)
+      result.write(buffer, 0, read);
+    stream.close();
+
+    return result.toString();
+  }
+
+  @Test
+  public void testRead() throws Exception {
+    MappedFileStore	store;
+    ByteBuffer		mapped;
+    byte[]		data;
+
+    store = new MappedFileStore(create("a\r\nbc\n\nd"), true);
+    assertEquals(8, store.size());
+    assertEquals("a\r\nbc\n\nd", store.getContent());
+    assertEquals("a\r\nbc\n\nd", read(store.getInputStream()));
+    assertEquals("bc", new String(store.read(3, 2)));
+    assertEquals(4, store.getLineCount());
+    assertEquals("a", store.getLine(0));
+    assertEquals("", store.getLine(2));
+    assertEquals("d", store.getLine(3));
+    assertEquals(Arrays.asList("", "d"), store.tail(2));
+    mapped = store.map(3, 3);
+    data   = new byte[3];
+    mapped.get(data);
+    assertEquals("bc\n", new String(data));
+    store.close();
+  }
+
+  @Test
+  public void testGrowingFile() throws Exception {
+    MappedFileStore	store;
+    File		file;
+
+    file  = create("a\n");
+    store = new MappedFileStore(file, true);
+    assertEquals(1, store.getLineCount());
+    Files.write(file.toPath(), "b\n".getBytes(), StandardOpenOption.APPEND);
+    assertEquals(2, store.getLineCount());
+    assertEquals("b", store.getLine(1));
+    store.close();
+  }
+
+  @Test
+  public void testEmpty() {
+    MappedFileStore	store;
+
+    store = new MappedFileStore(null, false);
+    assertEquals(0, store.size());
+    assertEquals(0, store.getLineCount());
+    assertEquals("", store.getContent());
+    assertEquals(0, store.map(0, 0).remaining());
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    MappedFileStore	store;
+    File		file;
+
+    file  = create("a\n");
+    store = new MappedFileStore(file, false);
+    store.close();
+    assertTrue(file.exists());
+    store = new MappedFileStore(file, true);
+    store.close();
+    assertFalse(file.exists());
+    assertNull(store.getFile());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testReadOnly() {
+    new MappedFileStore(null, false).append("a");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidMapRange() throws Exception {
+    MappedFileStore	store;
+
+    store = new MappedFileStore(create("abc"), true);
+    try {
+      store.map(2, 2);
+    }
+    finally {
+      store.close();
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SegmentedStoreTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the {@link SegmentedStore} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class SegmentedStoreTest {
+
+  @Test
+  public void testSegmentSize() {
+    assertEquals(65536, new SegmentedStore().getSegmentSize());
+    assertEquals(16, new SegmentedStore(4).getSegmentSize());
+    assertEquals(16, new SegmentedStore(4).getChunkSize());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooFewBits() {
+    new SegmentedStore(3);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooManyBits() {
+    new SegmentedStore(31);
+  }
+
+  @Test
+  public void testAcrossSegments() {
+    SegmentedStore	store;
+    StringBuilder	expected;
+    int			i;
+
+    store    = new SegmentedStore(4);
+    expected = new StringBuilder();
+    for (i = 0; i < 1000; i++) {
+      store.append("line " + i);
+      expected.append("line ").append(i).append('\n');
+    }
+    assertEquals(expected.toString(), store.getContent());
+    assertEquals("line 500", store.getLine(500));
+  }
+}
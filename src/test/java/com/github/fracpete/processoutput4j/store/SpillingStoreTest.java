@@ -0,0 +1,143 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SpillingStoreTest.java
+ * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.processoutput4j.store;
+
+import com.github.fracpete.processoutput4j.TestProcesses;
+import com.github.fracpete.processoutput4j.core.TempFiles;
+import com.github.fracpete.processoutput4j.output.CollectingProcessOutput;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link SpillingStore} class.
+ *
+ * @author fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class SpillingStoreTest {
+
+  /**
+   * Returns the content of the stream and closes it.
+   *
+   * @param stream	the stream to read
+   * @return		the content
+   * @throws Exception	if reading fails
+   */
+  protected String read(InputStream stream) throws Exception {
+    ByteArrayOutputStream	result;
+    byte[]			buffer;
+    int				read;
+
+    result = new ByteArrayOutputStream();
+    buffer = new byte[1024];
+    while ((read = stream.read(buffer)) != -1)
+      result.write(buffer, 0, read);
+    stream.close();
+
+    return result.toString();
+  }
+
+  @Test
+  public void testInMemory() throws Exception {
+    SpillingStore	store;
+
+    store = new SpillingStore(100, null);
+    store.append("abc");
+    store.append("def");
+    assertFalse(store.isSpilled());
+    assertNull(store.getFile());
+    assertEquals("abc\ndef\n", store.getContent());
+    assertEquals("c\nd", new String(store.read(2, 3)));
+    assertEquals("def", store.getLine(1));
+    assertEquals("abc\ndef\n", read(store.getInputStream()));
+    store.close();
+  }
+
+  @Test
+  public void testSpillAndCleanup() throws Exception {
+    SpillingStore	store;
+    ByteBuffer		mapped;
+    File		file;
+    byte[]		data;
+    int			files;
+
+    files = TempFiles.size();
+    store = new SpillingStore(16, null);
+    store.append("0123456789");
+    assertFalse(store.isSpilled());
+    store.append("abcdefghij");
+    store.append("klm");
+    assertTrue(store.isSpilled());
+    file = store.getFile();
+    assertTrue(file.exists());
+    assertEquals(files + 1, TempFiles.size());
+
+    assertEquals(26, store.size());
+    assertEquals("0123456789\nabcdefghij\nklm\n", store.getContent());
+    assertEquals("9\nab", new String(store.read(9, 4)));
+    assertEquals("klm", store.getLine(2));
+    assertEquals("0123456789\nabcdefghij\nklm\n", read(store.getInputStream()));
+    mapped = store.map(11, 10);
+    data   = new byte[10];
+    mapped.get(data);
+    assertEquals("abcdefghij", new String(data));
+
+    store.close();
+    assertFalse(file.exists());
+    assertEquals(files, TempFiles.size());
+    assertEquals(0, store.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidMapRange() {
+    SpillingStore	store;
+
+    store = new SpillingStore(16, null);
+    store.append("abc");
+    store.map(2, 10);
+  }
+
+  @Test(timeout = 30000)
+  public void testOutputDeletesFile() throws Exception {
+    CollectingProcessOutput	output;
+    SpillingStore		store;
+    File			file;
+
+    TestProcesses.assumeShell();
+    store  = new SpillingStore(100, null);
+    output = new CollectingProcessOutput();
+    output.setStdOutStore(store);
+    output.monitor(TestProcesses.sh("seq 1 1000"));
+    assertTrue(store.isSpilled());
+    file = store.getFile();
+    assertEquals(TestProcesses.numbers(1000), read(output.getStdOutStream()));
+    output.close();
+    assertFalse(file.exists());
+  }
+}